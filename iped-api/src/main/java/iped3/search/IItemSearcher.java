@@ -6,9 +6,16 @@
 package iped3.search;
 
 import iped3.io.IItemBase;
+import iped3.util.BasicProps;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  *
@@ -16,10 +23,81 @@
  */
 public interface IItemSearcher extends Closeable {
 
+    /**
+     * Max number of values searched in one query by the default batched lookups.
+     */
+    int LOOKUP_BATCH_SIZE = 512;
+
     List<IItemBase> search(String luceneQuery);
 
     Iterable<IItemBase> searchIterable(String luceneQuery);
 
     String escapeQuery(String string);
 
+    /**
+     * Searches items by exact hash values, case insensitive.
+     *
+     * @param hashAlgo
+     *            hash property, like md5, sha-256 or hash
+     * @param hashes
+     *            hashes to search for
+     * @return items found, by searched hash
+     */
+    default Map<String, List<IItemBase>> searchByHashes(String hashAlgo, Collection<String> hashes) {
+        return lookup(hashAlgo, hashes, false, item -> {
+            Object hash = BasicProps.HASH.equals(hashAlgo) ? item.getHash() : item.getExtraAttribute(hashAlgo);
+            return hash != null ? hash.toString() : null;
+        });
+    }
+
+    /**
+     * Searches items by exact names, case insensitive.
+     *
+     * @param names
+     *            names to search for
+     * @return items found, by searched name
+     */
+    default Map<String, List<IItemBase>> searchByNames(Collection<String> names) {
+        return lookup(BasicProps.NAME, names, true, IItemBase::getName);
+    }
+
+    /**
+     * Searches items by exact path, case insensitive.
+     */
+    default List<IItemBase> searchByPath(String path) {
+        List<IItemBase> items = new ArrayList<>();
+        for (IItemBase item : searchIterable(BasicProps.PATH + ":\"" + escapeQuery(path) + "\"")) { //$NON-NLS-1$ //$NON-NLS-2$
+            if (path.equalsIgnoreCase(item.getPath())) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    private Map<String, List<IItemBase>> lookup(String field, Collection<String> values, boolean phrase,
+            Function<IItemBase, String> getter) {
+        Map<String, String> lowerCaseValues = new HashMap<>();
+        for (String value : values) {
+            lowerCaseValues.put(value.toLowerCase(), value);
+        }
+        Map<String, List<IItemBase>> result = new HashMap<>();
+        Iterator<String> it = lowerCaseValues.values().iterator();
+        while (it.hasNext()) {
+            StringBuilder query = new StringBuilder(field).append(":("); //$NON-NLS-1$
+            for (int i = 0; i < LOOKUP_BATCH_SIZE && it.hasNext(); i++) {
+                String value = escapeQuery(it.next());
+                query.append(phrase ? "\"" + value + "\"" : value).append(' '); //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            query.append(')');
+            for (IItemBase item : searchIterable(query.toString())) {
+                String itemValue = getter.apply(item);
+                String value = itemValue != null ? lowerCaseValues.get(itemValue.toLowerCase()) : null;
+                if (value != null) {
+                    result.computeIfAbsent(value, v -> new ArrayList<>()).add(item);
+                }
+            }
+        }
+        return result;
+    }
+
 }
@@ -78,6 +78,8 @@ protected Void doInBackground() {
             if (updateItems)
                 App.get().appCase.close();
 
+            IPEDSource.enableInteractiveQueryCache(Runtime.getRuntime().maxMemory() / 10);
+
             if (!App.get().isMultiCase) {
                 IPEDSource singleCase = null;
                 if (manager == null)
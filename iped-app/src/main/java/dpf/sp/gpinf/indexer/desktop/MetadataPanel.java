@@ -118,6 +118,7 @@ public class MetadataPanel extends JPanel
     volatile SortedSetDocValues eventDocValuesSet;
     volatile HashMap<String, long[]> eventSetToOrdsCache = new HashMap<>();
     volatile boolean isCategory = false;
+    private final OrdinalFacetCounter ordCounter = new OrdinalFacetCounter();
 
     volatile IMultiSearchResult ipedResult;
     ValueCount[] array, filteredArray;
@@ -506,8 +507,7 @@ private void loadDocValues(String field) throws IOException {
         numValues = reader.getNumericDocValues(field);
         numValuesSet = reader.getSortedNumericDocValues(field);
         docValues = reader.getSortedDocValues(field);
-        String prefix = ExtraProperties.LOCATIONS.equals(field) ? IndexItem.GEO_SSDV_PREFIX : "";
-        docValuesSet = reader.getSortedSetDocValues(prefix + field);
+        docValuesSet = OrdinalFacetCounter.getSortedSetDocValues(reader, field);
         if (BasicProps.TIME_EVENT.equals(field)) {
             eventDocValuesSet = reader.getSortedSetDocValues(ExtraProperties.TIME_EVENT_GROUPS);
         }
@@ -1094,15 +1094,9 @@ else if (isDouble)
             }
             list.addAll(l);            
         } else if (docValues != null) {
-            valueCount = new int[docValues.getValueCount()];
-            for (IItemId item : ipedResult.getIterator()) {
-                int doc = App.get().appCase.getLuceneId(item);
-                boolean adv = docValues.advanceExact(doc);
-                if(adv) {
-                    int ord = docValues.ordValue();
-                    valueCount[ord]++;
-                }
-            }
+            valueCount = ordCounter.count(reader, field, false, docValues.getValueCount(), ipedResult);
+        } else if (docValuesSet != null && !isTimeEvent) {
+            valueCount = ordCounter.count(reader, field, true, (int) docValuesSet.getValueCount(), ipedResult);
         } else if (docValuesSet != null) {
             valueCount = new int[(int) docValuesSet.getValueCount()];
             for (IItemId item : ipedResult.getIterator()) {
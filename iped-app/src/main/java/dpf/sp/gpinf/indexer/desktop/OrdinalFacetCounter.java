@@ -0,0 +1,202 @@
+package dpf.sp.gpinf.indexer.desktop;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+
+import dpf.sp.gpinf.indexer.desktop.TimelineResults.TimeItemId;
+import dpf.sp.gpinf.indexer.process.IndexItem;
+import iped3.IItemId;
+import iped3.search.IMultiSearchResult;
+import iped3.util.ExtraProperties;
+
+/**
+ * Counts the items of a result by global ordinal of a SortedDocValues or
+ * SortedSetDocValues field. Slices of the result are counted in parallel, each
+ * one with its own doc values iterator. The last counts of each field are
+ * cached by result identity and, if the new result is a subset of the cached
+ * one, like after applying a filter, only the removed items are uncounted.
+ */
+class OrdinalFacetCounter {
+
+    private static final int MIN_ITEMS_PER_THREAD = 100000;
+
+    /**
+     * Max ints allocated by partial counts of all threads.
+     */
+    private static final int MAX_PARTIAL_COUNTS = 1 << 25;
+
+    private static final int MAX_CACHED_FIELDS = 16;
+
+    private static class OrdCounts {
+
+        private final LeafReader reader;
+        private final WeakReference<IMultiSearchResult> result;
+        private final int[] counts;
+
+        private OrdCounts(LeafReader reader, IMultiSearchResult result, int[] counts) {
+            this.reader = reader;
+            this.result = new WeakReference<>(result);
+            this.counts = counts;
+        }
+    }
+
+    private final Map<String, OrdCounts> cache = new LinkedHashMap<String, OrdCounts>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, OrdCounts> eldest) {
+            return size() > MAX_CACHED_FIELDS;
+        }
+    };
+
+    /**
+     * @return counts by ordinal, must not be modified
+     */
+    synchronized int[] count(LeafReader reader, String field, boolean multiValued, int numOrds,
+            IMultiSearchResult result) throws IOException {
+        OrdCounts cached = cache.get(field);
+        if (cached != null && cached.reader == reader && cached.counts.length == numOrds) {
+            IMultiSearchResult prev = cached.result.get();
+            if (prev == result) {
+                return cached.counts;
+            }
+            if (prev != null && result.getLength() >= prev.getLength() / 2) {
+                int[] counts = uncountRemoved(reader, field, multiValued, prev, result, cached.counts);
+                if (counts != null) {
+                    cache.put(field, new OrdCounts(reader, result, counts));
+                    return counts;
+                }
+            }
+        }
+        int[] counts = countParallel(reader, field, multiValued, numOrds, result);
+        cache.put(field, new OrdCounts(reader, result, counts));
+        return counts;
+    }
+
+    private static int[] countParallel(LeafReader reader, String field, boolean multiValued, int numOrds,
+            IMultiSearchResult result) throws IOException {
+        int length = result.getLength();
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), length / MIN_ITEMS_PER_THREAD);
+        threads = Math.max(1, Math.min(threads, MAX_PARTIAL_COUNTS / Math.max(1, numOrds)));
+        if (threads == 1) {
+            int[] counts = new int[numOrds];
+            count(reader, field, multiValued, result, 0, length, counts);
+            return counts;
+        }
+        int slice = (length + threads - 1) / threads;
+        try {
+            return IntStream.range(0, threads).parallel().mapToObj(t -> {
+                int[] counts = new int[numOrds];
+                try {
+                    count(reader, field, multiValued, result, t * slice, Math.min(length, (t + 1) * slice), counts);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return counts;
+            }).reduce((a, b) -> {
+                for (int i = 0; i < a.length; i++) {
+                    a[i] += b[i];
+                }
+                return a;
+            }).get();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void count(LeafReader reader, String field, boolean multiValued, IMultiSearchResult result,
+            int start, int end, int[] counts) throws IOException {
+        // doc values are iterators, each slice needs its own instance
+        if (!multiValued) {
+            SortedDocValues docValues = reader.getSortedDocValues(field);
+            for (int i = start; i < end; i++) {
+                int doc = App.get().appCase.getLuceneId(result.getItem(i));
+                if (docValues.advanceExact(doc)) {
+                    counts[docValues.ordValue()]++;
+                }
+            }
+        } else {
+            SortedSetDocValues docValuesSet = getSortedSetDocValues(reader, field);
+            for (int i = start; i < end; i++) {
+                int doc = App.get().appCase.getLuceneId(result.getItem(i));
+                countSet(docValuesSet, doc, counts, 1);
+            }
+        }
+    }
+
+    private static void countSet(SortedSetDocValues docValuesSet, int doc, int[] counts, int inc)
+            throws IOException {
+        boolean adv = docValuesSet.advanceExact(doc);
+        long ord, prevOrd = -1;
+        while (adv && (ord = docValuesSet.nextOrd()) != SortedSetDocValues.NO_MORE_ORDS) {
+            if (prevOrd != ord)
+                counts[(int) ord] += inc;
+            prevOrd = ord;
+        }
+    }
+
+    static SortedSetDocValues getSortedSetDocValues(LeafReader reader, String field) throws IOException {
+        String prefix = ExtraProperties.LOCATIONS.equals(field) ? IndexItem.GEO_SSDV_PREFIX : "";
+        return reader.getSortedSetDocValues(prefix + field);
+    }
+
+    /**
+     * @return counts of prevCounts minus the items of prev not in result, or null
+     *         if result is not a subset of prev
+     */
+    private static int[] uncountRemoved(LeafReader reader, String field, boolean multiValued,
+            IMultiSearchResult prev, IMultiSearchResult result, int[] prevCounts) throws IOException {
+        // timeline results may repeat items
+        if (hasTimeItems(prev) || hasTimeItems(result)) {
+            return null;
+        }
+        BitSet current = new BitSet(reader.maxDoc());
+        for (IItemId item : result.getIterator()) {
+            current.set(App.get().appCase.getLuceneId(item));
+        }
+        int[] removed = new int[prev.getLength() - result.getLength()];
+        int numRemoved = 0, kept = 0;
+        for (IItemId item : prev.getIterator()) {
+            int doc = App.get().appCase.getLuceneId(item);
+            if (current.get(doc)) {
+                kept++;
+            } else if (numRemoved < removed.length) {
+                removed[numRemoved++] = doc;
+            } else {
+                return null;
+            }
+        }
+        if (kept != result.getLength()) {
+            return null;
+        }
+        Arrays.sort(removed, 0, numRemoved);
+        int[] counts = prevCounts.clone();
+        if (!multiValued) {
+            SortedDocValues docValues = reader.getSortedDocValues(field);
+            for (int i = 0; i < numRemoved; i++) {
+                if (docValues.advanceExact(removed[i])) {
+                    counts[docValues.ordValue()]--;
+                }
+            }
+        } else {
+            SortedSetDocValues docValuesSet = getSortedSetDocValues(reader, field);
+            for (int i = 0; i < numRemoved; i++) {
+                countSet(docValuesSet, removed[i], counts, -1);
+            }
+        }
+        return counts;
+    }
+
+    private static boolean hasTimeItems(IMultiSearchResult result) {
+        return result.getLength() > 0 && result.getItem(0) instanceof TimeItemId;
+    }
+
+}
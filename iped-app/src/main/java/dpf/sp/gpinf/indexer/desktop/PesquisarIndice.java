@@ -59,6 +59,7 @@ public class PesquisarIndice extends CancelableWorker<MultiSearchResult, Object>
 
     private static SoftReference<MultiSearchResult> allItemsCache;
     private static IPEDSource ipedCase;
+    private static PesquisarIndice lastSearch;
 
     volatile int numFilters = 0;
     ProgressDialog progressDialog;
@@ -110,7 +111,7 @@ private Query getQueryWithUIFilter() throws ParseException, QueryNodeException {
             String filter = App.get().filtro.getSelectedItem().toString();
             filter = App.get().filterManager.getFilterExpression(filter);
             BooleanQuery.Builder boolQuery = new BooleanQuery.Builder();
-            boolQuery.add(new QueryBuilder(App.get().appCase).getQuery(filter), Occur.MUST);
+            boolQuery.add(new QueryBuilder(App.get().appCase).getQuery(filter), Occur.FILTER);
             boolQuery.add(result, Occur.MUST);
             result = boolQuery.build();
             numFilters++;
@@ -118,7 +119,7 @@ private Query getQueryWithUIFilter() throws ParseException, QueryNodeException {
 
         if (App.get().categoryListener.getQuery() != null) {
             BooleanQuery.Builder boolQuery = new BooleanQuery.Builder();
-            boolQuery.add(App.get().categoryListener.getQuery(), Occur.MUST);
+            boolQuery.add(App.get().categoryListener.getQuery(), Occur.FILTER);
             boolQuery.add(result, Occur.MUST);
             result = boolQuery.build();
             numFilters++;
@@ -127,7 +128,7 @@ private Query getQueryWithUIFilter() throws ParseException, QueryNodeException {
         Query treeQuery = App.get().treeListener.getQuery();
         if (treeQuery != null) {
             BooleanQuery.Builder boolQuery = new BooleanQuery.Builder();
-            boolQuery.add(treeQuery, Occur.MUST);
+            boolQuery.add(treeQuery, Occur.FILTER);
             boolQuery.add(result, Occur.MUST);
             result = boolQuery.build();
             numFilters++;
@@ -149,9 +150,28 @@ private Query getQueryWithUIFilter() throws ParseException, QueryNodeException {
         return result;
     }
 
+    /**
+     * Cancels the previous search still running, its result would be replaced by
+     * this one anyway.
+     */
+    private void cancelPreviousSearch() {
+        PesquisarIndice previous;
+        synchronized (PesquisarIndice.class) {
+            previous = lastSearch;
+            lastSearch = this;
+        }
+        if (previous != null && !previous.isDone()) {
+            LOGGER.info("Canceling previous search"); //$NON-NLS-1$
+            previous.searcher.cancel();
+            previous.cancel(false);
+        }
+    }
+
     @Override
     public MultiSearchResult doInBackground() {
 
+        cancelPreviousSearch();
+
         synchronized (this.getClass()) {
 
             if (this.isCancelled())
@@ -173,7 +193,11 @@ public MultiSearchResult doInBackground() {
                     result = allItemsCache.get();
 
                 if (result == null) {
+                    long t = System.currentTimeMillis();
                     result = searcher.multiSearch();
+                    if (this.isCancelled())
+                        return null;
+                    LOGGER.info("Query took {}ms", (System.currentTimeMillis() - t)); //$NON-NLS-1$
                     if (q instanceof MatchAllDocsQuery && (allItemsCache == null || allItemsCache.get() == null))
                         allItemsCache = new SoftReference(result.clone());
                 }
@@ -52,6 +52,50 @@ public boolean validate(String doc) {
         return true;
     }
 
+    /**
+     * Same checks of {@link #validate(String)}, but done directly on the text
+     * buffer, before the hit String is created.
+     */
+    @Override
+    protected boolean prefilter(char[] buf, int off, int len) {
+        int acceptableLength = getAcceptableLength();
+        int[] digits = new int[acceptableLength];
+        int numDigits = 0;
+        for (int i = off; i < off + len; i++) {
+            char c = buf[i];
+            if (c >= '0' && c <= '9') {
+                if (numDigits == acceptableLength) {
+                    return false;
+                }
+                digits[numDigits++] = c - '0';
+            }
+        }
+        if (numDigits != acceptableLength) {
+            return false;
+        }
+
+        boolean repeated = true;
+        for (int i = 1; i < acceptableLength - 2 && repeated; i++) {
+            repeated = digits[i] == digits[0];
+        }
+        if (repeated) {
+            return false;
+        }
+
+        int[] weights = getWeights();
+        for (int numberLength = acceptableLength - getNumVerifiers(); numberLength < acceptableLength; numberLength++) {
+            int sum = 0;
+            for (int i = 0; i < numberLength; i++) {
+                sum += digits[i] * weights[weights.length - numberLength + i];
+            }
+            sum = 11 - sum % 11;
+            if (digits[numberLength] != (sum > 9 ? 0 : sum)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static final boolean isRepeated(final String str) {
         for (char c : str.toCharArray()) {
             if (c != str.charAt(0)) {
@@ -49,6 +49,12 @@ public boolean validate(String boleto) {
                 + boleto.substring(21, 31) + digito3 + (digito4 == 0 ? 1 : digito4) + boleto.substring(33, 47));
     }
 
+    @Override
+    protected boolean prefilter(char[] buf, int off, int len) {
+        // boleto digits are not computed as the other documents
+        return true;
+    }
+
     @Override
     public List<String> getRegexNames() {
         return Arrays.asList(REGEX_NAME);
@@ -40,6 +40,38 @@ public boolean validate(String cc) {
         return (sum % 10 == 0);
     }
 
+    /**
+     * Luhn check done directly on the text buffer, before the hit String is
+     * created.
+     */
+    @Override
+    protected boolean prefilter(char[] buf, int off, int len) {
+        int sum = 0;
+        boolean odd = false, repeated = true;
+        char first = 0;
+        for (int index = off + len - 1; index >= off; index--) {
+            char c = buf[index];
+            if (c < '0' || c > '9') {
+                continue;
+            }
+            if (first == 0) {
+                first = c;
+            } else if (c != first) {
+                repeated = false;
+            }
+            int n = c - '0';
+            if (odd) {
+                n *= 2;
+                if (n > 9) {
+                    n = (n % 10) + 1;
+                }
+            }
+            sum += n;
+            odd = !odd;
+        }
+        return !repeated && sum % 10 == 0;
+    }
+
     private static final boolean isRepeated(final String str) {
         for (char c : str.toCharArray()) {
             if (c != str.charAt(0)) {
@@ -19,12 +19,11 @@
  */
 public class EthereumAddressValidatorService extends BasicAbstractRegexValidatorService {
 
-    private static final MessageDigest digest;
+    private static final ThreadLocal<MessageDigest> digest = ThreadLocal.withInitial(() -> new Keccak.Digest256());
     private static final int[] MASKS = { 128, 8 };
 
     static {
         Security.addProvider(new BouncyCastleProvider());
-        digest = new Keccak.Digest256();
     }
 
     @Override
@@ -45,13 +44,10 @@ protected boolean validate(String hit) {
     public boolean validateEthereumAddress(String addr) {
         // remove the 0x prefix
         addr = addr.substring(2);
-        byte[] keccak = null;
-
-        synchronized (digest) {
-            digest.reset();
-            digest.update(addr.toLowerCase().getBytes());
-            keccak = digest.digest();
-        }
+        MessageDigest md = digest.get();
+        md.reset();
+        md.update(addr.toLowerCase().getBytes());
+        byte[] keccak = md.digest();
 
         for (int i = 0; i < addr.length(); i++) {
             char c = addr.charAt(i);
@@ -1,5 +1,11 @@
 package br.gov.pf.iped.webapi;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -8,7 +14,12 @@
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.json.simple.JSONValue;
 
 import br.gov.pf.iped.webapi.json.DocIDJSON;
 import br.gov.pf.iped.webapi.json.SourceToIDsJSON;
@@ -16,6 +27,7 @@
 import dpf.sp.gpinf.indexer.search.IPEDSource;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import iped3.IItemId;
 import iped3.search.IIPEDSearcher;
 import iped3.search.IMultiSearchResult;
@@ -25,18 +37,31 @@
 @Path("search")
 public class Search {
 
+    public static final int MAX_PAGE_SIZE = 100000;
+
     @DefaultValue("")
     @QueryParam("q")
     String q;
     @DefaultValue("")
     @QueryParam("sourceID")
     String sourceID;
+    @ApiParam(value = "Max number of documents returned, all are returned if not specified")
+    @DefaultValue("0")
+    @QueryParam("pageSize")
+    int pageSize;
+    @ApiParam(value = "nextCursor returned by the previous page")
+    @DefaultValue("")
+    @QueryParam("cursor")
+    String cursor;
 
-    @ApiOperation(value = "Search documents")
+    @ApiOperation(value = "Search documents", response = SourceToIDsJSON.class, notes = "If pageSize is specified, documents are returned in index order as { \"data\": [ { \"source\": \"A\", \"id\": 1 } ], \"nextCursor\": \"10\" }, nextCursor being null on the last page")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public SourceToIDsJSON doSearch() throws Exception {
+    public Response doSearch() throws Exception {
         String escapeq = q.replaceAll("/", "\\\\/");
+        if (pageSize > 0) {
+            return Response.ok(searchPage(escapeq)).build();
+        }
         List<DocIDJSON> docs = new ArrayList<DocIDJSON>();
         if (sourceID.equals("")) {
             IPEDSearcher searcher = new IPEDSearcher(Sources.multiSource, escapeq);
@@ -53,6 +78,44 @@ public SourceToIDsJSON doSearch() throws Exception {
             }
         }
 
-        return new SourceToIDsJSON(docs);
+        return Response.ok(new SourceToIDsJSON(docs)).build();
+    }
+
+    /**
+     * Writes hits to the response as they are found, the cursor being the lucene
+     * id of the last hit, stable while the case is open.
+     */
+    private StreamingOutput searchPage(String escapeq) {
+        int after;
+        try {
+            after = cursor.isEmpty() ? -1 : Integer.parseInt(cursor);
+        } catch (NumberFormatException e) {
+            throw new WebApplicationException("Invalid cursor: " + cursor, Response.Status.BAD_REQUEST);
+        }
+        int size = Math.min(pageSize, MAX_PAGE_SIZE);
+        IPEDSource source = sourceID.equals("") ? Sources.multiSource : (IPEDSource) Sources.getSource(sourceID);
+        IPEDSearcher searcher = new IPEDSearcher(source, escapeq);
+
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException, WebApplicationException {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+                writer.write("{\"data\":[");
+                boolean[] first = { true };
+                int next = searcher.searchPage(after, size, (luceneId, itemId) -> {
+                    String itemSource = sourceID.equals("") ? Sources.sourceIntToString.get(itemId.getSourceId())
+                            : sourceID;
+                    if (!first[0]) {
+                        writer.write(',');
+                    }
+                    first[0] = false;
+                    writer.write("{\"source\":\"" + JSONValue.escape(itemSource) + "\",\"id\":" + itemId.getId() + "}");
+                });
+                writer.write("],\"nextCursor\":");
+                writer.write(next == -1 ? "null" : "\"" + next + "\"");
+                writer.write('}');
+                writer.flush();
+            }
+        };
     }
 }
@@ -0,0 +1,226 @@
+package br.gov.pf.labld.graph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Sorts CSV lines by key with bounded memory. Lines are buffered in chunks,
+ * each chunk is sorted and spilled to a temporary file by the executor while
+ * the next one is filled, and the chunk files are merged at the end, calling
+ * the merger once for each group of lines with the same key, in insertion
+ * order. Keys and lines must not contain line breaks, as the CSV writers
+ * already replace them.
+ */
+class CSVExternalSorter implements Closeable {
+
+    /**
+     * Default max chars buffered in a chunk. At most two chunks are kept in
+     * memory, the one being filled and the one being sorted.
+     */
+    static final int MAX_CHUNK_CHARS = 8 * 1024 * 1024;
+
+    static interface GroupMerger {
+
+        /**
+         * @return line to output for the group or null to drop it
+         */
+        String merge(String key, List<String> lines);
+    }
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final String key;
+        private final String line;
+
+        private Entry(String key, String line) {
+            this.key = key;
+            this.line = line;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return key.compareTo(o.key);
+        }
+    }
+
+    private static class ChunkReader implements Comparable<ChunkReader> {
+
+        private final BufferedReader reader;
+        private final int index;
+        private Entry current;
+
+        private ChunkReader(File file, int index) throws IOException {
+            this.reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+            this.index = index;
+        }
+
+        private boolean next() throws IOException {
+            String key = reader.readLine();
+            current = key != null ? new Entry(key, reader.readLine()) : null;
+            return current != null;
+        }
+
+        @Override
+        public int compareTo(ChunkReader o) {
+            int cmp = current.compareTo(o.current);
+            return cmp != 0 ? cmp : Integer.compare(index, o.index);
+        }
+    }
+
+    private final File tmpDir;
+    private final ExecutorService executor;
+    private final int maxChunkChars;
+    private final List<File> chunks = new ArrayList<>();
+
+    private List<Entry> buffer = new ArrayList<>();
+    private long bufferChars = 0;
+    private Future<?> pendingSpill;
+
+    CSVExternalSorter(File tmpDir, ExecutorService executor) {
+        this(tmpDir, executor, MAX_CHUNK_CHARS);
+    }
+
+    CSVExternalSorter(File tmpDir, ExecutorService executor, int maxChunkChars) {
+        this.tmpDir = tmpDir;
+        this.executor = executor;
+        this.maxChunkChars = maxChunkChars;
+    }
+
+    void add(String key, String line) throws IOException {
+        buffer.add(new Entry(key, line));
+        bufferChars += key.length() + line.length();
+        if (bufferChars >= maxChunkChars) {
+            List<Entry> full = buffer;
+            File chunk = File.createTempFile("sort-chunk", ".tmp", tmpDir);
+            chunks.add(chunk);
+            waitPendingSpill();
+            pendingSpill = executor.submit(() -> {
+                spill(full, chunk);
+                return null;
+            });
+            buffer = new ArrayList<>();
+            bufferChars = 0;
+        }
+    }
+
+    private void waitPendingSpill() throws IOException {
+        if (pendingSpill != null) {
+            try {
+                pendingSpill.get();
+            } catch (InterruptedException | ExecutionException e) {
+                throw new IOException(e);
+            } finally {
+                pendingSpill = null;
+            }
+        }
+    }
+
+    private static void spill(List<Entry> entries, File chunk) throws IOException {
+        // List.sort is stable, so lines with the same key keep insertion order
+        entries.sort(null);
+        try (Writer writer = Files.newBufferedWriter(chunk.toPath(), StandardCharsets.UTF_8)) {
+            for (Entry entry : entries) {
+                writer.write(entry.key);
+                writer.write('\n');
+                writer.write(entry.line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    /**
+     * Writes the merged groups sorted by key.
+     */
+    void writeTo(BufferedWriter writer, GroupMerger merger) throws IOException {
+        waitPendingSpill();
+        if (chunks.isEmpty()) {
+            // everything fits in memory, no need to spill
+            buffer.sort(null);
+            String key = null;
+            List<String> group = new ArrayList<>();
+            for (Entry entry : buffer) {
+                if (!entry.key.equals(key)) {
+                    writeGroup(writer, merger, key, group);
+                    key = entry.key;
+                }
+                group.add(entry.line);
+            }
+            writeGroup(writer, merger, key, group);
+            buffer = new ArrayList<>();
+            return;
+        }
+        if (!buffer.isEmpty()) {
+            File chunk = File.createTempFile("sort-chunk", ".tmp", tmpDir);
+            chunks.add(chunk);
+            spill(buffer, chunk);
+            buffer = new ArrayList<>();
+        }
+        List<ChunkReader> readers = new ArrayList<>();
+        try {
+            PriorityQueue<ChunkReader> queue = new PriorityQueue<>();
+            for (int i = 0; i < chunks.size(); i++) {
+                ChunkReader reader = new ChunkReader(chunks.get(i), i);
+                readers.add(reader);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            String key = null;
+            List<String> group = new ArrayList<>();
+            while (!queue.isEmpty()) {
+                ChunkReader reader = queue.poll();
+                if (!reader.current.key.equals(key)) {
+                    writeGroup(writer, merger, key, group);
+                    key = reader.current.key;
+                }
+                group.add(reader.current.line);
+                if (reader.next()) {
+                    queue.add(reader);
+                }
+            }
+            writeGroup(writer, merger, key, group);
+        } finally {
+            for (ChunkReader reader : readers) {
+                reader.reader.close();
+            }
+        }
+    }
+
+    private static void writeGroup(BufferedWriter writer, GroupMerger merger, String key, List<String> group)
+            throws IOException {
+        if (group.isEmpty()) {
+            return;
+        }
+        String line = merger.merge(key, group);
+        if (line != null) {
+            writer.write(line);
+            writer.write("\r\n");
+        }
+        group.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            waitPendingSpill();
+        } finally {
+            for (File chunk : chunks) {
+                Files.deleteIfExists(chunk.toPath());
+            }
+            chunks.clear();
+        }
+    }
+
+}
@@ -37,6 +37,10 @@
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -59,6 +63,7 @@ public class GraphFileWriter implements Closeable, Flushable {
     private static final String HEADER_CSV_STR = "_headers_";
     private static final String SUFFIX = "iped";
     private static final String ARG_FILE_NAME = GraphImportRunner.ARGS_FILE_NAME + "-" + SUFFIX + ".txt";
+    private static final int NORMALIZE_THREADS = 4;
 
     private Map<String, CSVWriter> nodeWriters = new HashMap<>();
     private Map<String, CSVWriter> relationshipWriters = new HashMap<>();
@@ -313,7 +318,7 @@ public void compressGeneratedCSVFiles() throws IOException {
     }
 
     private static void compressGeneratedCSVFiles(File root) throws IOException {
-        Arrays.asList(root.listFiles()).stream().forEach(f -> {
+        Arrays.asList(root.listFiles()).parallelStream().forEach(f -> {
             File gzip = new File(f.getAbsolutePath() + ".gzip");
             try (GZIPOutputStream gzos = new GZIPOutputStream(
                     Files.newOutputStream(gzip.toPath(), StandardOpenOption.CREATE))) {
@@ -445,14 +450,37 @@ private static String uniqueId(Label label, String uniquePropertyName, String un
         return id;
     }
 
+    /**
+     * Applies node replacements and removes duplicates from all CSVs, sorting
+     * them in parallel with bounded memory.
+     */
     public void normalize() throws IOException {
-        normalize(nodeWriters.values());
-        normalize(relationshipWriters.values());
+        normalize(CSVExternalSorter.MAX_CHUNK_CHARS);
     }
 
-    private void normalize(Collection<CSVWriter> writers) throws IOException {
-        for (CSVWriter writer : writers) {
-            writer.normalize(replaces);
+    void normalize(int maxChunkChars) throws IOException {
+        List<CSVWriter> writers = new ArrayList<>(nodeWriters.values());
+        writers.addAll(relationshipWriters.values());
+        int numThreads = Math.min(NORMALIZE_THREADS, Runtime.getRuntime().availableProcessors());
+        ExecutorService normalizers = Executors.newFixedThreadPool(numThreads);
+        // chunk spilling has its own pool, normalizers wait for it
+        ExecutorService spillers = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (CSVWriter writer : writers) {
+                futures.add(normalizers.submit(() -> {
+                    writer.normalize(replaces, spillers, maxChunkChars);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IOException(e);
+        } finally {
+            normalizers.shutdownNow();
+            spillers.shutdownNow();
         }
     }
 
@@ -528,6 +556,9 @@ private static class CSVWriter implements Closeable, Flushable {
 
         static final String SEPARATOR = "_";
 
+        private static final char FINAL_NODE = '1';
+        private static final char REPLACED_NODE = '0';
+
         private static final Pattern SLASH_PATTERN = Pattern.compile("\\\\");
         private static final Pattern QUOTE_PATTERN = Pattern.compile("\"");
         private static final Pattern LINE_BREAK_PATTERN = Pattern.compile("\r|\n");
@@ -634,105 +665,93 @@ public void write(Map<String, Object> record) throws IOException {
             }
         }
 
-        public void normalize(Map<String, String> replaces) throws IOException {
-            if (isNodeWriter) {
-                normalizeNodes(replaces);
-            } else {
-                replaceRels(replaces);
-            }
-        }
-
-        public void replaceRels(Map<String, String> replaces) throws IOException {
-            BufferedReader reader = null;
-            BufferedWriter writer = null;
+        public void normalize(Map<String, String> replaces, ExecutorService spillExecutor, int maxChunkChars)
+                throws IOException {
             File tmp = new File(output.getParentFile(), output.getName() + ".tmp");
-            try {
-                writer = new BufferedWriter(
-                        new OutputStreamWriter(new FileOutputStream(tmp), Charset.forName("utf-8")));
-                reader = new BufferedReader(
-                        new InputStreamReader(new FileInputStream(output), Charset.forName("utf-8")));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    int firstIdx = line.indexOf("\",\"");
-                    String id1 = line.substring(1, firstIdx).trim();
-                    String id2 = line.substring(firstIdx + 3, line.indexOf("\",\"", firstIdx + 3)).trim();
-                    String newId = getLastReplace(replaces, id1);
-                    if (newId != null) {
-                        line = line.replaceFirst(id1, newId);
-                    }
-                    String newId2 = getLastReplace(replaces, id2);
-                    if (newId2 != null) {
-                        line = line.replaceFirst(id2, newId2);
+            try (CSVExternalSorter sorter = new CSVExternalSorter(output.getParentFile(), spillExecutor,
+                    maxChunkChars)) {
+                try (BufferedReader reader = new BufferedReader(
+                        new InputStreamReader(new FileInputStream(output), Charset.forName("utf-8")))) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (isNodeWriter) {
+                            addNode(sorter, replaces, line);
+                        } else {
+                            addRel(sorter, replaces, line);
+                        }
                     }
-                    writer.write(line);
-                    writer.write("\r\n");
                 }
-            } finally {
-                if (reader != null) {
-                    reader.close();
-                }
-                if (writer != null) {
-                    writer.close();
+                try (BufferedWriter writer = new BufferedWriter(
+                        new OutputStreamWriter(new FileOutputStream(tmp), Charset.forName("utf-8")))) {
+                    if (isNodeWriter) {
+                        sorter.writeTo(writer, this::mergeNodes);
+                    } else {
+                        // identical relationships are written once
+                        sorter.writeTo(writer, (line, lines) -> line);
+                    }
                 }
             }
             output.delete();
             tmp.renameTo(output);
         }
 
-        public void normalizeNodes(Map<String, String> replaces) throws IOException {
-            Map<String, String> uniques = new TreeMap<>();
-            Set<String> finalIds = new HashSet<>();
-            try (BufferedReader reader = new BufferedReader(
-                    new InputStreamReader(new FileInputStream(output), Charset.forName("utf-8")))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    String id = line.substring(1, line.indexOf("\",\"")).trim();
-                    String newId = getLastReplace(replaces, id);
-                    if (id.equals(newId))
-                        finalIds.add(id);
-                    String prevLine = uniques.get(newId);
-                    if (prevLine == null) {
-                        uniques.put(newId, line);
-                    } else {
-                        TreeMap<Integer, Set<String>> map = new TreeMap<>();
-                        String[][] valss = { split(line, "\",\""), split(prevLine, "\",\"") };
-                        for (String[] vals : valss) {
-                            for (int i = 0; i < vals.length; i++) {
-                                Set<String> vs = map.get(i);
-                                if (vs == null) {
-                                    vs = new TreeSet<>(StringUtil.getIgnoreCaseComparator());
-                                    map.put(i, vs);
-                                }
-                                if (i == 0)
-                                    vs.add(newId);
-                                else
-                                    vs.addAll(Arrays.asList(vals[i].replaceAll("\"", "").split(";")));
-                            }
-                        }
-                        StringBuilder sb = new StringBuilder();
-                        int i = 0;
-                        for (Set<String> set : map.values()) {
-                            sb.append("\"");
-                            sb.append(set.stream().filter(a -> !a.isEmpty()).collect(Collectors.joining(";")));
-                            sb.append("\"");
-                            if (++i < map.size())
-                                sb.append(",");
-                        }
-                        uniques.put(newId, sb.toString());
-                    }
-                }
+        private void addRel(CSVExternalSorter sorter, Map<String, String> replaces, String line) throws IOException {
+            int firstIdx = line.indexOf("\",\"");
+            int secondIdx = line.indexOf("\",\"", firstIdx + 3);
+            String id1 = line.substring(1, firstIdx).trim();
+            String id2 = line.substring(firstIdx + 3, secondIdx).trim();
+            String newId = getLastReplace(replaces, id1);
+            String newId2 = getLastReplace(replaces, id2);
+            if (!newId.equals(id1) || !newId2.equals(id2)) {
+                line = "\"" + newId + "\",\"" + newId2 + line.substring(secondIdx);
             }
+            sorter.add(line, "");
+        }
+
+        private void addNode(CSVExternalSorter sorter, Map<String, String> replaces, String line) throws IOException {
+            String id = line.substring(1, line.indexOf("\",\"")).trim();
+            String newId = getLastReplace(replaces, id);
+            // only nodes not replaced by other ones are kept, merged with their
+            // replaced nodes
+            sorter.add(newId, (id.equals(newId) ? FINAL_NODE : REPLACED_NODE) + line);
+        }
 
-            try (BufferedWriter writer = new BufferedWriter(
-                    new OutputStreamWriter(new FileOutputStream(output), Charset.forName("utf-8")))) {
-                for (Entry<String, String> entry : uniques.entrySet()) {
-                    if (finalIds.contains(entry.getKey())) {
-                        writer.write(entry.getValue());
-                        writer.write("\r\n");
+        private String mergeNodes(String newId, List<String> lines) {
+            boolean isFinal = false;
+            for (String line : lines) {
+                isFinal |= line.charAt(0) == FINAL_NODE;
+            }
+            if (!isFinal) {
+                return null;
+            }
+            if (lines.size() == 1) {
+                return lines.get(0).substring(1);
+            }
+            TreeMap<Integer, Set<String>> map = new TreeMap<>();
+            for (String line : lines) {
+                String[] vals = split(line.substring(1), "\",\"");
+                for (int i = 0; i < vals.length; i++) {
+                    Set<String> vs = map.get(i);
+                    if (vs == null) {
+                        vs = new TreeSet<>(StringUtil.getIgnoreCaseComparator());
+                        map.put(i, vs);
                     }
+                    if (i == 0)
+                        vs.add(newId);
+                    else
+                        vs.addAll(Arrays.asList(vals[i].replaceAll("\"", "").split(";")));
                 }
             }
-
+            StringBuilder sb = new StringBuilder();
+            int i = 0;
+            for (Set<String> set : map.values()) {
+                sb.append("\"");
+                sb.append(set.stream().filter(a -> !a.isEmpty()).collect(Collectors.joining(";")));
+                sb.append("\"");
+                if (++i < map.size())
+                    sb.append(",");
+            }
+            return sb.toString();
         }
 
         private String[] split(String string, String pattern) {
@@ -52,6 +52,9 @@ private void runPostImportOps(File output) throws IOException {
             runPostGenerationStatements(graphService, config);
             groupContacts(graphService, config);
 
+            GraphSearchIndex.build(graphService.getGraphDb(), output);
+            GraphSummary.build(graphService.getGraphDb(), output);
+
         } finally {
             if (graphService != null) {
                 graphService.stop();
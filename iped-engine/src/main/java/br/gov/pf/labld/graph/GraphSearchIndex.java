@@ -0,0 +1,206 @@
+package br.gov.pf.labld.graph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.lucene.analysis.core.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterable;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Inverted index of node property values by their trigrams, so a substring
+ * search does not scan every node of the graph. Each node is a document with
+ * its property values, in upper case, and the trigrams of those values. Every
+ * value suffix shorter than a trigram is indexed too, so search terms shorter
+ * than a trigram are prefixes of some indexed gram. Candidates are checked
+ * against the stored values.
+ */
+public class GraphSearchIndex implements Closeable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(GraphSearchIndex.class);
+
+    public static final String INDEX_DIR = "search-index";
+
+    private static final int GRAM_SIZE = 3;
+
+    private static final int MAX_CLAUSES = 512;
+
+    private static final String ID = "id";
+
+    private static final String VALUE = "value";
+
+    private static final String GRAM = "gram";
+
+    public static interface NodeIdListener {
+
+        boolean nodeFound(long id);
+    }
+
+    private final DirectoryReader reader;
+
+    private final IndexSearcher searcher;
+
+    public static File getIndexDir(File dbHome) {
+        return new File(dbHome, GraphTask.DB_DATA_DIR + "/" + INDEX_DIR);
+    }
+
+    /**
+     * @return the index of the graph database or null if it was not created
+     */
+    public static GraphSearchIndex open(File dbHome) throws IOException {
+        File dir = getIndexDir(dbHome);
+        if (!dir.exists()) {
+            return null;
+        }
+        return new GraphSearchIndex(DirectoryReader.open(FSDirectory.open(dir.toPath())));
+    }
+
+    private GraphSearchIndex(DirectoryReader reader) {
+        this.reader = reader;
+        this.searcher = new IndexSearcher(reader);
+    }
+
+    /**
+     * Indexes the properties of all nodes of the graph database.
+     */
+    public static void build(GraphDatabaseService graphDB, File dbHome) throws IOException {
+        long start = System.currentTimeMillis();
+        File dir = getIndexDir(dbHome);
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        IndexWriterConfig config = new IndexWriterConfig(new KeywordAnalyzer());
+        config.setOpenMode(OpenMode.CREATE);
+        config.setRAMBufferSizeMB(64);
+        long count = 0;
+        try (IndexWriter writer = new IndexWriter(FSDirectory.open(dir.toPath()), config);
+                Transaction tx = graphDB.beginTx()) {
+            ResourceIterable<Node> nodes = tx.getAllNodes();
+            for (Node node : nodes) {
+                Document doc = new Document();
+                doc.add(new StoredField(ID, node.getId()));
+                Set<String> grams = new LinkedHashSet<>();
+                for (Object value : node.getAllProperties().values()) {
+                    String str = toSearchString(value);
+                    if (str != null && !str.isEmpty()) {
+                        doc.add(new StoredField(VALUE, str));
+                        addGrams(str, grams);
+                    }
+                }
+                for (String gram : grams) {
+                    doc.add(new StringField(GRAM, gram, Store.NO));
+                }
+                writer.addDocument(doc);
+                count++;
+            }
+            tx.commit();
+        }
+        LOGGER.info("Graph search index of {} nodes created in {}ms.", count, System.currentTimeMillis() - start);
+    }
+
+    private static String toSearchString(Object value) {
+        if (value == null || value.getClass().isArray()) {
+            return null;
+        }
+        return value.toString().toUpperCase();
+    }
+
+    private static void addGrams(String str, Set<String> grams) {
+        for (int i = 0; i < str.length(); i++) {
+            grams.add(str.substring(i, Math.min(i + GRAM_SIZE, str.length())));
+        }
+    }
+
+    /**
+     * Finds nodes with some property value containing the text, case
+     * insensitive.
+     */
+    public void search(String text, NodeIdListener listener) throws IOException {
+        String upper = text.toUpperCase();
+        if (upper.isEmpty()) {
+            return;
+        }
+        Query query;
+        if (upper.length() < GRAM_SIZE) {
+            query = new PrefixQuery(new Term(GRAM, upper));
+        } else {
+            Set<String> grams = new LinkedHashSet<>();
+            for (int i = 0; i + GRAM_SIZE <= upper.length() && grams.size() < MAX_CLAUSES; i++) {
+                grams.add(upper.substring(i, i + GRAM_SIZE));
+            }
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            for (String gram : grams) {
+                builder.add(new TermQuery(new Term(GRAM, gram)), Occur.FILTER);
+            }
+            query = builder.build();
+        }
+
+        List<Integer> docs = new ArrayList<>();
+        searcher.search(query, new SimpleCollector() {
+            private int docBase;
+
+            @Override
+            protected void doSetNextReader(LeafReaderContext context) throws IOException {
+                docBase = context.docBase;
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                docs.add(docBase + doc);
+            }
+
+            @Override
+            public ScoreMode scoreMode() {
+                return ScoreMode.COMPLETE_NO_SCORES;
+            }
+        });
+
+        for (int doc : docs) {
+            Document document = reader.document(doc);
+            for (IndexableField value : document.getFields(VALUE)) {
+                if (value.stringValue().contains(upper)) {
+                    if (!listener.nodeFound(document.getField(ID).numericValue().longValue())) {
+                        return;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+}
@@ -1,25 +1,31 @@
 package br.gov.pf.labld.graph;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import org.apache.commons.io.FileUtils;
 import org.neo4j.dbms.api.DatabaseManagementService;
 import org.neo4j.dbms.api.DatabaseManagementServiceBuilder;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Path;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
 import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
@@ -34,6 +40,8 @@ public class GraphServiceImpl implements GraphService {
     private GraphDatabaseService graphDB;
     private boolean started = false;
     private File dbHome;
+    private GraphSearchIndex searchIndex;
+    private GraphSummary summary;
 
     public void start(File dbHome) {
         if (!started) {
@@ -43,6 +51,13 @@ public void start(File dbHome) {
             managementService = new DatabaseManagementServiceBuilder(dbHome.toPath()).build();
             graphDB = managementService.database(GraphTask.DB_NAME);
 
+            try {
+                searchIndex = GraphSearchIndex.open(dbHome);
+            } catch (IOException e) {
+                LOGGER.warn("Error opening graph search index, falling back to full scan.", e);
+            }
+            openSummary();
+
             started = true;
 
         } else {
@@ -54,12 +69,40 @@ public synchronized void stop() {
         if (started) {
             LOGGER.info("Shutting down neo4j service.");
             managementService.shutdown();
+            if (searchIndex != null) {
+                try {
+                    searchIndex.close();
+                } catch (IOException e) {
+                    LOGGER.warn("Error closing graph search index.", e);
+                }
+                searchIndex = null;
+            }
+            closeSummary();
             started = false;
         } else {
             LOGGER.info("Service already stopped.");
         }
     }
 
+    private void openSummary() {
+        try {
+            summary = GraphSummary.open(dbHome);
+        } catch (IOException e) {
+            LOGGER.warn("Error opening graph summary, falling back to queries.", e);
+        }
+    }
+
+    private void closeSummary() {
+        if (summary != null) {
+            try {
+                summary.close();
+            } catch (IOException e) {
+                LOGGER.warn("Error closing graph summary.", e);
+            }
+            summary = null;
+        }
+    }
+
     public GraphDatabaseService getGraphDb() {
         return graphDB;
     }
@@ -71,6 +114,9 @@ public synchronized File getDbHome() {
 
     @Override
     public List<Long> getMoreConnectedNodes(int maxNodes) {
+        if (summary != null && maxNodes <= GraphSummary.TOP_NODES) {
+            return summary.getMoreConnectedNodes(maxNodes);
+        }
         Transaction tx = null;
         List<Long> ids = new ArrayList<>();
         try {
@@ -143,82 +189,80 @@ public void getNodes(Collection<Long> ids, NodeQueryListener listener) {
     @Override
     public void getNeighboursWithLabels(Collection<String> labels, Long nodeId, NodeEdgeQueryListener listener,
             int maxNodes) {
-        Transaction tx = null;
-        try {
-            tx = graphDB.beginTx();
-
-            HashMap<String, Object> parameters = new HashMap<>(1);
-            parameters.put("labels", labels);
-            parameters.put("nodeId", nodeId);
-            Result result = tx.execute(
-                    "MATCH (n)-[r]-(m) WHERE ID(n) = $nodeId AND ANY(l IN LABELS(m) WHERE l IN $labels) RETURN m as node, r as edge",
-                    parameters);
-            if (maxNodes == -1) {
-                emitAllNeighbours(result, listener);
-            } else {
-                emitTopNeighbours(result, listener, maxNodes);
+        if (summary != null) {
+            try {
+                Map<String, Integer> counts = summary.getNeighbourLabelCounts(nodeId);
+                if (labels.stream().noneMatch(counts::containsKey)) {
+                    return;
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Error reading graph summary.", e);
             }
-
-            tx.commit();
-        } finally {
-            tx.close();
         }
+        Set<String> labelSet = new HashSet<>(labels);
+        getNeighbours(nodeId, new RelationshipType[0], m -> {
+            for (Label label : m.getLabels()) {
+                if (labelSet.contains(label.name())) {
+                    return true;
+                }
+            }
+            return false;
+        }, listener, maxNodes);
     }
 
     @Override
     public void getNeighbours(Long id, NodeEdgeQueryListener listener, int maxNodes) {
-        Transaction tx = null;
-        try {
-            tx = graphDB.beginTx();
-
-            HashMap<String, Object> parameters = new HashMap<>(1);
-            parameters.put("param", id);
-            Result result = tx.execute("MATCH (n)-[r]-(m) WHERE ID(n) = $param RETURN m as node, r as edge",
-                    parameters);
-            if (maxNodes == -1) {
-                emitAllNeighbours(result, listener);
-            } else {
-                emitTopNeighbours(result, listener, maxNodes);
-            }
-
-            tx.commit();
-        } finally {
-            tx.close();
-        }
+        getNeighbours(id, new RelationshipType[0], m -> true, listener, maxNodes);
     }
 
     @Override
     public void getNeighboursWithRelationships(Collection<String> relationships, Long nodeId,
             NodeEdgeQueryListener listener, int maxNodes) {
+        RelationshipType[] types = relationships.stream().map(RelationshipType::withName)
+                .toArray(RelationshipType[]::new);
+        getNeighbours(nodeId, types, m -> true, listener, maxNodes);
+    }
+
+    /**
+     * Traverses the relationships of the node directly, without planning and
+     * running a Cypher query for each expansion.
+     */
+    private void getNeighbours(Long nodeId, RelationshipType[] types, Predicate<Node> filter,
+            NodeEdgeQueryListener listener, int maxNodes) {
         Transaction tx = null;
         try {
             tx = graphDB.beginTx();
 
-            HashMap<String, Object> parameters = new HashMap<>(1);
-            parameters.put("nodeId", nodeId);
-            String query = "MATCH (n)-[r:$types]-(m) WHERE ID(n) = $nodeId RETURN m as node, r as edge";
-            query = relationships.isEmpty() ? query.replace(":$types", "")
-                    : query.replace("$types", relationships.stream().collect(Collectors.joining("|:")));
-            Result result = tx.execute(query, parameters);
+            Node node;
+            try {
+                node = tx.getNodeById(nodeId);
+            } catch (NotFoundException e) {
+                return;
+            }
+            Iterable<Relationship> rels = types.length == 0 ? node.getRelationships() : node.getRelationships(types);
             if (maxNodes == -1) {
-                emitAllNeighbours(result, listener);
+                emitAllNeighbours(node, rels, filter, listener);
             } else {
-                emitTopNeighbours(result, listener, maxNodes);
+                emitTopNeighbours(node, rels, filter, listener, maxNodes);
             }
+
             tx.commit();
         } finally {
             tx.close();
         }
     }
 
-    private void emitAllNeighbours(Result result, NodeEdgeQueryListener listener) {
+    private void emitAllNeighbours(Node node, Iterable<Relationship> rels, Predicate<Node> filter,
+            NodeEdgeQueryListener listener) {
         boolean proceed = true;
-        while (result.hasNext() && proceed) {
-            Map<String, Object> next = result.next();
-            Node node = (Node) next.get("node");
-            proceed = listener.nodeFound(node);
-            Relationship edge = (Relationship) next.get("edge");
-            proceed = proceed && listener.edgeFound(edge);
+        Iterator<Relationship> iterator = rels.iterator();
+        while (iterator.hasNext() && proceed) {
+            Relationship edge = iterator.next();
+            Node other = edge.getOtherNode(node);
+            if (filter.test(other)) {
+                proceed = listener.nodeFound(other);
+                proceed = proceed && listener.edgeFound(edge);
+            }
         }
     }
 
@@ -237,17 +281,19 @@ public int compareTo(NodeRels o) {
         }
     }
 
-    private void emitTopNeighbours(Result result, NodeEdgeQueryListener listener, int top) {
+    private void emitTopNeighbours(Node node, Iterable<Relationship> rels, Predicate<Node> filter,
+            NodeEdgeQueryListener listener, int top) {
         HashMap<Long, NodeRels> edgeMap = new HashMap<>();
-        while (result.hasNext()) {
-            Map<String, Object> next = result.next();
-            Node node = (Node) next.get("node");
-            NodeRels nodeRels = edgeMap.get(node.getId());
+        for (Relationship edge : rels) {
+            Node other = edge.getOtherNode(node);
+            NodeRels nodeRels = edgeMap.get(other.getId());
             if (nodeRels == null) {
-                nodeRels = new NodeRels(node, new ArrayList<>());
-                edgeMap.put(node.getId(), nodeRels);
+                if (!filter.test(other)) {
+                    continue;
+                }
+                nodeRels = new NodeRels(other, new ArrayList<>());
+                edgeMap.put(other.getId(), nodeRels);
             }
-            Relationship edge = (Relationship) next.get("edge");
             nodeRels.rels.add(edge);
         }
         List<NodeRels> list = new ArrayList<>(edgeMap.values());
@@ -318,6 +364,15 @@ public void getPaths(Long source, Long target, int maxDistance, PathQueryListene
 
     @Override
     public void search(String param, NodeQueryListener listener) {
+        if (searchIndex != null) {
+            try (Transaction tx = graphDB.beginTx()) {
+                searchIndex.search(param, id -> listener.nodeFound(tx.getNodeById(id)));
+                tx.commit();
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Error searching graph search index, falling back to full scan.", e);
+            }
+        }
         Transaction tx = null;
         try {
             tx = graphDB.beginTx();
@@ -344,6 +399,16 @@ public void search(String param, NodeQueryListener listener) {
 
     @Override
     public void findConnections(Long id, ConnectionQueryListener listener) {
+        if (summary != null) {
+            try {
+                for (Entry<String, Integer> entry : summary.getNeighbourLabelCounts(id).entrySet()) {
+                    listener.connectionsFound(entry.getKey(), entry.getValue());
+                }
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Error reading graph summary, falling back to query.", e);
+            }
+        }
         Transaction tx = null;
         try {
             tx = graphDB.beginTx();
@@ -617,6 +682,16 @@ public int deleteRelationshipsFromDatasource(String evidenceUUID) {
         } finally {
             tx.close();
         }
+        if (deletions > 0 && summary != null) {
+            closeSummary();
+            try {
+                GraphSummary.build(graphDB, dbHome);
+            } catch (IOException e) {
+                LOGGER.warn("Error updating graph summary, removing it.", e);
+                FileUtils.deleteQuietly(GraphSummary.getSummaryDir(dbHome));
+            }
+            openSummary();
+        }
         return (int) deletions;
     }
 
@@ -0,0 +1,218 @@
+package br.gov.pf.labld.graph;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Degree ranking and neighbourhood summary of the graph nodes, computed after
+ * the import so the analysis window does not scan the whole database to find
+ * the most connected nodes or to count the neighbours of a node by label. The
+ * neighbour counts are kept in files addressed by node id and read on demand,
+ * only the label names and the ranking are loaded in memory.
+ */
+public class GraphSummary implements Closeable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(GraphSummary.class);
+
+    public static final String SUMMARY_DIR = "graph-summary";
+
+    public static final int TOP_NODES = 1000;
+
+    private static final String LABEL_OFFSETS_FILE = "label-offsets.bin";
+
+    private static final String LABEL_COUNTS_FILE = "label-counts.bin";
+
+    private static final String TOP_FILE = "top.bin";
+
+    private static final String LABELS_FILE = "labels.txt";
+
+    private final FileChannel labelOffsets;
+
+    private final FileChannel labelCounts;
+
+    private final List<String> labels;
+
+    private final long[] topNodes;
+
+    public static File getSummaryDir(File dbHome) {
+        return new File(dbHome, GraphTask.DB_DATA_DIR + "/" + SUMMARY_DIR);
+    }
+
+    /**
+     * @return the summary of the graph database or null if it was not created
+     */
+    public static GraphSummary open(File dbHome) throws IOException {
+        File dir = getSummaryDir(dbHome);
+        if (!new File(dir, LABELS_FILE).exists()) {
+            return null;
+        }
+        return new GraphSummary(dir);
+    }
+
+    private GraphSummary(File dir) throws IOException {
+        labels = Files.readAllLines(new File(dir, LABELS_FILE).toPath(), StandardCharsets.UTF_8);
+        ByteBuffer top = ByteBuffer.wrap(Files.readAllBytes(new File(dir, TOP_FILE).toPath()));
+        topNodes = new long[top.remaining() / Long.BYTES];
+        top.asLongBuffer().get(topNodes);
+        labelOffsets = FileChannel.open(new File(dir, LABEL_OFFSETS_FILE).toPath(), StandardOpenOption.READ);
+        labelCounts = FileChannel.open(new File(dir, LABEL_COUNTS_FILE).toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Computes the summary of all nodes of the graph database. The label names
+     * file is written last, so an incomplete summary is never opened.
+     */
+    public static void build(GraphDatabaseService graphDB, File dbHome) throws IOException {
+        long start = System.currentTimeMillis();
+        File dir = getSummaryDir(dbHome);
+        if (dir.exists()) {
+            FileUtils.deleteDirectory(dir);
+        }
+        dir.mkdirs();
+
+        Map<String, Integer> labelIds = new LinkedHashMap<>();
+        PriorityQueue<long[]> top = new PriorityQueue<>((a, b) -> Long.compare(a[1], b[1]));
+        long count = 0;
+        try (FileChannel labelOffsets = open(dir, LABEL_OFFSETS_FILE);
+                FileChannel labelCounts = open(dir, LABEL_COUNTS_FILE);
+                Transaction tx = graphDB.beginTx()) {
+
+            ByteBuffer longBuf = ByteBuffer.allocate(Long.BYTES);
+            for (Node node : tx.getAllNodes()) {
+                long id = node.getId();
+                int degree = node.getDegree();
+                if (degree > 0) {
+                    top.add(new long[] { id, degree });
+                    if (top.size() > TOP_NODES) {
+                        top.poll();
+                    }
+                    Map<Integer, Integer> counts = countNeighbourLabels(node, labelIds);
+                    long offset = labelCounts.position();
+                    ByteBuffer buf = ByteBuffer.allocate(Integer.BYTES * (1 + 2 * counts.size()));
+                    buf.putInt(counts.size());
+                    for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+                        buf.putInt(entry.getKey()).putInt(entry.getValue());
+                    }
+                    buf.flip();
+                    labelCounts.write(buf);
+                    // zero means no entry, as file holes are read as zeros
+                    longBuf.clear();
+                    longBuf.putLong(offset + 1).flip();
+                    labelOffsets.write(longBuf, id * Long.BYTES);
+                }
+                count++;
+            }
+            tx.commit();
+        }
+
+        List<long[]> sorted = new ArrayList<>(top);
+        sorted.sort((a, b) -> a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+        ByteBuffer topBuf = ByteBuffer.allocate(sorted.size() * Long.BYTES);
+        for (long[] entry : sorted) {
+            topBuf.putLong(entry[0]);
+        }
+        Files.write(new File(dir, TOP_FILE).toPath(), topBuf.array());
+        Files.write(new File(dir, LABELS_FILE).toPath(), labelIds.keySet(), StandardCharsets.UTF_8);
+
+        LOGGER.info("Graph summary of {} nodes created in {}ms.", count, System.currentTimeMillis() - start);
+    }
+
+    private static FileChannel open(File dir, String name) throws IOException {
+        return FileChannel.open(new File(dir, name).toPath(), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Counts distinct neighbours of the node by label, like
+     * {@link GraphServiceImpl#findConnections}.
+     */
+    private static Map<Integer, Integer> countNeighbourLabels(Node node, Map<String, Integer> labelIds) {
+        Set<Long> neighbours = new HashSet<>();
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (Relationship rel : node.getRelationships()) {
+            Node other = rel.getOtherNode(node);
+            if (neighbours.add(other.getId())) {
+                for (Label label : other.getLabels()) {
+                    Integer labelId = labelIds.computeIfAbsent(label.name(), l -> labelIds.size());
+                    counts.merge(labelId, 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return ids of the most connected nodes, by decreasing degree, at most
+     *         {@link #TOP_NODES}
+     */
+    public List<Long> getMoreConnectedNodes(int maxNodes) {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < topNodes.length && i < maxNodes; i++) {
+            ids.add(topNodes[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * @return number of distinct neighbours of the node by label
+     */
+    public Map<String, Integer> getNeighbourLabelCounts(long id) throws IOException {
+        ByteBuffer offsetBuf = ByteBuffer.allocate(Long.BYTES);
+        if (!read(labelOffsets, offsetBuf, id * Long.BYTES) || offsetBuf.getLong(0) == 0) {
+            return Collections.emptyMap();
+        }
+        long offset = offsetBuf.getLong(0) - 1;
+        ByteBuffer sizeBuf = ByteBuffer.allocate(Integer.BYTES);
+        read(labelCounts, sizeBuf, offset);
+        int size = sizeBuf.getInt(0);
+        ByteBuffer buf = ByteBuffer.allocate(size * 2 * Integer.BYTES);
+        read(labelCounts, buf, offset + Integer.BYTES);
+        buf.flip();
+        Map<String, Integer> counts = new HashMap<>(size * 2);
+        for (int i = 0; i < size; i++) {
+            counts.put(labels.get(buf.getInt()), buf.getInt());
+        }
+        return counts;
+    }
+
+    private static boolean read(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            int read = channel.read(buf, position + buf.position());
+            if (read == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        labelOffsets.close();
+        labelCounts.close();
+    }
+
+}
@@ -22,6 +22,7 @@ public class AudioTranscriptConfig extends AbstractTaskPropertiesConfig {
     private static final String LANG_KEY = "language";
     private static final String MIMES_KEY = "mimesToProcess";
     private static final String CONVERT_CMD_KEY = "convertCommand";
+    private static final String STREAM_CMD_KEY = "streamCommand";
     private static final String REQUEST_INTERVAL_KEY = "requestIntervalMillis";
     private static final String MAX_REQUESTS_KEY = "maxConcurrentRequests";
     private static final String MIN_WORD_SCORE = "minWordScore";
@@ -34,6 +35,7 @@ public class AudioTranscriptConfig extends AbstractTaskPropertiesConfig {
     private String serviceRegion;
     private int timeoutPerSec;
     private String convertCmd;
+    private String streamCmd;
     private int requestIntervalMillis = 0;
     private int maxConcurrentRequests;
     private float minWordScore = 0.7f;
@@ -70,6 +72,14 @@ public String getConvertCmd() {
         return convertCmd;
     }
 
+    /**
+     * Command to decode audios to raw PCM (16kHz, 16 bits, mono) written to
+     * stdout, or null if not configured.
+     */
+    public String getStreamCmd() {
+        return streamCmd;
+    }
+
     public float getMinWordScore() {
         return minWordScore;
     }
@@ -104,6 +114,10 @@ public void processProperties(UTF8Properties properties) {
         className = properties.getProperty(IMPL_CLASS_KEY).trim();
         serviceRegion = properties.getProperty(REGION_KEY).trim();
         convertCmd = properties.getProperty(CONVERT_CMD_KEY).trim();
+        String value = properties.getProperty(STREAM_CMD_KEY);
+        if (value != null && !value.trim().isEmpty()) {
+            streamCmd = value.trim();
+        }
         timeoutPerSec = Integer.valueOf(properties.getProperty(TIMEOUT_KEY).trim());
         requestIntervalMillis = Integer.valueOf(properties.getProperty(REQUEST_INTERVAL_KEY).trim());
         maxConcurrentRequests = Integer.valueOf(properties.getProperty(MAX_REQUESTS_KEY).trim());
@@ -1,6 +1,7 @@
 package dpf.sp.gpinf.indexer.config;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.nio.file.Path;
 
 import org.slf4j.Logger;
@@ -27,6 +28,8 @@ public class DocThumbTaskConfig extends AbstractTaskPropertiesConfig {
     private int maxPdfExternalMemory = 256;
     private boolean pdfEnabled;
     private boolean loEnabled;
+    private int loInstances = 0;
+    private int loRecycleAfter = 200;
 
     public int getPdfTimeout() {
         return pdfTimeout;
@@ -60,6 +63,22 @@ public boolean isLoEnabled() {
         return loEnabled;
     }
 
+    public int getLoInstances() {
+        return loInstances;
+    }
+
+    public int getLoRecycleAfter() {
+        return loRecycleAfter;
+    }
+
+    /**
+     * @return the settings changing the generated thumbs, used to fingerprint
+     *         reusable artifacts. Timeouts and instance counts are not included.
+     */
+    public Serializable getArtifactSettings() {
+        return new Serializable[] { thumbSize, externalPdfConversion, maxPdfExternalMemory, pdfEnabled, loEnabled };
+    }
+
     @Override
     public String getTaskEnableProperty() {
         return ENABLE_PROP;
@@ -103,6 +122,16 @@ public void processProperties(UTF8Properties properties) {
             loTimeout = Integer.parseInt(value);
         }
 
+        value = properties.getProperty("libreOfficeInstances");
+        if (value != null && !value.trim().isEmpty()) {
+            loInstances = Integer.parseInt(value.trim());
+        }
+
+        value = properties.getProperty("libreOfficeRecycleAfter");
+        if (value != null && !value.trim().isEmpty()) {
+            loRecycleAfter = Integer.parseInt(value.trim());
+        }
+
         value = properties.getProperty("timeoutIncPerMB");
         if (value != null && !value.trim().isEmpty()) {
             timeoutIncPerMB = Integer.parseInt(value);
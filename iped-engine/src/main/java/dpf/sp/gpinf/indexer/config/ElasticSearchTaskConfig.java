@@ -26,6 +26,8 @@ public class ElasticSearchTaskConfig extends AbstractTaskPropertiesConfig {
     private static final String MIN_BULK_SIZE_KEY = "min_bulk_size";
     private static final String MIN_BULK_ITEMS_KEY = "min_bulk_items";
     private static final String MAX_ASYNC_REQUESTS_KEY = "max_async_requests";
+    private static final String MAX_RETRIES_KEY = "max_retries";
+    private static final String RETRY_BACKOFF_KEY = "retry_backoff_millis";
     private static final String TIMEOUT_MILLIS_KEY = "timeout_millis";
     private static final String CONNECT_TIMEOUT_KEY = "connect_timeout_millis";
     private static final String CUSTOM_ANALYZER_KEY = "useCustomAnalyzer";
@@ -40,6 +42,8 @@ public class ElasticSearchTaskConfig extends AbstractTaskPropertiesConfig {
     private int connect_timeout = 5000;
     private int timeout_millis = 3600000;
     private int max_async_requests = 5;
+    private int max_retries = 5;
+    private int retry_backoff_millis = 1000;
     private int index_shards = 1;
     private int index_replicas = 1;
     private String index_policy = "";
@@ -91,6 +95,14 @@ public int getMax_async_requests() {
         return max_async_requests;
     }
 
+    public int getMax_retries() {
+        return max_retries;
+    }
+
+    public int getRetry_backoff_millis() {
+        return retry_backoff_millis;
+    }
+
     public int getIndex_shards() {
         return index_shards;
     }
@@ -130,6 +142,14 @@ public void processProperties(UTF8Properties props) {
         connect_timeout = Integer.valueOf(props.getProperty(CONNECT_TIMEOUT_KEY).trim());
         timeout_millis = Integer.valueOf(props.getProperty(TIMEOUT_MILLIS_KEY).trim());
         max_async_requests = Integer.valueOf(props.getProperty(MAX_ASYNC_REQUESTS_KEY).trim());
+        String value = props.getProperty(MAX_RETRIES_KEY);
+        if (value != null && !value.trim().isEmpty()) {
+            max_retries = Integer.valueOf(value.trim());
+        }
+        value = props.getProperty(RETRY_BACKOFF_KEY);
+        if (value != null && !value.trim().isEmpty()) {
+            retry_backoff_millis = Integer.valueOf(value.trim());
+        }
         index_shards = Integer.valueOf(props.getProperty(INDEX_SHARDS_KEY).trim());
         index_replicas = Integer.valueOf(props.getProperty(INDEX_REPLICAS_KEY).trim());
         index_policy = props.getProperty(INDEX_POLICY_KEY);
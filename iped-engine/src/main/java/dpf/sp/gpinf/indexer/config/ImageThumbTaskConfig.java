@@ -1,5 +1,7 @@
 package dpf.sp.gpinf.indexer.config;
 
+import java.io.Serializable;
+
 import dpf.sp.gpinf.indexer.util.UTF8Properties;
 
 public class ImageThumbTaskConfig extends AbstractTaskPropertiesConfig {
@@ -69,6 +71,15 @@ public int getMaxMPixelsInMemory() {
         return maxMPixelsInMemory;
     }
 
+    /**
+     * @return the settings changing the generated thumbs, used to fingerprint
+     *         reusable artifacts. Timeouts and thread counts are not included.
+     */
+    public Serializable getArtifactSettings() {
+        return new Serializable[] { enableExternalConv, useGraphicsMagick, extractThumb, thumbSize, lowResDensity,
+                highResDensity, maxMPixelsInMemory };
+    }
+
     @Override
     public String getTaskEnableProperty() {
         return ENABLE_PROP;
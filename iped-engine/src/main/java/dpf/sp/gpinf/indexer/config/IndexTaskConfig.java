@@ -29,6 +29,8 @@ public class IndexTaskConfig extends AbstractTaskPropertiesConfig {
     private int maxTokenLength = 255;
     private int[] extraCharsToIndexArray;
     private int commitIntervalSeconds = 1800;
+    private int ramBufferSizeMB = 0;
+    private int maxMergeThreads = 0;
 
     @Override
     public String getTaskEnableProperty() {
@@ -98,6 +100,16 @@ public void processProperties(UTF8Properties properties) {
             commitIntervalSeconds = Integer.parseInt(value.trim());
         }
 
+        value = properties.getProperty("ramBufferSizeMB"); //$NON-NLS-1$
+        if (value != null && !value.trim().isEmpty()) {
+            ramBufferSizeMB = Integer.parseInt(value.trim());
+        }
+
+        value = properties.getProperty("maxMergeThreads"); //$NON-NLS-1$
+        if (value != null && !value.trim().isEmpty()) {
+            maxMergeThreads = Integer.parseInt(value.trim());
+        }
+
     }
 
     private int[] convertExtraCharsToIndex(String chars) {
@@ -176,4 +188,20 @@ public int getCommitIntervalSeconds() {
         return commitIntervalSeconds;
     }
 
+    /**
+     * @return index writer RAM buffer size, 0 means it is computed from heap size
+     *         and number of workers
+     */
+    public int getRamBufferSizeMB() {
+        return ramBufferSizeMB;
+    }
+
+    /**
+     * @return max number of concurrent merge threads, 0 means it is computed
+     *         from the number of CPU cores
+     */
+    public int getMaxMergeThreads() {
+        return maxMergeThreads;
+    }
+
 }
@@ -25,6 +25,8 @@ public class LocalConfig extends AbstractPropertiesConfigurable {
 
     private static final String HASH_DB = "hashesDB";
 
+    private static final String ARTIFACT_STORE = "artifactStore"; //$NON-NLS-1$
+
     public static final DirectoryStream.Filter<Path> filter = new Filter<Path>() {
         @Override
         public boolean accept(Path entry) throws IOException {
@@ -36,7 +38,9 @@ public boolean accept(Path entry) throws IOException {
     private boolean outputOnSSD = false;
     private File ipedTemp, indexTemp;
     private int numThreads;
+    private int queueSpillThreshold = 100000;
     private File hashDbFile;
+    private File artifactStore;
     private String regripperFolder;
     private String mplayerWinPath;
 
@@ -100,6 +104,11 @@ public void processProperties(UTF8Properties properties) {
             numThreads = Runtime.getRuntime().availableProcessors();
         }
 
+        value = properties.getProperty("queueSpillThreshold"); //$NON-NLS-1$
+        if (value != null && !value.trim().isEmpty()) {
+            queueSpillThreshold = Integer.parseInt(value.trim());
+        }
+
         value = properties.getProperty("indexTempOnSSD"); //$NON-NLS-1$
         if (value != null) {
             value = value.trim();
@@ -124,6 +133,11 @@ public void processProperties(UTF8Properties properties) {
             setHashDbFile(new File(value.trim()));
         }
 
+        value = properties.getProperty(ARTIFACT_STORE);
+        if (value != null && !value.trim().isEmpty()) {
+            artifactStore = new File(value.trim());
+        }
+
         value = properties.getProperty("regripperFolder"); //$NON-NLS-1$
         if (value != null) {
             regripperFolder = value.trim();
@@ -169,6 +183,10 @@ public int getNumThreads() {
         return numThreads;
     }
 
+    public int getQueueSpillThreshold() {
+        return queueSpillThreshold;
+    }
+
     public File getHashDbFile() {
         return hashDbFile;
     }
@@ -176,4 +194,8 @@ public File getHashDbFile() {
     public void setHashDbFile(File hashDbFile) {
         this.hashDbFile = hashDbFile;
     }
+
+    public File getArtifactStore() {
+        return artifactStore;
+    }
 }
@@ -127,7 +127,9 @@ private IItem getEvidence(Path path, BasicFileAttributes attr) {
 
             if (args.isAddowner())
                 try {
-                    UserPrincipal owner = Files.getOwner(path);
+                    UserPrincipal owner = attr instanceof ParallelFileTreeWalker.PrefetchedAttributes
+                            ? ((ParallelFileTreeWalker.PrefetchedAttributes) attr).owner()
+                            : Files.getOwner(path);
                     if (owner != null)
                         item.setExtraAttribute(FS_OWNER, owner.toString());
 
@@ -150,9 +152,16 @@ public FolderVisitor(IItem parent) {
             }
         }
 
+        /**
+         * Items are created by this thread in the walking order, so their ids do not
+         * depend on the pool that lists the next directories and reads their
+         * attributes, which helps with network shares and many small files.
+         */
         public void walk(File file) throws IOException {
             Path startingDir = file.toPath();
-            Files.walkFileTree(startingDir, this);
+            try (ParallelFileTreeWalker walker = new ParallelFileTreeWalker(!listOnly && args.isAddowner())) {
+                walker.walk(startingDir, this);
+            }
         }
 
         @Override
@@ -34,6 +34,7 @@
 import dpf.sp.gpinf.indexer.process.Manager;
 import dpf.sp.gpinf.indexer.process.task.SkipCommitedTask;
 import dpf.sp.gpinf.indexer.util.HashValue;
+import gpinf.dev.data.CaseData;
 import gpinf.dev.data.Item;
 import iped3.ICaseData;
 
@@ -134,6 +135,10 @@ public void run() {
                     reader.read(parentsWithLostSubitems, manager);
                 }
 
+                if (!listOnly) {
+                    ((CaseData) caseData).setDataSourcesEnumerated();
+                }
+
             }
             if (!listOnly) {
                 Item evidence = new Item();
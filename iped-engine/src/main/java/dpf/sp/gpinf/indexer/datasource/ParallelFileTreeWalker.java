@@ -0,0 +1,456 @@
+package dpf.sp.gpinf.indexer.datasource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Walks a file tree like {@link Files#walkFileTree(Path, FileVisitor)}, calling
+ * the visitor from the calling thread and in the same order, while a pool lists
+ * the next directories and reads the attributes of their entries in advance.
+ * Directories are prefetched in the order they will be visited and read in
+ * batches of {@link #BATCH_SIZE} entries, so at most
+ * {@link #MAX_PREFETCHED_DIRS} batches of directories not visited yet wait in
+ * memory, besides the next batch of each directory being visited.
+ */
+class ParallelFileTreeWalker implements Closeable {
+
+    private static final int NUM_THREADS = 8;
+
+    private static final int MAX_PREFETCHED_DIRS = 256;
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Attributes read by the pool, including the owner if requested.
+     */
+    static class PrefetchedAttributes implements BasicFileAttributes {
+
+        private final BasicFileAttributes attrs;
+        private final UserPrincipal owner;
+        private final IOException ownerError;
+
+        private PrefetchedAttributes(BasicFileAttributes attrs, UserPrincipal owner, IOException ownerError) {
+            this.attrs = attrs;
+            this.owner = owner;
+            this.ownerError = ownerError;
+        }
+
+        /**
+         * @return the owner or null if it was not requested
+         */
+        UserPrincipal owner() throws IOException {
+            if (ownerError != null) {
+                throw ownerError;
+            }
+            return owner;
+        }
+
+        @Override
+        public FileTime lastModifiedTime() {
+            return attrs.lastModifiedTime();
+        }
+
+        @Override
+        public FileTime lastAccessTime() {
+            return attrs.lastAccessTime();
+        }
+
+        @Override
+        public FileTime creationTime() {
+            return attrs.creationTime();
+        }
+
+        @Override
+        public boolean isRegularFile() {
+            return attrs.isRegularFile();
+        }
+
+        @Override
+        public boolean isDirectory() {
+            return attrs.isDirectory();
+        }
+
+        @Override
+        public boolean isSymbolicLink() {
+            return attrs.isSymbolicLink();
+        }
+
+        @Override
+        public boolean isOther() {
+            return attrs.isOther();
+        }
+
+        @Override
+        public long size() {
+            return attrs.size();
+        }
+
+        @Override
+        public Object fileKey() {
+            return attrs.fileKey();
+        }
+    }
+
+    private static class Entry {
+
+        private final Path path;
+        private final PrefetchedAttributes attrs;
+        private final IOException error;
+
+        private Entry(Path path, PrefetchedAttributes attrs, IOException error) {
+            this.path = path;
+            this.attrs = attrs;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A batch of entries of a directory.
+     */
+    private static class DirContent {
+
+        /**
+         * Error opening the directory, which is then visited as a failed file.
+         */
+        private final IOException openError;
+        private final List<Entry> entries;
+        /**
+         * Error iterating or closing the directory, only in the last batch.
+         */
+        private final IOException error;
+        /**
+         * Listing of the next batch or null if this is the last one.
+         */
+        private final DirListing next;
+
+        private DirContent(IOException openError, List<Entry> entries, IOException error, DirListing next) {
+            this.openError = openError;
+            this.entries = entries;
+            this.error = error;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Listing of a batch of entries of a directory, done by the pool or by the
+     * visiting thread, the one that claims it first. The first batch also opens
+     * the directory, the next ones continue reading the same stream.
+     */
+    private class DirListing implements Runnable, Comparable<DirListing> {
+
+        /**
+         * Position of the directory in each level of the tree, the visiting order.
+         */
+        private final int[] order;
+        private final Path dir;
+        /**
+         * If this is the first batch, which opens the directory.
+         */
+        private final boolean first;
+        private DirectoryStream<Path> stream;
+        private Iterator<Path> iterator;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CompletableFuture<DirContent> content = new CompletableFuture<>();
+        private volatile boolean prefetched = false;
+
+        private DirListing(int[] order, Path dir) {
+            this(order, dir, null, null);
+        }
+
+        private DirListing(int[] order, Path dir, DirectoryStream<Path> stream, Iterator<Path> iterator) {
+            this.order = order;
+            this.dir = dir;
+            this.first = stream == null;
+            this.stream = stream;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void run() {
+            if (claimed.get()) {
+                return;
+            }
+            // next batches are only read ahead for directories being visited, so they
+            // are already bounded by the tree depth
+            if (first) {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            if (claimed.compareAndSet(false, true)) {
+                prefetched = first;
+                list();
+            } else if (first) {
+                permits.release();
+            }
+        }
+
+        private void list() {
+            if (stream == null) {
+                try {
+                    stream = Files.newDirectoryStream(dir);
+                    iterator = stream.iterator();
+                } catch (IOException e) {
+                    content.complete(new DirContent(e, Collections.emptyList(), null, null));
+                    return;
+                } catch (RuntimeException | Error e) {
+                    content.completeExceptionally(e);
+                    return;
+                }
+            }
+            List<Entry> entries = new ArrayList<>();
+            IOException error = null;
+            boolean last = true;
+            try {
+                while (iterator.hasNext()) {
+                    if (entries.size() == BATCH_SIZE) {
+                        last = false;
+                        break;
+                    }
+                    entries.add(readEntry(iterator.next()));
+                }
+            } catch (DirectoryIteratorException e) {
+                error = e.getCause();
+            } catch (RuntimeException | Error e) {
+                close(null);
+                content.completeExceptionally(e);
+                return;
+            }
+            if (last) {
+                content.complete(new DirContent(null, entries, close(error), null));
+            } else {
+                content.complete(new DirContent(null, entries, null, new DirListing(order, dir, stream, iterator)));
+            }
+        }
+
+        private IOException close(IOException error) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    return e;
+                }
+                error.addSuppressed(e);
+            }
+            return error;
+        }
+
+        private DirContent get() throws InterruptedException {
+            if (claimed.compareAndSet(false, true)) {
+                list();
+            }
+            try {
+                return content.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw (RuntimeException) e.getCause();
+            } finally {
+                releasePermit();
+            }
+        }
+
+        /**
+         * Called if the directory, or the rest of it, will not be visited.
+         */
+        private void skip() {
+            if (claimed.compareAndSet(false, true)) {
+                if (stream != null) {
+                    close(null);
+                }
+            } else {
+                content.whenComplete((c, e) -> {
+                    releasePermit();
+                    if (c != null && c.next != null) {
+                        c.next.skip();
+                    }
+                });
+            }
+        }
+
+        private void releasePermit() {
+            if (prefetched && content.isDone()) {
+                prefetched = false;
+                permits.release();
+            }
+        }
+
+        @Override
+        public int compareTo(DirListing o) {
+            return Arrays.compare(order, o.order);
+        }
+    }
+
+    private final boolean readOwner;
+
+    private final Semaphore permits = new Semaphore(MAX_PREFETCHED_DIRS);
+
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * @param readOwner
+     *            if the owner of each entry should be read with its attributes
+     */
+    ParallelFileTreeWalker(boolean readOwner) {
+        this.readOwner = readOwner;
+        this.pool = new ThreadPoolExecutor(NUM_THREADS, NUM_THREADS, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "FileTreePrefetcher"); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private Entry readEntry(Path path) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class,
+                    LinkOption.NOFOLLOW_LINKS);
+            UserPrincipal owner = null;
+            IOException ownerError = null;
+            if (readOwner) {
+                try {
+                    owner = Files.getOwner(path);
+                } catch (IOException e) {
+                    ownerError = e;
+                }
+            }
+            return new Entry(path, new PrefetchedAttributes(attrs, owner, ownerError), null);
+
+        } catch (IOException e) {
+            return new Entry(path, null, e);
+        }
+    }
+
+    /**
+     * Symbolic links are not followed, like the default of
+     * {@link Files#walkFileTree(Path, FileVisitor)}. The walk stops if interrupted.
+     */
+    void walk(Path start, FileVisitor<? super Path> visitor) throws IOException {
+        try {
+            visit(readEntry(start), new DirListing(new int[0], start), visitor);
+        } catch (InterruptedException e) {
+            // stop walking, like the visitor does
+        }
+    }
+
+    private FileVisitResult visit(Entry entry, DirListing listing, FileVisitor<? super Path> visitor)
+            throws IOException, InterruptedException {
+        if (entry.error != null) {
+            return visitor.visitFileFailed(entry.path, entry.error);
+        }
+        if (!entry.attrs.isDirectory()) {
+            return visitor.visitFile(entry.path, entry.attrs);
+        }
+        // like Files.walkFileTree(), directories that can not be opened are not
+        // pre visited
+        DirContent content = listing.get();
+        if (content.openError != null) {
+            return visitor.visitFileFailed(entry.path, content.openError);
+        }
+        FileVisitResult result;
+        IOException error = null;
+        try {
+            result = visitor.preVisitDirectory(entry.path, entry.attrs);
+            if (result != FileVisitResult.CONTINUE) {
+                return result;
+            }
+            int position = 0;
+            while (true) {
+                if (content.next != null) {
+                    // reads the next batch while this one is visited
+                    pool.execute(content.next);
+                }
+                result = visitEntries(listing.order, position, content.entries, visitor);
+                if (result == FileVisitResult.TERMINATE) {
+                    return result;
+                }
+                if (result == FileVisitResult.SKIP_SIBLINGS) {
+                    break;
+                }
+                if (content.next == null) {
+                    error = content.error;
+                    break;
+                }
+                position += content.entries.size();
+                content = content.next.get();
+            }
+        } finally {
+            if (content.next != null) {
+                content.next.skip();
+            }
+        }
+        result = visitor.postVisitDirectory(entry.path, error);
+        // like Files.walkFileTree(), SKIP_SIBLINGS is ignored after the post visit
+        return result == FileVisitResult.TERMINATE ? result : FileVisitResult.CONTINUE;
+    }
+
+    /**
+     * Visits a batch of entries, starting at the given position of their
+     * directory, and prefetches their subdirectories.
+     *
+     * @return TERMINATE or SKIP_SIBLINGS if the remaining entries of the directory
+     *         should not be visited, CONTINUE otherwise
+     */
+    private FileVisitResult visitEntries(int[] order, int position, List<Entry> entries,
+            FileVisitor<? super Path> visitor) throws IOException, InterruptedException {
+        DirListing[] subdirs = new DirListing[entries.size()];
+        for (int i = 0; i < subdirs.length; i++) {
+            Entry child = entries.get(i);
+            if (child.attrs != null && child.attrs.isDirectory()) {
+                int[] childOrder = Arrays.copyOf(order, order.length + 1);
+                childOrder[order.length] = position + i;
+                subdirs[i] = new DirListing(childOrder, child.path);
+                pool.execute(subdirs[i]);
+            }
+        }
+        try {
+            for (int i = 0; i < subdirs.length; i++) {
+                DirListing subdir = subdirs[i];
+                subdirs[i] = null;
+                FileVisitResult result = visit(entries.get(i), subdir, visitor);
+                if (result == FileVisitResult.TERMINATE || result == FileVisitResult.SKIP_SIBLINGS) {
+                    return result;
+                }
+            }
+            return FileVisitResult.CONTINUE;
+
+        } finally {
+            for (DirListing subdir : subdirs) {
+                if (subdir != null) {
+                    subdir.skip();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+}
@@ -32,7 +32,11 @@
 import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import javax.xml.parsers.SAXParser;
@@ -118,6 +122,18 @@ public class UfedXmlReader extends DataSourceReader {
 
     private static AtomicInteger counter = new AtomicInteger();
 
+    private static final int MAX_ITEM_THREADS = 4;
+
+    /**
+     * Max items waiting for the pool, the xml parsing thread finishes the items
+     * itself when the pool is behind.
+     */
+    private static final int MAX_PENDING_ITEMS = 1000;
+
+    private static interface ItemStep {
+        void run() throws Exception;
+    }
+
     File root, ufdrFile;
     ZipFile4j ufdr;
     UFDRInputStreamFactory uisf;
@@ -128,7 +144,9 @@ public class UfedXmlReader extends DataSourceReader {
     boolean ignoreSupportedChats = false;
     HashMap<String, String> ufdrPathToUfedId = new HashMap<>();
     private final List<String[]> deviceInfoData = new ArrayList<String[]>();
-    
+    private ThreadPoolExecutor itemPool;
+    private final AtomicReference<Exception> itemPoolError = new AtomicReference<>();
+
     public UfedXmlReader(ICaseData caseData, File output, boolean listOnly) {
         super(caseData, output, listOnly);
     }
@@ -214,6 +232,7 @@ public void read(File root, Item parent) throws Exception {
             xmlStream = lookUpXmlReportInputStream(root);
 
             configureParsers();
+            startItemPool();
 
             SAXParserFactory spf = SAXParserFactory.newInstance();
             spf.setNamespaceAware(true);
@@ -222,11 +241,55 @@ public void read(File root, Item parent) throws Exception {
             xmlReader.setContentHandler(new XMLContentHandler());
             xmlReader.setErrorHandler(new XMLErrorHandler());
             xmlReader.parse(new InputSource(new UFEDXMLWrapper(xmlStream)));
+
+            itemPool.shutdown();
+            itemPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            if (itemPoolError.get() != null) {
+                throw itemPoolError.get();
+            }
         } finally {
             IOUtil.closeQuietly(xmlStream);
+            if (itemPool != null) {
+                itemPool.shutdownNow();
+            }
         }
     }
 
+    /**
+     * Items are created by the xml parsing thread, which keeps the state shared
+     * between xml elements, like extraction names, msisdns and attachments seen
+     * before their messages. The remaining work of each item, like reading media
+     * results and contact photos from the ufdr, writing previews and adding it
+     * to the processing queue, is done by a pool, so workers start as soon as
+     * items are ready and the parsing is not delayed by it.
+     */
+    private void startItemPool() {
+        int numThreads = Math.min(MAX_ITEM_THREADS, Runtime.getRuntime().availableProcessors());
+        itemPool = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING_ITEMS), r -> {
+                    Thread thread = new Thread(r, "UfedXmlReaderItemPool"); //$NON-NLS-1$
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    private void submitItemStep(ItemStep step) throws SAXException {
+        Exception error = itemPoolError.get();
+        if (error != null) {
+            throw new SAXException(error);
+        }
+        itemPool.execute(() -> {
+            if (itemPoolError.get() != null) {
+                return;
+            }
+            try {
+                step.run();
+            } catch (Exception e) {
+                itemPoolError.compareAndSet(null, e);
+            }
+        });
+    }
+
     private void configureParsers() {
         configureParsers(false);
     }
@@ -765,12 +828,11 @@ else if (item != null && !value.isEmpty()) {
 
             } else if (qName.equals("file")) { //$NON-NLS-1$
                 itemSeq.remove(itemSeq.size() - 1);
-                setMediaResult(item);
-                try {
-                    caseData.addItem(item);
-                } catch (Exception e) {
-                    throw new SAXException(e);
-                }
+                Item file = item;
+                submitItemStep(() -> {
+                    setMediaResult(file);
+                    caseData.addItem(file);
+                });
 
             } else if (qName.equals("model") && ( //$NON-NLS-1$
             parentNode.element.equals("modelType") || //$NON-NLS-1$
@@ -780,10 +842,9 @@ else if (item != null && !value.isEmpty()) {
                 boolean seenAttachment = false;
                 itemSeq.remove(itemSeq.size() - 1);
                 String type = currentNode.atts.get("type"); //$NON-NLS-1$
-                if ("Contact".equals(type) || "UserAccount".equals(type)) { //$NON-NLS-1$ //$NON-NLS-2$
-                    createContactPreview(item);
-
-                } else if ("Email".equals(type)) { //$NON-NLS-1$
+                // contact previews read photos from the ufdr, so they are written by the item pool
+                boolean contactPreview = "Contact".equals(type) || "UserAccount".equals(type); //$NON-NLS-1$ //$NON-NLS-2$
+                if ("Email".equals(type)) { //$NON-NLS-1$
                     createEmailPreview(item);
 
                 } else if ("Attachment".equals(type)) { //$NON-NLS-1$
@@ -943,18 +1004,19 @@ else if ("Bcc".equalsIgnoreCase(role)) //$NON-NLS-1$
                     if (!ignoreItems) {
                         // process seen attachments later
                         if (!seenAttachment) {
-                            processItem(item);
-                            List<Item> seenAttachs = seenAttachsPerId.get(item.getId());
-                            if (seenAttachs != null && numInstantMsgAttachs > 1) {
-                                for (Item attach : seenAttachs) {
-                                    processItem(attach);
-                                }
-                            } else if (seenAttachs != null) {
+                            // item must not be changed after leaving the parsing thread
+                            List<Item> seenAttachs = seenAttachsPerId.remove(item.getId());
+                            if (seenAttachs != null && numInstantMsgAttachs <= 1) {
                                 item.getMetadata().set(ExtraProperties.LINKED_ITEMS,
                                         ESCAPED_UFED_ID + ":" + prevUfedId);
                                 caseData.incDiscoveredEvidences(-1);
                             }
-                            seenAttachsPerId.remove(item.getId());
+                            processItem(item, contactPreview);
+                            if (seenAttachs != null && numInstantMsgAttachs > 1) {
+                                for (Item attach : seenAttachs) {
+                                    processItem(attach, false);
+                                }
+                            }
                         }
                     } else {
                         caseData.incDiscoveredEvidences(-1);
@@ -1001,15 +1063,15 @@ else if ("Bcc".equalsIgnoreCase(role)) //$NON-NLS-1$
 
         }
 
-        private void processItem(Item item) throws SAXException {
-            try {
+        private void processItem(Item item, boolean contactPreview) throws SAXException {
+            fillMissingInfo(item);
+            submitItemStep(() -> {
+                if (contactPreview) {
+                    createContactPreview(item);
+                }
                 caseData.incDiscoveredVolume(item.getLength());
-                fillMissingInfo(item);
                 caseData.addItem(item);
-
-            } catch (Exception e) {
-                throw new SAXException(e);
-            }
+            });
         }
 
         private HashMap<String, String[]> toCache = new LinkedHashMap<String, String[]>(16, 0.75f, true) {
@@ -1280,7 +1342,7 @@ private String normalizePaths(String path) {
             return sb.toString();
         }
 
-        private FileInputStreamFactory getPreviewInputStreamFactory() {
+        private synchronized FileInputStreamFactory getPreviewInputStreamFactory() {
             if (previewFisf == null) {
                 previewFisf = new FileInputStreamFactory(output.getParentFile().toPath());
             }
@@ -228,7 +228,7 @@ synchronized void receive(char cbuf[], int off, int len) throws IOException {
 
         writeSide = Thread.currentThread();
 
-        while (--len >= 0) {
+        while (len > 0) {
             while (in == out) {
                 if ((readSide != null) && !readSide.isAlive()) {
                     throw new IOException("Pipe broken"); //$NON-NLS-1$
@@ -245,7 +245,12 @@ synchronized void receive(char cbuf[], int off, int len) throws IOException {
                 in = 0;
                 out = 0;
             }
-            buffer[in++] = cbuf[off++];
+            /* copy up to the end of the contiguous free region */
+            int n = Math.min(len, (in < out ? out : buffer.length) - in);
+            System.arraycopy(cbuf, off, buffer, in, n);
+            in += n;
+            off += n;
+            len -= n;
             if (in >= buffer.length) {
                 in = 0;
             }
@@ -368,9 +373,14 @@ public synchronized int read(char cbuf[], int off, int len) throws IOException {
         }
         cbuf[off] = (char) c;
         int rlen = 1;
-        while ((in >= 0) && (--len > 0)) {
-            cbuf[off + rlen] = buffer[out++];
-            rlen++;
+        len--;
+        while ((in >= 0) && (len > 0)) {
+            /* copy up to the end of the contiguous filled region */
+            int n = Math.min(len, (in > out ? in : buffer.length) - out);
+            System.arraycopy(buffer, out, cbuf, off + rlen, n);
+            out += n;
+            rlen += n;
+            len -= n;
             if (out >= buffer.length) {
                 out = 0;
             }
@@ -137,6 +137,33 @@ public class IndexItem extends BasicProps {
             .synchronizedMap(new TreeMap<String, Class<?>>(StringUtil.getIgnoreCaseComparator()));
     private static Map<String, Class<?>> newtypesMap = new ConcurrentHashMap<String, Class<?>>();
 
+    // lock free cache of typesMap lookups by exact key, typesMap is synchronized
+    // and case insensitive, so it is costly to query it for every metadata value
+    /**
+     * Replaced, never cleared, so a type read before a promotion can not be put
+     * back in the cache in use.
+     */
+    private static volatile Map<String, Class<?>> typesCache = new ConcurrentHashMap<String, Class<?>>();
+
+    private static final BytesRef TRUE_BYTES = new BytesRef(Boolean.TRUE.toString());
+    private static final BytesRef FALSE_BYTES = new BytesRef(Boolean.FALSE.toString());
+
+    private static final int MAX_REUSED_BUFFER_SIZE = 5 * MAX_DOCVALUE_SIZE;
+
+    private static final ThreadLocal<char[]> normalizeBuffer = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[MAX_REUSED_BUFFER_SIZE];
+        }
+    };
+
+    private static final ThreadLocal<TimeStampBuffers> timeStampBuffers = new ThreadLocal<TimeStampBuffers>() {
+        @Override
+        protected TimeStampBuffers initialValue() {
+            return new TimeStampBuffers();
+        }
+    };
+
     private static FieldType contentField;
     private static FieldType storedTokenizedNoNormsField = new FieldType();
     private static FieldType dateField = new FieldType();
@@ -182,31 +209,31 @@ private static final FieldType getContentField() {
     }
 
     public static boolean isByte(String field) {
-        return Byte.class.equals(typesMap.get(field));
+        return Byte.class.equals(getType(field));
     }
 
     public static boolean isShort(String field) {
-        return Short.class.equals(typesMap.get(field));
+        return Short.class.equals(getType(field));
     }
 
     public static boolean isInteger(String field) {
-        return Integer.class.equals(typesMap.get(field));
+        return Integer.class.equals(getType(field));
     }
 
     public static boolean isLong(String field) {
-        return Long.class.equals(typesMap.get(field));
+        return Long.class.equals(getType(field));
     }
 
     public static boolean isFloat(String field) {
-        return Float.class.equals(typesMap.get(field));
+        return Float.class.equals(getType(field));
     }
 
     public static boolean isDouble(String field) {
-        return Double.class.equals(typesMap.get(field));
+        return Double.class.equals(getType(field));
     }
 
     public static boolean isNumeric(String field) {
-        Class<?> type = typesMap.get(field);
+        Class<?> type = getType(field);
         return type != null && Number.class.isAssignableFrom(type);
     }
 
@@ -218,6 +245,24 @@ public static boolean isRealNumber(String field) {
         return isFloat(field) || isDouble(field);
     }
 
+    private static Class<?> getType(String key) {
+        Map<String, Class<?>> cache = typesCache;
+        Class<?> type = cache.get(key);
+        if (type == null) {
+            type = typesMap.get(key);
+            if (type != null) {
+                cache.put(key, type);
+            }
+        }
+        return type;
+    }
+
+    private static void putTypeIfAbsent(String key, Class<?> type) {
+        if (getType(key) == null) {
+            typesMap.putIfAbsent(key, type);
+        }
+    }
+
     public static Map<String, Class> getMetadataTypes() {
         return Collections.unmodifiableMap(typesMap);
     }
@@ -254,10 +299,15 @@ public static final String normalize(String value, boolean toLowerCase) {
         if (toLowerCase) {
             value = value.toLowerCase();
         }
-        char[] input = value.toCharArray();
-        char[] output = new char[input.length * 4];
-        int len = FastASCIIFoldingFilter.foldToASCII(input, 0, output, 0, input.length);
-        return new String(output, 0, len).trim();
+        // input and folded output share the same thread local buffer
+        int len = value.length();
+        char[] buffer = normalizeBuffer.get();
+        if (buffer.length < len * 5) {
+            buffer = new char[len * 5];
+        }
+        value.getChars(0, len, buffer, 0);
+        int end = FastASCIIFoldingFilter.foldToASCII(buffer, 0, buffer, len, len);
+        return new String(buffer, len, end - len).trim();
     }
 
     public static Document Document(IItem evidence, Reader reader, File output) {
@@ -338,7 +388,9 @@ public static Document Document(IItem evidence, Reader reader, File output) {
             doc.add(new NumericDocValuesField(LENGTH, length));
         }
 
-        Set<TimeStampEvent> timeEventSet = new TreeSet<>();
+        TimeStampBuffers tsBuffers = timeStampBuffers.get();
+        tsBuffers.clear();
+        Set<TimeStampEvent> timeEventSet = tsBuffers.timeEventSet;
 
         Date date = evidence.getCreationDate();
         if (date != null) {
@@ -406,7 +458,7 @@ public static Document Document(IItem evidence, Reader reader, File output) {
 
         if (evidence.isTimedOut()) {
             doc.add(new StringField(TIMEOUT, Boolean.TRUE.toString(), Field.Store.YES));
-            doc.add(new SortedDocValuesField(TIMEOUT, new BytesRef(Boolean.TRUE.toString())));
+            doc.add(new SortedDocValuesField(TIMEOUT, TRUE_BYTES));
         }
 
         value = evidence.getHash();
@@ -417,28 +469,28 @@ public static Document Document(IItem evidence, Reader reader, File output) {
 
         value = Boolean.toString(evidence.isDeleted());
         doc.add(new StringField(DELETED, value, Field.Store.YES));
-        doc.add(new SortedDocValuesField(DELETED, new BytesRef(value)));
+        doc.add(new SortedDocValuesField(DELETED, evidence.isDeleted() ? TRUE_BYTES : FALSE_BYTES));
 
         value = Boolean.toString(evidence.hasChildren());
         doc.add(new StringField(HASCHILD, value, Field.Store.YES));
-        doc.add(new SortedDocValuesField(HASCHILD, new BytesRef(value)));
+        doc.add(new SortedDocValuesField(HASCHILD, evidence.hasChildren() ? TRUE_BYTES : FALSE_BYTES));
 
         value = Boolean.toString(evidence.isDir());
         doc.add(new StringField(ISDIR, value, Field.Store.YES));
-        doc.add(new SortedDocValuesField(ISDIR, new BytesRef(value)));
+        doc.add(new SortedDocValuesField(ISDIR, evidence.isDir() ? TRUE_BYTES : FALSE_BYTES));
 
         if (evidence.isRoot()) {
             doc.add(new StringField(ISROOT, Boolean.TRUE.toString(), Field.Store.YES));
-            doc.add(new SortedDocValuesField(ISROOT, new BytesRef(Boolean.TRUE.toString())));
+            doc.add(new SortedDocValuesField(ISROOT, TRUE_BYTES));
         }
 
         value = Boolean.toString(evidence.isCarved());
         doc.add(new StringField(CARVED, value, Field.Store.YES));
-        doc.add(new SortedDocValuesField(CARVED, new BytesRef(value)));
+        doc.add(new SortedDocValuesField(CARVED, evidence.isCarved() ? TRUE_BYTES : FALSE_BYTES));
 
         value = Boolean.toString(evidence.isSubItem());
         doc.add(new StringField(SUBITEM, value, Field.Store.YES));
-        doc.add(new SortedDocValuesField(SUBITEM, new BytesRef(value)));
+        doc.add(new SortedDocValuesField(SUBITEM, evidence.isSubItem() ? TRUE_BYTES : FALSE_BYTES));
 
         if (evidence.getThumb() != null)
             doc.add(new StoredField(THUMB, evidence.getThumb()));
@@ -467,11 +519,11 @@ public static Document Document(IItem evidence, Reader reader, File output) {
         for (Entry<String, Object> entry : evidence.getExtraAttributeMap().entrySet()) {
             if (entry.getValue() instanceof Collection) {
                 for (Object val : (Collection<?>) entry.getValue()) {
-                    typesMap.putIfAbsent(entry.getKey(), val.getClass());
+                    putTypeIfAbsent(entry.getKey(), val.getClass());
                     addExtraAttributeToDoc(doc, entry.getKey(), val, true, timeEventSet);
                 }
             } else {
-                typesMap.putIfAbsent(entry.getKey(), entry.getValue().getClass());
+                putTypeIfAbsent(entry.getKey(), entry.getValue().getClass());
                 addExtraAttributeToDoc(doc, entry.getKey(), entry.getValue(), false, timeEventSet);
             }
         }
@@ -485,16 +537,38 @@ public static Document Document(IItem evidence, Reader reader, File output) {
             }
         }
 
-        storeTimeStamps(doc, timeEventSet);
+        storeTimeStamps(doc, tsBuffers);
 
         return doc;
     }
 
-    private static void storeTimeStamps(Document doc, Set<TimeStampEvent> timeEventSet) {
+    /**
+     * Collections used to aggregate timestamp events, reused by each indexing
+     * thread to avoid allocating them for every item.
+     */
+    private static class TimeStampBuffers {
+
+        private final Set<TimeStampEvent> timeEventSet = new TreeSet<>();
+        private final Set<String> eventsSet = new TreeSet<>();
+        private final List<String> eventsList = new ArrayList<>();
+        private final List<String> sortedList = new ArrayList<>();
+        private final StringBuilder indexes = new StringBuilder();
+
+        private void clear() {
+            timeEventSet.clear();
+            eventsSet.clear();
+            eventsList.clear();
+            sortedList.clear();
+            indexes.setLength(0);
+        }
+    }
+
+    private static void storeTimeStamps(Document doc, TimeStampBuffers tsBuffers) {
 
+        Set<TimeStampEvent> timeEventSet = tsBuffers.timeEventSet;
         String prevTimeStamp = null;
-        Set<String> eventsSet = new TreeSet<>();
-        List<String> eventsList = new ArrayList<>();
+        Set<String> eventsSet = tsBuffers.eventsSet;
+        List<String> eventsList = tsBuffers.eventsList;
         int i = 0;
         for (TimeStampEvent tse : timeEventSet) {
             i++;
@@ -518,9 +592,10 @@ private static void storeTimeStamps(Document doc, Set<TimeStampEvent> timeEventS
             prevTimeStamp = tse.timeStamp;
         }
         // some date metadata could have multiple timestamps
-        List<String> sortedList = new ArrayList<>(eventsList);
+        List<String> sortedList = tsBuffers.sortedList;
+        sortedList.addAll(eventsList);
         Collections.sort(sortedList);
-        StringBuilder indexes = new StringBuilder();
+        StringBuilder indexes = tsBuffers.indexes;
         String prevEvent = null;
         for (String event : sortedList) {
             if (indexes.length() > 0) {
@@ -713,7 +788,7 @@ private static void addMetadataToDoc(Document doc, Metadata metadata, Set<TimeSt
     private static void addMetadataKeyToDoc(Document doc, String key, String value, boolean isMultiValued,
             MediaType mimetype, Set<TimeStampEvent> timeEventSet) {
         Object oValue = value;
-        Class<?> type = typesMap.get(key);
+        Class<?> type = getType(key);
 
         if (type == null && MetadataUtil.isHtmlMediaType(mimetype) && !key.startsWith(ExtraProperties.UFED_META_PREFIX))
             return;
@@ -827,6 +902,8 @@ private static void collectMetadataTypes(Metadata metadata) {
             }
 
         }
+        // types above could have been promoted
+        typesCache = new ConcurrentHashMap<String, Class<?>>();
 
     }
 
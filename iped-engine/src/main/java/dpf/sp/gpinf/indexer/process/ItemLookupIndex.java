@@ -0,0 +1,185 @@
+package dpf.sp.gpinf.indexer.process;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.util.Bits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dpf.sp.gpinf.indexer.process.task.HashTask;
+import iped3.IItem;
+import iped3.util.BasicProps;
+
+/**
+ * Índice em memória dos hashes, nomes e caminhos dos itens indexados, usado
+ * para responder as buscas exatas dos parsers durante o processamento sem
+ * executar consultas no Lucene. As chaves são armazenadas como fingerprints de
+ * 64 bits em uma tabela de endereçamento aberto, assim os candidatos devem ser
+ * conferidos com o item carregado.
+ */
+public class ItemLookupIndex {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(ItemLookupIndex.class);
+
+    public enum Kind {
+        HASH, NAME, PATH
+    }
+
+    private static final String[] HASH_ATTRS = new String[HashTask.HASH.values().length];
+
+    static {
+        for (int i = 0; i < HASH_ATTRS.length; i++) {
+            HASH_ATTRS[i] = HashTask.HASH.values()[i].toString();
+        }
+    }
+
+    private long[] keys = new long[1 << 16];
+
+    private int[] ids = new int[1 << 16];
+
+    private int size = 0;
+
+    /**
+     * Adiciona item recém indexado.
+     */
+    public void add(IItem item) {
+        Set<String> hashes = new HashSet<>();
+        addHash(hashes, item.getHash());
+        for (String attr : HASH_ATTRS) {
+            Object hash = item.getExtraAttribute(attr);
+            if (hash != null) {
+                addHash(hashes, hash.toString());
+            }
+        }
+        add(item.getId(), hashes, item.getName(), item.getPath());
+    }
+
+    /**
+     * Carrega itens já existentes no índice, ao continuar ou adicionar dados a um
+     * processamento anterior.
+     */
+    public void load(IndexReader reader) throws IOException {
+        Set<String> fields = new HashSet<>(Arrays.asList(IndexItem.ID, BasicProps.NAME, BasicProps.PATH,
+                BasicProps.HASH));
+        fields.addAll(Arrays.asList(HASH_ATTRS));
+        int loaded = 0;
+        for (LeafReaderContext context : reader.leaves()) {
+            LeafReader leaf = context.reader();
+            Bits liveDocs = leaf.getLiveDocs();
+            for (int i = 0; i < leaf.maxDoc(); i++) {
+                if (liveDocs != null && !liveDocs.get(i)) {
+                    continue;
+                }
+                Document doc = leaf.document(i, fields);
+                String id = doc.get(IndexItem.ID);
+                if (id == null) {
+                    continue;
+                }
+                Set<String> hashes = new HashSet<>();
+                addHash(hashes, doc.get(BasicProps.HASH));
+                for (String attr : HASH_ATTRS) {
+                    addHash(hashes, doc.get(attr));
+                }
+                add(Integer.parseInt(id), hashes, doc.get(BasicProps.NAME), doc.get(BasicProps.PATH));
+                loaded++;
+            }
+        }
+        LOGGER.info("Items loaded into lookup index: {}", loaded); //$NON-NLS-1$
+    }
+
+    private static void addHash(Set<String> hashes, String hash) {
+        if (hash != null && !hash.isEmpty()) {
+            hashes.add(hash.toLowerCase());
+        }
+    }
+
+    private synchronized void add(int id, Set<String> hashes, String name, String path) {
+        for (String hash : hashes) {
+            put(fingerprint(Kind.HASH, hash), id);
+        }
+        if (name != null) {
+            put(fingerprint(Kind.NAME, name), id);
+        }
+        if (path != null) {
+            put(fingerprint(Kind.PATH, path), id);
+        }
+    }
+
+    /**
+     * @return ids dos itens candidatos, sem repetição, que podem conter colisões
+     */
+    public synchronized int[] lookup(Kind kind, String value) {
+        long key = fingerprint(kind, value);
+        int mask = keys.length - 1;
+        int[] result = new int[4];
+        int n = 0;
+        for (int i = slot(key, mask); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, n * 2);
+                }
+                result[n++] = ids[i];
+            }
+        }
+        // text fragments of a splitted item are indexed with the same id
+        return Arrays.stream(result, 0, n).distinct().toArray();
+    }
+
+    private void put(long key, int id) {
+        if (2 * (size + 1) > keys.length) {
+            rehash();
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != 0) {
+            if (keys[i] == key && ids[i] == id) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        ids[i] = id;
+        size++;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldIds = ids;
+        keys = new long[oldKeys.length * 2];
+        ids = new int[oldIds.length * 2];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldIds[i]);
+            }
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+
+    /**
+     * FNV-1a de 64 bits do valor em caixa baixa, misturado ao tipo da chave. Zero
+     * é reservado para posições vazias.
+     */
+    private static long fingerprint(Kind kind, String value) {
+        long h = 0xcbf29ce484222325L ^ kind.ordinal();
+        for (int i = 0; i < value.length(); i++) {
+            h ^= Character.toLowerCase(value.charAt(i));
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 29;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 32;
+        return h != 0 ? h : 1;
+    }
+
+}
@@ -3,8 +3,13 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.queryparser.flexible.standard.QueryParserUtil;
@@ -14,21 +19,33 @@
 import iped3.io.IItemBase;
 import iped3.search.IItemSearcher;
 import iped3.search.SearchResult;
+import iped3.util.BasicProps;
 
 public class ItemSearcher implements IItemSearcher {
 
     File caseFolder;
     IndexWriter iw;
     IPEDSource iSource;
+    ItemLookupIndex lookupIndex;
 
     public ItemSearcher(IPEDSource iSource) {
         this.iSource = iSource;
     }
 
     public ItemSearcher(File caseFolder, IndexWriter iw) {
+        this(caseFolder, iw, null);
+    }
+
+    /**
+     * @param lookupIndex
+     *            in memory index used by exact lookups instead of Lucene queries,
+     *            may be null
+     */
+    public ItemSearcher(File caseFolder, IndexWriter iw, ItemLookupIndex lookupIndex) {
         this.caseFolder = caseFolder;
         this.iw = iw;
         this.iSource = new IPEDSource(caseFolder, iw);
+        this.lookupIndex = lookupIndex;
     }
 
     @Override
@@ -81,6 +98,53 @@ private SearchResult getResult(String luceneQuery) {
         }
     }
 
+    @Override
+    public Map<String, List<IItemBase>> searchByHashes(String hashAlgo, Collection<String> hashes) {
+        if (lookupIndex == null) {
+            return IItemSearcher.super.searchByHashes(hashAlgo, hashes);
+        }
+        return lookup(ItemLookupIndex.Kind.HASH, hashes, item -> {
+            Object hash = BasicProps.HASH.equals(hashAlgo) ? item.getHash() : item.getExtraAttribute(hashAlgo);
+            return hash != null ? hash.toString() : null;
+        });
+    }
+
+    @Override
+    public Map<String, List<IItemBase>> searchByNames(Collection<String> names) {
+        if (lookupIndex == null) {
+            return IItemSearcher.super.searchByNames(names);
+        }
+        return lookup(ItemLookupIndex.Kind.NAME, names, IItemBase::getName);
+    }
+
+    @Override
+    public List<IItemBase> searchByPath(String path) {
+        if (lookupIndex == null) {
+            return IItemSearcher.super.searchByPath(path);
+        }
+        List<IItemBase> items = lookup(ItemLookupIndex.Kind.PATH, Collections.singleton(path), IItemBase::getPath)
+                .get(path);
+        return items != null ? items : Collections.emptyList();
+    }
+
+    private Map<String, List<IItemBase>> lookup(ItemLookupIndex.Kind kind, Collection<String> values,
+            Function<IItemBase, String> getter) {
+        Map<String, List<IItemBase>> result = new HashMap<>();
+        for (String value : values) {
+            for (int id : lookupIndex.lookup(kind, value)) {
+                // items indexed after this searcher was opened are not visible, like in queries
+                if (id > iSource.getLastId() || iSource.getId(iSource.getLuceneId(id)) != id) {
+                    continue;
+                }
+                IItemBase item = iSource.getItemByID(id);
+                if (item != null && value.equalsIgnoreCase(getter.apply(item))) {
+                    result.computeIfAbsent(value, v -> new ArrayList<>()).add(item);
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public void close() throws IOException {
         if (iSource != null)
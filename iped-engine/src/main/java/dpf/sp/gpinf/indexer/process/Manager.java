@@ -32,7 +32,6 @@
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.IntPoint;
-import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexReader;
@@ -63,6 +62,7 @@
 import dpf.sp.gpinf.indexer.datasource.SleuthkitReader;
 import dpf.sp.gpinf.indexer.io.ParsingReader;
 import dpf.sp.gpinf.indexer.localization.Messages;
+import dpf.sp.gpinf.indexer.process.task.ArtifactStore;
 import dpf.sp.gpinf.indexer.process.task.ElasticSearchIndexTask;
 import dpf.sp.gpinf.indexer.process.task.ExportCSVTask;
 import dpf.sp.gpinf.indexer.process.task.ExportFileTask;
@@ -76,6 +76,7 @@
 import dpf.sp.gpinf.indexer.util.ExeFileFilter;
 import dpf.sp.gpinf.indexer.util.IOUtil;
 import dpf.sp.gpinf.indexer.util.IPEDException;
+import dpf.sp.gpinf.indexer.util.MonitoredMergeScheduler;
 import dpf.sp.gpinf.indexer.util.SleuthkitClient;
 import dpf.sp.gpinf.indexer.util.SleuthkitInputStreamFactory;
 import dpf.sp.gpinf.indexer.util.Util;
@@ -131,6 +132,8 @@ public class Manager {
     private ItemProducer counter, producer;
     private Worker[] workers;
     private IndexWriter writer;
+    private ItemLookupIndex lookupIndex;
+    private MonitoredMergeScheduler mergeScheduler;
 
     public Statistics stats;
     public Exception exception;
@@ -168,6 +171,10 @@ public Manager(List<File> sources, File output, File palavras) {
         this.palavrasChave = palavras;
 
         this.caseData = new CaseData(QUEUE_SIZE);
+        if (localConfig.getQueueSpillThreshold() > 0) {
+            this.caseData.enableQueueSpill(new File(localConfig.getIndexerTemp(), "queues"), //$NON-NLS-1$
+                    localConfig.getQueueSpillThreshold());
+        }
 
         for (File source : sources) {
             if (source.getName().toLowerCase().endsWith(Marcadores.EXT)) {
@@ -176,6 +183,12 @@ public Manager(List<File> sources, File output, File palavras) {
             }
         }
 
+        // reports may have items of the same data source in different sources
+        if (!this.caseData.isIpedReport()) {
+            this.caseData.enableDependencyScheduling(
+                    () -> new ItemSearcher(output.getParentFile(), writer, lookupIndex));
+        }
+
         Item.setStartID(0);
 
         finalIndexDir = new File(output, "index"); //$NON-NLS-1$
@@ -211,6 +224,8 @@ public void process() throws Exception {
 
         stats.printSystemInfo();
 
+        stats.registerMBean();
+
         Files.deleteIfExists(getFinishedFileFlag(output).toPath());
 
         output = output.getCanonicalFile();
@@ -269,6 +284,7 @@ public void process() throws Exception {
 
         } finally {
             closeItemProducers();
+            caseData.closeQueueSpill();
         }
 
         filtrarPalavrasChave();
@@ -287,6 +303,8 @@ public void process() throws Exception {
 
         stats.logarEstatisticas(this);
 
+        stats.unregisterMBean();
+
         Files.createFile(getFinishedFileFlag(output).toPath());
 
     }
@@ -375,6 +393,7 @@ private void loadExistingData() throws IOException {
 
         try (IndexReader reader = DirectoryReader.open(writer, true, true)) {
             stats.previousIndexedFiles = reader.numDocs();
+            lookupIndex.load(reader);
         }
 
         if (new File(output, "data/containsReport.flag").exists()) { //$NON-NLS-1$
@@ -389,13 +408,18 @@ private IndexWriterConfig getIndexWriterConfig() {
 
         conf.setCommitOnClose(true);
         conf.setSimilarity(new IndexerSimilarity());
-        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
-        mergeScheduler.disableAutoIOThrottle();
-        if ((localConfig.isIndexTempOnSSD() && indexDir != finalIndexDir) || localConfig.isOutputOnSSD()) {
-            mergeScheduler.setMaxMergesAndThreads(8, 4);
-        }
-        conf.setMergeScheduler(mergeScheduler);
-        conf.setRAMBufferSizeMB(64);
+        MonitoredMergeScheduler scheduler = new MonitoredMergeScheduler();
+        scheduler.disableAutoIOThrottle();
+        int mergeThreads = indexConfig.getMaxMergeThreads();
+        if (mergeThreads <= 0
+                && ((localConfig.isIndexTempOnSSD() && indexDir != finalIndexDir) || localConfig.isOutputOnSSD())) {
+            mergeThreads = Math.max(4, Runtime.getRuntime().availableProcessors() / 8);
+        }
+        if (mergeThreads > 0) {
+            scheduler.setMaxMergesAndThreads(mergeThreads + 4, mergeThreads);
+        }
+        conf.setMergeScheduler(scheduler);
+        conf.setRAMBufferSizeMB(getRAMBufferSizeMB());
         TieredMergePolicy tieredPolicy = new TieredMergePolicy();
         /*
          * Seta tamanho máximo dos subíndices. Padrão é 5GB. Poucos subíndices grandes
@@ -411,6 +435,23 @@ private IndexWriterConfig getIndexWriterConfig() {
         return conf;
     }
 
+    /**
+     * Lucene RAM buffer is shared by all indexing threads, so with many workers a
+     * small buffer results in lots of tiny flushed segments and costly merges.
+     */
+    private int getRAMBufferSizeMB() {
+        int ramBufferSizeMB = indexConfig.getRamBufferSizeMB();
+        if (ramBufferSizeMB <= 0) {
+            long maxHeapMB = Runtime.getRuntime().maxMemory() / (1 << 20);
+            ramBufferSizeMB = (int) Math.max(64, Math.min(16 * localConfig.getNumThreads(), maxHeapMB / 10));
+        }
+        return ramBufferSizeMB;
+    }
+
+    MonitoredMergeScheduler getMergeScheduler() {
+        return mergeScheduler;
+    }
+
     private void removeEvidence(String evidenceName) throws Exception {
         Level CONSOLE = Level.getLevel("MSG"); //$NON-NLS-1$
         LOGGER.log(CONSOLE, "Removing evidence '{}' from case...", evidenceName);
@@ -490,12 +531,18 @@ private void openIndex() throws IOException {
             config.setIndexCommit(commits.get(0));
         }
 
+        LOGGER.info("Index RAM buffer size: {} MB", config.getRAMBufferSizeMB()); //$NON-NLS-1$
+        mergeScheduler = (MonitoredMergeScheduler) config.getMergeScheduler();
+
         writer = new IndexWriter(directory, config);
         if (newIndex) {
             // first empty commit to be used by --restart
             writer.commit();
         }
 
+        lookupIndex = new ItemLookupIndex();
+        caseData.putCaseObject(ItemLookupIndex.class.getName(), lookupIndex);
+
         if (args.isAppendIndex() || args.isContinue() || args.isRestart()) {
             loadExistingData();
         }
@@ -561,6 +608,7 @@ private void monitorarIndexacao() throws Exception {
                 if (searcher != null) {
                     searcher.close();
                 }
+                caseData.closeReleasedSearchers();
                 IItem queueEnd = caseData.peekItemFromCurrentQueue();
                 if (!queueEnd.isQueueEnd()) {
                     throw new IPEDException("Tried to get queue end from queue, but failed! Please warn the dev team.");
@@ -568,7 +616,7 @@ private void monitorarIndexacao() throws Exception {
                 if (caseData.changeToNextQueue() != null) {
                     LOGGER.info("Changed to processing queue with priority " + caseData.getCurrentQueuePriority()); //$NON-NLS-1$
                     caseData.putCaseObject(IItemSearcher.class.getName(),
-                            new ItemSearcher(output.getParentFile(), writer));
+                            new ItemSearcher(output.getParentFile(), writer, lookupIndex));
                     caseData.addLastToCurrentQueue(queueEnd);
                     for (int k = 0; k < workers.length; k++) {
                         workers[k].processNextQueue();
@@ -651,6 +699,8 @@ private void finalizarIndexacao() throws Exception {
             workers[k].finish();
         }
 
+        ArtifactStore.closeInstance();
+
         if (indexConfig.isForceMerge()) {
             WorkerProvider.getInstance().firePropertyChange("mensagem", "", Messages.getString("Manager.Optimizing")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
             LOGGER.info("Optimizing Index..."); //$NON-NLS-1$
@@ -1,6 +1,7 @@
 package dpf.sp.gpinf.indexer.process;
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -40,6 +41,14 @@ public class MimeTypesProcessingOrder {
 
     private static MediaTypeRegistry mediaRegistry;
 
+    /**
+     * MimeTypes que dependem apenas de itens da mesma fonte de dados (arquivos
+     * vizinhos, mesmo relatório ou nenhuma dependência). Podem ser liberados assim
+     * que os itens de menor prioridade da sua fonte de dados forem processados,
+     * sem esperar a troca global de fila.
+     */
+    private static Set<MediaType> dataSourceScopedTypes = installDataSourceScopedTypes();
+
     /** Definie as prioridades de processamento dos mimeTypes */
     private static Map<MediaType, Integer> installTypesToPostProcess() {
 
@@ -82,6 +91,31 @@ private static Map<MediaType, Integer> installTypesToPostProcess() {
         return mediaTypes;
     }
 
+    private static Set<MediaType> installDataSourceScopedTypes() {
+
+        Set<MediaType> types = new HashSet<MediaType>();
+
+        // wal logs are siblings of the database
+        types.add(SQLite3Parser.MEDIA_TYPE);
+
+        // storage_db.db is in the same profile folder
+        types.add(SkypeParser.SKYPE_MIME);
+
+        // attachments are in the same report
+        types.add(UFEDChatParser.UFED_CHAT_MIME);
+
+        // splitted image segments are siblings
+        types.add(MediaTypes.E01_IMAGE);
+        types.add(MediaTypes.EX01_IMAGE);
+        types.add(MediaTypes.RAW_IMAGE);
+        types.add(MediaTypes.VMDK_DESCRIPTOR);
+
+        // no dependency at all
+        types.add(UsnJrnlParser.USNJRNL_$J);
+
+        return types;
+    }
+
     private static synchronized void setMediaRegistry() {
         
         if (mediaRegistry == null) {
@@ -111,6 +145,26 @@ public static int getProcessingPriority(MediaType mediaType) {
         return 0;
     }
 
+    /**
+     * Verifica se as dependências do mimeType estão restritas à sua fonte de
+     * dados, considerando o mesmo mimeType usado na definição da prioridade.
+     */
+    public static boolean isDataSourceScoped(MediaType mediaType) {
+
+        if (mediaRegistry == null) {
+            setMediaRegistry();
+        }
+
+        while (mediaType != null && !MediaType.OCTET_STREAM.equals(mediaType)) {
+            if (mediaTypes.containsKey(mediaType)) {
+                return dataSourceScopedTypes.contains(mediaType);
+            }
+            mediaType = mediaRegistry.getSupertype(mediaType);
+        }
+
+        return false;
+    }
+
     /** Obtém todas as prioridades de processamento configuradas */
     public static Set<Integer> getProcessingPriorities() {
         Set<Integer> priorities = new TreeSet<Integer>();
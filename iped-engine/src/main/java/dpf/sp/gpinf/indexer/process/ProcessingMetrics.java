@@ -0,0 +1,129 @@
+package dpf.sp.gpinf.indexer.process;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import gpinf.dev.data.CaseData;
+import gpinf.dev.data.QueueSpillStore;
+import iped3.ICaseData;
+
+/**
+ * JMX view of processing {@link Statistics}. Rates are computed between
+ * consecutive samples taken at least one second apart.
+ */
+public class ProcessingMetrics implements ProcessingMetricsMBean {
+
+    private static final long MIN_SAMPLE_INTERVAL = 1000;
+
+    private Statistics stats;
+    private ICaseData caseData;
+
+    private long lastSampleTime;
+    private int lastProcessed;
+    private long lastVolume;
+    private double itemsPerSecond, bytesPerSecond;
+
+    public ProcessingMetrics(Statistics stats, ICaseData caseData) {
+        this.stats = stats;
+        this.caseData = caseData;
+        this.lastSampleTime = System.currentTimeMillis();
+    }
+
+    private synchronized void updateRates() {
+        long now = System.currentTimeMillis();
+        long interval = now - lastSampleTime;
+        if (interval < MIN_SAMPLE_INTERVAL) {
+            return;
+        }
+        int processed = stats.getProcessed();
+        long volume = stats.getVolume();
+        itemsPerSecond = (processed - lastProcessed) * 1000.0 / interval;
+        bytesPerSecond = (volume - lastVolume) * 1000.0 / interval;
+        lastProcessed = processed;
+        lastVolume = volume;
+        lastSampleTime = now;
+    }
+
+    @Override
+    public Date getStartDate() {
+        return stats.getStartDate();
+    }
+
+    @Override
+    public int getProcessedItems() {
+        return stats.getProcessed();
+    }
+
+    @Override
+    public long getProcessedBytes() {
+        return stats.getVolume();
+    }
+
+    @Override
+    public int getDiscoveredItems() {
+        return caseData.getDiscoveredEvidences();
+    }
+
+    @Override
+    public synchronized double getItemsPerSecond() {
+        updateRates();
+        return itemsPerSecond;
+    }
+
+    @Override
+    public synchronized double getBytesPerSecond() {
+        updateRates();
+        return bytesPerSecond;
+    }
+
+    @Override
+    public int getCurrentQueuePriority() {
+        return caseData.getCurrentQueuePriority();
+    }
+
+    @Override
+    public Map<Integer, Integer> getQueueSizes() {
+        return ((CaseData) caseData).getQueueSizes();
+    }
+
+    @Override
+    public int getItemsBeingProcessed() {
+        return ((CaseData) caseData).getItemsBeingProcessed();
+    }
+
+    @Override
+    public long getSpilledQueueItems() {
+        QueueSpillStore store = ((CaseData) caseData).getQueueSpillStore();
+        return store != null ? store.getSpilledItems() : 0;
+    }
+
+    @Override
+    public long getRehydratedQueueItems() {
+        QueueSpillStore store = ((CaseData) caseData).getQueueSpillStore();
+        return store != null ? store.getRehydratedItems() : 0;
+    }
+
+    @Override
+    public int getTimeouts() {
+        return stats.getTimeouts();
+    }
+
+    @Override
+    public int getIoErrors() {
+        return stats.getIoErrors();
+    }
+
+    @Override
+    public Map<String, String> getTaskLatencies() {
+        Map<String, String> result = new TreeMap<>();
+        for (Entry<String, LatencyHistogram> entry : stats.getTaskLatencies().entrySet()) {
+            LatencyHistogram latency = entry.getValue();
+            result.put(entry.getKey(), "p50=" + latency.getPercentile(50) + "us p99=" + latency.getPercentile(99) //$NON-NLS-1$ //$NON-NLS-2$
+                    + "us count=" + latency.getCount()); //$NON-NLS-1$
+        }
+        return result;
+    }
+
+}
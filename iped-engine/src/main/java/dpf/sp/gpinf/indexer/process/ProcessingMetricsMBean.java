@@ -0,0 +1,52 @@
+package dpf.sp.gpinf.indexer.process;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Live processing metrics exposed through JMX while processing is running.
+ */
+public interface ProcessingMetricsMBean {
+
+    public static final String OBJECT_NAME = "iped:type=ProcessingMetrics"; //$NON-NLS-1$
+
+    public Date getStartDate();
+
+    public int getProcessedItems();
+
+    public long getProcessedBytes();
+
+    public int getDiscoveredItems();
+
+    public double getItemsPerSecond();
+
+    public double getBytesPerSecond();
+
+    public int getCurrentQueuePriority();
+
+    /**
+     * @return number of items waiting in each processing queue, by priority
+     */
+    public Map<Integer, Integer> getQueueSizes();
+
+    public int getItemsBeingProcessed();
+
+    /**
+     * @return number of queued items moved to disk while waiting for a later
+     *         processing phase
+     */
+    public long getSpilledQueueItems();
+
+    public long getRehydratedQueueItems();
+
+    public int getTimeouts();
+
+    public int getIoErrors();
+
+    /**
+     * @return p50 and p99 item processing time (microseconds) and number of items,
+     *         by task
+     */
+    public Map<String, String> getTaskLatencies();
+
+}
@@ -8,10 +8,17 @@
 import java.io.ObjectOutputStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.RuntimeMXBean;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.swing.JOptionPane;
 
 import org.apache.lucene.index.DirectoryReader;
@@ -33,6 +40,7 @@
 import dpf.sp.gpinf.indexer.util.ConfiguredFSDirectory;
 import dpf.sp.gpinf.indexer.util.HashValue;
 import dpf.sp.gpinf.indexer.util.IPEDException;
+import dpf.sp.gpinf.indexer.util.MonitoredMergeScheduler;
 import dpf.sp.gpinf.indexer.util.Util;
 import iped3.ICaseData;
 import iped3.IItem;
@@ -56,18 +64,22 @@ public class Statistics {
     ICaseData caseData;
     File indexDir;
 
-    // EstatÃ­sticas
+    // EstatÃ­sticas, updated by all workers, so striped counters are used to avoid
+    // contention
     Date start = new Date();
-    int splits = 0;
-    int timeouts = 0;
-    int processed = 0;
-    int activeProcessed = 0;
-    long volumeIndexed = 0;
-    int lastId = -1;
-    int corruptCarveIgnored = 0;
-    int ignored = 0;
+    LongAdder splits = new LongAdder();
+    LongAdder timeouts = new LongAdder();
+    LongAdder processed = new LongAdder();
+    LongAdder activeProcessed = new LongAdder();
+    LongAdder volumeIndexed = new LongAdder();
+    AtomicInteger lastId = new AtomicInteger(-1);
+    LongAdder corruptCarveIgnored = new LongAdder();
+    LongAdder ignored = new LongAdder();
     int previousIndexedFiles = 0;
-    int ioerrors = 0;
+    LongAdder ioerrors = new LongAdder();
+    LongAdder indexWriteTime = new LongAdder();
+
+    private Map<String, LatencyHistogram> taskLatencies = new ConcurrentHashMap<>();
 
     public static Statistics get(ICaseData caseData, File indexDir) {
         if (instance == null) {
@@ -130,82 +142,132 @@ public void commit() throws IOException {
         Util.fsync(file.toPath());
     }
 
-    synchronized public int getSplits() {
-        return splits;
+    public int getSplits() {
+        return splits.intValue();
     }
 
-    synchronized public void incSplits() {
-        splits++;
+    public void incSplits() {
+        splits.increment();
     }
 
-    synchronized public int getTimeouts() {
-        return timeouts;
+    public int getTimeouts() {
+        return timeouts.intValue();
     }
 
-    synchronized public void incTimeouts() {
-        timeouts++;
+    public void incTimeouts() {
+        timeouts.increment();
     }
 
-    synchronized public void incProcessed() {
-        processed++;
+    public void incProcessed() {
+        processed.increment();
     }
 
-    synchronized public int getProcessed() {
-        return processed;
+    public int getProcessed() {
+        return processed.intValue();
     }
 
-    synchronized public void incIoErrors() {
-        ioerrors++;
+    public void incIoErrors() {
+        ioerrors.increment();
     }
 
-    synchronized public int getIoErrors() {
-        return ioerrors;
+    public int getIoErrors() {
+        return ioerrors.intValue();
     }
 
-    synchronized public void incActiveProcessed() {
-        activeProcessed++;
+    public void incActiveProcessed() {
+        activeProcessed.increment();
     }
 
-    synchronized public int getActiveProcessed() {
-        return activeProcessed;
+    public int getActiveProcessed() {
+        return activeProcessed.intValue();
     }
 
-    synchronized public void addVolume(long volume) {
-        volumeIndexed += volume;
+    public void addVolume(long volume) {
+        volumeIndexed.add(volume);
     }
 
-    synchronized public long getVolume() {
-        return volumeIndexed;
+    public long getVolume() {
+        return volumeIndexed.sum();
     }
 
-    synchronized public int getCorruptCarveIgnored() {
-        return corruptCarveIgnored;
+    public int getCorruptCarveIgnored() {
+        return corruptCarveIgnored.intValue();
     }
 
-    private synchronized void incCorruptCarveIgnored() {
-        corruptCarveIgnored++;
+    private void incCorruptCarveIgnored() {
+        corruptCarveIgnored.increment();
     }
 
-    synchronized public int getIgnored() {
-        return ignored;
+    public int getIgnored() {
+        return ignored.intValue();
     }
 
-    synchronized public void incIgnored() {
-        ignored++;
+    public void incIgnored() {
+        ignored.increment();
     }
 
-    synchronized public void updateLastId(int id) {
-        if (id > lastId) {
-            lastId = id;
-        }
+    public void addIndexWriteTime(long nanos) {
+        indexWriteTime.add(nanos);
+    }
+
+    public long getIndexWriteTime() {
+        return indexWriteTime.sum();
+    }
+
+    public void updateLastId(int id) {
+        lastId.accumulateAndGet(id, Math::max);
     }
 
-    synchronized public int getLastId() {
-        return lastId;
+    public int getLastId() {
+        return lastId.get();
     }
 
-    synchronized public void setLastId(int id) {
-        lastId = id;
+    public void setLastId(int id) {
+        lastId.set(id);
+    }
+
+    public Date getStartDate() {
+        return start;
+    }
+
+    /**
+     * Returns the histogram of item processing times of a task, shared by the
+     * instances of that task in all workers.
+     */
+    public LatencyHistogram getTaskLatency(String taskName) {
+        return taskLatencies.computeIfAbsent(taskName, k -> new LatencyHistogram());
+    }
+
+    public Map<String, LatencyHistogram> getTaskLatencies() {
+        return Collections.unmodifiableMap(taskLatencies);
+    }
+
+    /**
+     * Registers the live processing statistics as a JMX MBean, so they can be
+     * monitored with jconsole or other JMX clients while processing.
+     */
+    public void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ProcessingMetricsMBean.OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new ProcessingMetrics(this, caseData), name);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Error registering statistics MBean", e); //$NON-NLS-1$
+        }
+    }
+
+    public void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(ProcessingMetricsMBean.OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Error unregistering statistics MBean", e); //$NON-NLS-1$
+        }
     }
 
     public void logarEstatisticas(Manager manager) throws Exception {
@@ -229,11 +291,23 @@ public void logarEstatisticas(Manager manager) throws Exception {
         totalTime = totalTime / (1000000 * localConfig.getNumThreads());
         for (int i = 0; i < taskTimes.length; i++) {
             long sec = taskTimes[i] / (1000000 * localConfig.getNumThreads());
-            LOGGER.info(workers[0].tasks.get(i).getName() + ":\tProcessing Time:\t" + sec + "s (" //$NON-NLS-1$ //$NON-NLS-2$
-                    + Math.round((100f * sec) / totalTime) + "%)"); //$NON-NLS-1$
+            String taskName = workers[0].tasks.get(i).getName();
+            LatencyHistogram latency = taskLatencies.get(taskName);
+            String percentiles = latency == null ? "" //$NON-NLS-1$
+                    : "\tp50: " + latency.getPercentile(50) + "us\tp99: " + latency.getPercentile(99) + "us"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            LOGGER.info(taskName + ":\tProcessing Time:\t" + sec + "s (" //$NON-NLS-1$ //$NON-NLS-2$
+                    + Math.round((100f * sec) / totalTime) + "%)" + percentiles); //$NON-NLS-1$
         }
 
         LOGGER.info("Partial commits took {} seconds", manager.partialCommitsTime.get());
+        LOGGER.info("Index writing (including flushes) took {} seconds per worker", //$NON-NLS-1$
+                getIndexWriteTime() / (1000000000L * localConfig.getNumThreads()));
+        MonitoredMergeScheduler mergeScheduler = manager.getMergeScheduler();
+        if (mergeScheduler != null) {
+            LOGGER.info("Index merges: {} took {} seconds, indexing stalled by merges for {} seconds", //$NON-NLS-1$
+                    mergeScheduler.getMerges(), mergeScheduler.getMergeTime() / 1000,
+                    mergeScheduler.getStallTime() / 1000);
+        }
         LOGGER.info("File Splits: {}", getSplits()); //$NON-NLS-1$
         LOGGER.info("Timeouts: {}", getTimeouts()); //$NON-NLS-1$
         LOGGER.info("Parsing Exceptions: {}", IndexerDefaultParser.parsingErrors); //$NON-NLS-1$
@@ -211,7 +211,7 @@ public void processNewItem(IItem evidence, ProcessTime time) {
         } // caso contrário processa o item no worker atual
         else {
             if (!evidence.isQueueEnd()) {
-                caseData.incItemsBeingProcessed();
+                caseData.incItemsBeingProcessed(evidence);
             }
             long t = System.nanoTime() / 1000;
 
@@ -220,7 +220,7 @@ public void processNewItem(IItem evidence, ProcessTime time) {
             runningTask.addSubitemProcessingTime(System.nanoTime() / 1000 - t);
 
             if (!evidence.isQueueEnd()) {
-                caseData.decItemsBeingProcessed();
+                caseData.decItemsBeingProcessed(evidence);
             }
         }
 
@@ -253,6 +253,7 @@ public void run() {
                         }
                     }
                 }
+                caseData.rehydrate(evidence);
 
 
                 if (!evidence.isQueueEnd()) {
@@ -261,7 +262,7 @@ public void run() {
                     process(evidence);
                     
                     if (!evidence.isQueueEnd()) {
-                        caseData.decItemsBeingProcessed();
+                        caseData.decItemsBeingProcessed(evidence);
                     }
 
                 } else {
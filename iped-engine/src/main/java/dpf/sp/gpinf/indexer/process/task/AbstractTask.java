@@ -11,6 +11,7 @@
 import dpf.sp.gpinf.indexer.config.ConfigurationManager;
 import dpf.sp.gpinf.indexer.io.TimeoutException;
 import dpf.sp.gpinf.indexer.parsers.util.CorruptedCarvedException;
+import dpf.sp.gpinf.indexer.process.LatencyHistogram;
 import dpf.sp.gpinf.indexer.process.MimeTypesProcessingOrder;
 import dpf.sp.gpinf.indexer.process.Statistics;
 import dpf.sp.gpinf.indexer.process.Worker;
@@ -65,6 +66,8 @@ public abstract class AbstractTask {
 
     private long taskTime;
 
+    private LatencyHistogram latency;
+
     private HashMap<Integer, Long> subitemProcessingTime = new HashMap<Integer, Long>();
 
     public long getTaskTime() {
@@ -182,7 +185,14 @@ public final void processAndSendToNextTask(IItem evidence) throws Exception {
             if (subitensTime == null) {
                 subitensTime = 0L;
             }
-            taskTime += System.nanoTime() / 1000 - t - subitensTime;
+            long time = System.nanoTime() / 1000 - t - subitensTime;
+            taskTime += time;
+            if (!evidence.isQueueEnd()) {
+                if (latency == null) {
+                    latency = stats.getTaskLatency(getName());
+                }
+                latency.record(time);
+            }
         }
 
         sendToNextTask(evidence);
@@ -218,7 +228,7 @@ public final void processAndSendToNextTask(IItem evidence) throws Exception {
     protected void sendToNextTask(IItem evidence) throws Exception {
         if (nextTask != null) {
             int priority = MimeTypesProcessingOrder.getProcessingPriority(evidence.getMediaType());
-            if (evidence.isRoot() || priority <= caseData.getCurrentQueuePriority())
+            if (evidence.isRoot() || priority <= caseData.getQueuePriority(evidence))
                 nextTask.processAndSendToNextTask(evidence);
             else {
                 evidence.dispose();
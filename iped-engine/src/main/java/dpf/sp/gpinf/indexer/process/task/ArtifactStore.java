@@ -0,0 +1,169 @@
+package dpf.sp.gpinf.indexer.process.task;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConfig.JournalMode;
+import org.sqlite.SQLiteConfig.SynchronousMode;
+
+import dpf.sp.gpinf.indexer.config.ConfigurationManager;
+import dpf.sp.gpinf.indexer.config.LocalConfig;
+
+/**
+ * Persistent store of task results (artifacts) indexed by item content hash,
+ * task name and a fingerprint of the task configuration. The store can be
+ * shared between cases, so reprocessing the same evidence (e.g. with one more
+ * task enabled) reuses results already computed with the same configuration.
+ * Enabled by setting "artifactStore" in LocalConfig.txt.
+ */
+public class ArtifactStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ArtifactStore.class);
+
+    private static final String STORE_FILE = "artifacts.db"; //$NON-NLS-1$
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS artifacts(task TEXT, fingerprint TEXT, hash TEXT, data BLOB, PRIMARY KEY(task, fingerprint, hash));"; //$NON-NLS-1$
+
+    private static final String SELECT_DATA = "SELECT data FROM artifacts WHERE task=? AND fingerprint=? AND hash=?;"; //$NON-NLS-1$
+
+    private static final String INSERT_DATA = "INSERT OR REPLACE INTO artifacts(task, fingerprint, hash, data) VALUES(?,?,?,?);"; //$NON-NLS-1$
+
+    private static ArtifactStore instance;
+
+    private static boolean inited = false;
+
+    private final File db;
+
+    private final Connection conn;
+
+    private final LongAdder reused = new LongAdder();
+
+    private final LongAdder missed = new LongAdder();
+
+    private final LongAdder stored = new LongAdder();
+
+    /**
+     * @return the configured store or null if artifact reuse is disabled
+     */
+    public static synchronized ArtifactStore get() {
+        if (!inited) {
+            inited = true;
+            LocalConfig localConfig = ConfigurationManager.get().findObject(LocalConfig.class);
+            File dir = localConfig.getArtifactStore();
+            if (dir != null) {
+                instance = new ArtifactStore(new File(dir, STORE_FILE));
+                LOGGER.info("Reusing artifacts from " + instance.db.getAbsolutePath()); //$NON-NLS-1$
+            }
+        }
+        return instance;
+    }
+
+    public static synchronized void closeInstance() {
+        if (instance != null) {
+            LOGGER.info("Artifacts reused: " + instance.reused + " not found: " + instance.missed + " stored: " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    + instance.stored);
+            try {
+                instance.conn.close();
+            } catch (SQLException e) {
+                LOGGER.warn("Error closing artifact store", e); //$NON-NLS-1$
+            }
+            instance = null;
+        }
+        inited = false;
+    }
+
+    /**
+     * Computes a fingerprint of the configurations used to create an artifact,
+     * so results created with other configurations are not reused.
+     */
+    public static String fingerprint(Serializable... configs) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            for (Serializable config : configs) {
+                oos.writeObject(config);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return DigestUtils.md5Hex(baos.toByteArray());
+    }
+
+    private ArtifactStore(File db) {
+        this.db = db;
+        db.getParentFile().mkdirs();
+        try {
+            SQLiteConfig config = new SQLiteConfig();
+            config.setJournalMode(JournalMode.WAL);
+            config.setSynchronous(SynchronousMode.NORMAL);
+            config.setBusyTimeout(3600000);
+            conn = config.createConnection("jdbc:sqlite:" + db.getAbsolutePath()); //$NON-NLS-1$
+
+            try (Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate(CREATE_TABLE);
+            }
+
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the stored artifact or null if it was not found or the item has no
+     *         hash
+     */
+    public synchronized byte[] get(String task, String fingerprint, String hash) throws IOException {
+        if (hash == null) {
+            return null;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(SELECT_DATA)) {
+            ps.setString(1, task);
+            ps.setString(2, fingerprint);
+            ps.setString(3, hash);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    reused.increment();
+                    return rs.getBytes(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        missed.increment();
+        return null;
+    }
+
+    /**
+     * Stores the artifact. Items without hash are ignored, they can not be found
+     * later.
+     */
+    public synchronized void put(String task, String fingerprint, String hash, byte[] data) throws IOException {
+        if (hash == null) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement(INSERT_DATA)) {
+            ps.setString(1, task);
+            ps.setString(2, fingerprint);
+            ps.setString(3, hash);
+            ps.setBytes(4, data);
+            ps.executeUpdate();
+            stored.increment();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
@@ -22,6 +22,7 @@
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.tika.mime.MediaType;
 
@@ -50,19 +51,19 @@ public abstract class BaseCarveTask extends AbstractTask {
 
     protected static CarverConfiguration carverConfig = null;
 
-    private static int itensCarved;
+    private static AtomicInteger itensCarved = new AtomicInteger();
 
     private Set<Long> ledCarvedOffsets;
     private IItem prevEvidence;
 
     protected static final Map<IItem, Set<Long>> ledCarved = new HashMap<IItem, Set<Long>>();
 
-    private final synchronized static void incItensCarved() {
-        itensCarved++;
+    private final static void incItensCarved() {
+        itensCarved.incrementAndGet();
     }
 
-    public final synchronized static int getItensCarved() {
-        return itensCarved;
+    public final static int getItensCarved() {
+        return itensCarved.get();
     }
 
     protected IItem addCarvedFile(IItem parentEvidence, long off, long len, String name, MediaType mediaType) {
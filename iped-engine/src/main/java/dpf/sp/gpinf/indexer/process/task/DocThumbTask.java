@@ -4,19 +4,16 @@
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Serializable;
 import java.net.URL;
 import java.nio.file.Files;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -34,6 +31,7 @@
 
 import dpf.sp.gpinf.indexer.config.ConfigurationManager;
 import dpf.sp.gpinf.indexer.config.DocThumbTaskConfig;
+import dpf.sp.gpinf.indexer.config.LocalConfig;
 import dpf.sp.gpinf.indexer.config.ParsingTaskConfig;
 import dpf.sp.gpinf.indexer.parsers.IndexerDefaultParser;
 import dpf.sp.gpinf.indexer.parsers.PDFOCRTextParser;
@@ -41,6 +39,9 @@
 import dpf.sp.gpinf.indexer.parsers.util.Util;
 import dpf.sp.gpinf.indexer.util.IOUtil;
 import dpf.sp.gpinf.indexer.util.ImageUtil;
+import dpf.sp.gpinf.indexer.util.LibreOfficeConverter;
+import dpf.sp.gpinf.indexer.util.LibreOfficeConverter.Priority;
+import dpf.sp.gpinf.indexer.util.LibreOfficeConverter.Request;
 import dpf.sp.gpinf.indexer.util.LibreOfficeFinder;
 import iped3.IItem;
 import macee.core.Configurable;
@@ -70,16 +71,21 @@ public class DocThumbTask extends ThumbTask {
     private static final AtomicLong totalLoTime = new AtomicLong();
     private static final AtomicLong totalLoTimeout = new AtomicLong();
 
+    private static LibreOfficeConverter loConverter;
+
     private File loOutDir;
-    private String loOutPath;
-    private Process loEnvCreateProcess;
     private Process convertProcess;
-    private boolean tempSet;
+    private volatile Request loRequest;
 
     public List<Configurable<?>> getConfigurables() {
         return Arrays.asList(new DocThumbTaskConfig());
     }
 
+    @Override
+    protected Serializable getArtifactConfig() {
+        return docThumbsConfig.getArtifactSettings();
+    }
+
     @Override
     public void init(ConfigurationManager configurationManager) throws Exception {
         synchronized (init) {
@@ -94,6 +100,14 @@ public void init(ConfigurationManager configurationManager) throws Exception {
                         LibreOfficeFinder loFinder = new LibreOfficeFinder(jarDir);
                         loPath = loFinder.getLOPath();
                         logger.info("LibreOffice Path: " + loPath);
+                        int instances = docThumbsConfig.getLoInstances();
+                        if (instances <= 0) {
+                            int numThreads = configurationManager.findObject(LocalConfig.class).getNumThreads();
+                            instances = Math.max(1, Math.min(4, numThreads / 2));
+                        }
+                        loConverter = new LibreOfficeConverter(loPath, instances, 2 * instances,
+                                docThumbsConfig.getLoRecycleAfter());
+                        logger.info("LibreOffice instances: " + instances);
                     }
 
                     logger.info("PDF Conversion: " + (docThumbsConfig.isPdfEnabled() ? "enabled" : "disabled"));
@@ -115,20 +129,6 @@ public void init(ConfigurationManager configurationManager) throws Exception {
         }
         if (docThumbsConfig.isEnabled() && docThumbsConfig.isLoEnabled()) {
             loOutDir = Files.createTempDirectory("doc-thumb").toFile();
-            loOutPath = loOutDir.getAbsolutePath().replace('\\', '/');
-            if (System.getProperty("os.name").toLowerCase().contains("windows")) {
-                loOutPath = '/' + loOutPath;
-            }
-            String[] cmd = {loPath + "/program/soffice.bin",
-                    "--headless",
-                    "--quickstart",
-                    "--norestore",
-                    "--nolockcheck",
-                    "-env:UserInstallation=file://" + loOutPath};
-            ProcessBuilder pb = new ProcessBuilder(cmd);
-            loEnvCreateProcess = pb.start();
-            pb.redirectErrorStream();
-            Util.ignoreStream(loEnvCreateProcess.getInputStream());
         }
     }
 
@@ -149,6 +149,9 @@ public void finish() throws Exception {
                 if (!executor.isShutdown()) {
                     executor.shutdownNow();
                 }
+                if (loConverter != null) {
+                    loConverter.close();
+                }
                 if (isEnabled()) {
                     logger.info("Total PDF processed: " + totalPdfProcessed);
                     logger.info("Total PDF not processed: " + totalPdfFailed);
@@ -164,6 +167,9 @@ public void finish() throws Exception {
                     if (totalLO != 0) {
                         logger.info("Average LibreOffice processing time (ms/item): " + (totalLoTime.longValue() / totalLO));
                     }
+                    if (loConverter != null) {
+                        loConverter.logStats();
+                    }
                     logger.info("Task finished.");
                 }
                 finished.set(true);
@@ -211,18 +217,7 @@ protected void process(IItem item) throws Exception {
                 return;
             }
         }
-        Future<?> future = executor.submit(new LOThumbCreator(item, thumbFile));
-        try {
-            int timeout = docThumbsConfig.getLoTimeout()
-                    + (int) ((item.getLength() * docThumbsConfig.getTimeoutIncPerMB()) >>> 20);
-            future.get(timeout, TimeUnit.SECONDS);
-        } catch (TimeoutException e) {
-            future.cancel(true);
-            stats.incTimeouts();
-            item.setExtraAttribute(thumbTimeout, "true");
-            logger.warn("Timeout creating thumb: " + item);
-            totalLoTimeout.incrementAndGet();
-        }
+        createLOThumb(item, thumbFile);
     }
 
     private static boolean isPdfType(MediaType mediaType) {
@@ -340,21 +335,6 @@ private void createPDFThumb(IItem item, File thumbFile) {
 
     }
 
-    private class LOThumbCreator implements Runnable {
-        private IItem item;
-        private File thumbFile;
-
-        public LOThumbCreator(IItem item, File thumbFile) {
-            this.item = item;
-            this.thumbFile = thumbFile;
-        }
-
-        @Override
-        public void run() {
-            createLOThumb(item, thumbFile);
-        }
-    }
-
     private class ResultRunnable implements Runnable {
         private final Process p;
         private ByteArrayOutputStream baos;
@@ -379,50 +359,33 @@ public void run() {
     }
 
     private void createLOThumb(IItem item, File thumbFile) {
-        File outFile = null;
+        File outFile = new File(loOutDir, item.getId() + ".png");
         long t = System.currentTimeMillis();
+        Request request = null;
+        // if not finished, the aborted conversion may still be writing the output
+        boolean finished = false;
         try {
-            if (loEnvCreateProcess != null) {
-                try {
-                    loEnvCreateProcess.waitFor(60, TimeUnit.SECONDS);
-                } catch (Exception e) {
-                }
-                finishProcess(loEnvCreateProcess);
-                loEnvCreateProcess = null;
-            }
-            if (!tempSet) {
-                setLOTemp();
-                tempSet = true;
-            }
             File inFile = item.getTempFile();
-            List<String> cmd = new ArrayList<String>();
-            cmd.add(loPath + "/program/soffice.bin");
-            cmd.add("--convert-to");
-            cmd.add("png");
-            cmd.add(inFile.getAbsolutePath());
-            cmd.add("--headless");
-            cmd.add("--quickstart");
-            cmd.add("--norestore");
-            cmd.add("--nolockcheck");
-            cmd.add("-env:UserInstallation=file://" + loOutPath);
-            cmd.add("--outdir");
-            cmd.add(loOutDir.getAbsolutePath());
-            ProcessBuilder pb = new ProcessBuilder(cmd.toArray(new String[0]));
-            convertProcess = pb.start();
-            pb.redirectErrorStream();
-            Util.ignoreStream(convertProcess.getInputStream());
+            request = loConverter.submit(inFile, outFile, Priority.NORMAL);
+            loRequest = request;
             try {
-                convertProcess.waitFor();
-            } catch (InterruptedException e) {
-                convertProcess.destroyForcibly();
-                Thread.currentThread().interrupt();
+                int timeout = docThumbsConfig.getLoTimeout()
+                        + (int) ((item.getLength() * docThumbsConfig.getTimeoutIncPerMB()) >>> 20);
+                // do not count the time waiting for a free LibreOffice instance
+                request.awaitStart();
+                request.get(timeout, TimeUnit.SECONDS);
+                finished = true;
+            } catch (TimeoutException e) {
+                request.abort();
+                stats.incTimeouts();
+                item.setExtraAttribute(thumbTimeout, "true");
+                logger.warn("Timeout creating thumb: " + item);
+                totalLoTimeout.incrementAndGet();
+            } catch (ExecutionException e) {
+                finished = true;
+                logger.debug(item.toString(), e.getCause());
             }
             ByteArrayOutputStream baos = new ByteArrayOutputStream(65536);
-            String name = inFile.getName();
-            int pos = name.lastIndexOf('.');
-            if (pos >= 0) name = name.substring(0, pos);
-            name += ".png";
-            outFile = new File(loOutDir, name);
             boolean success = false;
             if (outFile.exists()) {
                 BufferedImage img = ImageIO.read(outFile);
@@ -438,21 +401,23 @@ private void createLOThumb(IItem item, File thumbFile) {
                     ImageIO.write(img, "jpg", baos);
                     success = true;
                 }
-            } else {
-                outFile = null;
             }
             if (success && baos.size() > 0) {
                 item.setThumb(baos.toByteArray());
             }
             saveThumb(item, thumbFile);
+        } catch (InterruptedException e) {
+            if (request != null) {
+                request.abort();
+            }
+            Thread.currentThread().interrupt();
         } catch (Throwable e) {
             logger.warn(item.toString(), e);
         } finally {
-            finishProcess(convertProcess);
-            convertProcess = null;
             boolean hasThumb = updateHasThumb(item);
             (hasThumb ? totalLoProcessed : totalLoFailed).incrementAndGet();
-            if (outFile != null) {
+            if (finished) {
+                loRequest = null;
                 outFile.delete();
             }
         }
@@ -471,54 +436,10 @@ private void finishProcess(Process process) {
 
     @Override
     public void interrupted() {
-        finishProcess(loEnvCreateProcess);
-        finishProcess(convertProcess);
-    }
-
-    private void setLOTemp() {
-        try {
-            File cfgIn = new File(loOutDir, "user/registrymodifications.xcu");
-            File cfgOut = new File(loOutDir, "user/registrymodifications.tmp");
-            if (cfgIn.exists()) {
-                try (BufferedReader in = new BufferedReader(new FileReader(cfgIn));
-                        BufferedWriter out = new BufferedWriter(new FileWriter(cfgOut))) {
-                    String line = null;
-                    int cnt = 0;
-                    while ((line = in.readLine()) != null) {
-                        out.write(line);
-                        out.newLine();
-                        if (++cnt == 2) {
-                            out.write("<item oor:path=\"/org.openoffice.Office.Common/Misc\"><prop oor:name=\"FirstRun\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Common/Misc\"><prop oor:name=\"UseLocking\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Common/Save/Document\"><prop oor:name=\"AutoSave\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Common/Save/Document\"><prop oor:name=\"LoadPrinter\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Common/Save/Document\"><prop oor:name=\"CreateBackup\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Impress/Filter/Import/VBA\"><prop oor:name=\"Load\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Writer/Filter/Import/VBA\"><prop oor:name=\"Load\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Calc/Filter/Import/VBA\"><prop oor:name=\"Load\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Common/Path/Current\"><prop oor:name=\"Temp\" oor:op=\"fuse\"><value xsi:nil=\"true\"/></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Common/Path/Info\"><prop oor:name=\"WorkPathChanged\" oor:op=\"fuse\"><value>false</value></prop></item>");
-                            out.newLine();
-                            out.write("<item oor:path=\"/org.openoffice.Office.Paths/Paths/org.openoffice.Office.Paths:NamedPath['Temp']\"><prop oor:name=\"WritePath\" oor:op=\"fuse\"><value>file://"
-                                    + loOutPath + "</value></prop></item>");
-                            out.newLine();
-                        }
-                    }
-                }
-            }
-            cfgIn.delete();
-            cfgOut.renameTo(cfgIn);
-        } catch (Exception e) {
-            logger.warn("Error setting LibreOffice temp directory!", e);
+        Request request = loRequest;
+        if (request != null) {
+            request.abort();
         }
+        finishProcess(convertProcess);
     }
-}
\ No newline at end of file
+}
@@ -10,7 +10,12 @@
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.elasticsearch.action.ActionListener;
@@ -21,7 +26,6 @@
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.master.AcknowledgedResponse;
-import org.elasticsearch.client.Cancellable;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.client.RestClient;
@@ -37,6 +41,7 @@
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.rest.RestStatus;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +50,7 @@
 import dpf.sp.gpinf.indexer.config.ConfigurationManager;
 import dpf.sp.gpinf.indexer.config.ElasticSearchTaskConfig;
 import dpf.sp.gpinf.indexer.config.IndexTaskConfig;
+import dpf.sp.gpinf.indexer.config.LocalConfig;
 import dpf.sp.gpinf.indexer.process.IndexItem;
 import dpf.sp.gpinf.indexer.util.FragmentingReader;
 import dpf.sp.gpinf.indexer.util.IOUtil;
@@ -92,12 +98,32 @@ public class ElasticSearchIndexTask extends AbstractTask {
 
     private static String user, password, indexName;
 
+    /**
+     * Bulk requests in flight, shared by all workers. Workers block only when it
+     * is full.
+     */
+    private static Semaphore inFlightWindow;
+
+    /**
+     * Sends bulk requests and schedules retries, so workers do not spend time
+     * serializing requests.
+     */
+    private static ScheduledExecutorService senderPool;
+
+    private static final Object inFlightLock = new Object();
+
+    private static int inFlightRequests = 0;
+
+    private static int maxRetries;
+
+    private static long retryBackoff;
+
+    static AtomicLong bulkRequests = new AtomicLong(), retriedItems = new AtomicLong(), failedItems = new AtomicLong();
+
     private BulkRequest bulkRequest = new BulkRequest();
 
     private HashMap<String, String> idToPath = new HashMap<>();
 
-    private int numRequests = 0;
-
     private AtomicBoolean onCommit = new AtomicBoolean();
 
     private char[] textBuf = new char[16 * 1024];
@@ -158,6 +184,10 @@ public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpCli
 
         client = new RestHighLevelClient(clientBuilder);
 
+        int numThreads = configurationManager.findObject(LocalConfig.class).getNumThreads();
+        startSender(client, elasticConfig.getMax_async_requests() * numThreads, elasticConfig.getMax_retries(),
+                elasticConfig.getRetry_backoff_millis(), Math.min(numThreads, 4));
+
         boolean ping = client.ping(RequestOptions.DEFAULT);
         if (!ping) {
             throw new IOException("ElasticSearch cluster at " + elasticConfig.getHost() + ":" + elasticConfig.getPort()
@@ -180,6 +210,59 @@ public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpCli
 
     }
 
+    /**
+     * Starts the shared pool that sends bulk requests through the given client.
+     * 
+     * @param maxInFlight
+     *            bulk requests in flight, including the ones waiting for retry
+     */
+    static void startSender(RestHighLevelClient restClient, int maxInFlight, int maxRetries, long retryBackoff,
+            int senderThreads) {
+        client = restClient;
+        inFlightWindow = new Semaphore(maxInFlight);
+        ElasticSearchIndexTask.maxRetries = maxRetries;
+        ElasticSearchIndexTask.retryBackoff = retryBackoff;
+        senderPool = Executors.newScheduledThreadPool(senderThreads, r -> {
+            Thread t = new Thread(r, "ElasticSearchSender"); //$NON-NLS-1$
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    static void stopSender() {
+        if (senderPool != null) {
+            senderPool.shutdown();
+            LOGGER.info("ElasticSearch bulk requests: {}, retried items: {}, failed items: {}", //$NON-NLS-1$
+                    bulkRequests.get(), retriedItems.get(), failedItems.get());
+        }
+    }
+
+    /**
+     * Takes a slot of the in-flight window, blocking while it is full, and hands
+     * the request over to the sender pool.
+     */
+    static void submitBulkRequest(BulkRequest bulkRequest, HashMap<String, String> idToPath)
+            throws InterruptedException {
+        inFlightWindow.acquire();
+        synchronized (inFlightLock) {
+            inFlightRequests++;
+        }
+        bulkRequests.incrementAndGet();
+        senderPool.execute(new BulkSubmission(bulkRequest, idToPath));
+    }
+
+    /**
+     * Waits until all submitted requests were indexed or their retries were
+     * exhausted.
+     */
+    static void waitInFlightRequests() throws InterruptedException {
+        synchronized (inFlightLock) {
+            while (inFlightRequests > 0) {
+                inFlightLock.wait();
+            }
+        }
+    }
+
     private void parseCmdLineFields(String cmdFields) {
         String[] entries = cmdFields.split(";");
         for (String entry : entries) {
@@ -288,11 +371,9 @@ public static void commit() throws IOException, InterruptedException {
             instance.onCommit.set(true);
             instance.sendBulkRequest();
         }
+        waitInFlightRequests();
         for (ElasticSearchIndexTask instance : taskInstances) {
             synchronized (instance) {
-                while (instance.numRequests > 0) {
-                    instance.wait();
-                }
                 instance.onCommit.set(false);
                 instance.notifyAll();
             }
@@ -304,6 +385,7 @@ public void finish() throws Exception {
         if (!taskInstances.isEmpty()) {
             commit();
             taskInstances.clear();
+            stopSender();
             IOUtil.closeQuietly(client);
         }
     }
@@ -404,7 +486,7 @@ protected synchronized void process(IItem item) throws Exception {
 
     }
 
-    private synchronized void sendBulkRequest() throws IOException {
+    private synchronized void sendBulkRequest() throws InterruptedException {
         BulkRequest bulkRequest = this.bulkRequest;
         HashMap<String, String> idToPath = this.idToPath;
 
@@ -414,39 +496,57 @@ private synchronized void sendBulkRequest() throws IOException {
         if (bulkRequest.numberOfActions() == 0) {
             return;
         }
-        try {
-            numRequests++;
-            while (numRequests > elasticConfig.getMax_async_requests()) {
-                this.wait();
-            }
-            Cancellable cancellable = client.bulkAsync(bulkRequest, RequestOptions.DEFAULT,
-                    new BulkResponseListener(idToPath));
-
-        } catch (Exception e) {
-            LOGGER.error("Error indexing to ElasticSearch " + bulkRequest.getDescription(), e);
-        }
+        submitBulkRequest(bulkRequest, idToPath);
     }
 
-    private class BulkResponseListener implements ActionListener<BulkResponse> {
+    /**
+     * Sends a bulk request and handles its response. Documents rejected by the
+     * cluster because it is overloaded, or the whole request if it failed, are
+     * sent again after an exponential backoff, holding the in-flight slot until
+     * they are finally indexed or retries are exhausted.
+     */
+    private static class BulkSubmission implements Runnable, ActionListener<BulkResponse> {
+
+        private BulkRequest bulkRequest;
 
-        HashMap<String, String> idPathMap;
+        private HashMap<String, String> idPathMap;
 
-        private BulkResponseListener(HashMap<String, String> itemMap) {
+        private int attempt = 0;
+
+        private BulkSubmission(BulkRequest bulkRequest, HashMap<String, String> itemMap) {
+            this.bulkRequest = bulkRequest;
             this.idPathMap = itemMap;
         }
 
+        @Override
+        public void run() {
+            try {
+                client.bulkAsync(bulkRequest, RequestOptions.DEFAULT, this);
+            } catch (Exception e) {
+                onFailure(e);
+            }
+        }
+
         @Override
         public void onResponse(BulkResponse response) {
 
-            notifyWaitingRequests();
+            BulkRequest retryRequest = null;
 
             for (BulkItemResponse bulkItemResponse : response) {
                 if (bulkItemResponse.isFailed()) {
                     BulkItemResponse.Failure failure = bulkItemResponse.getFailure();
+                    if (failure.getStatus() == RestStatus.TOO_MANY_REQUESTS && attempt < maxRetries) {
+                        if (retryRequest == null) {
+                            retryRequest = new BulkRequest();
+                        }
+                        retryRequest.add(bulkRequest.requests().get(bulkItemResponse.getItemId()));
+                        continue;
+                    }
                     String path = idPathMap.get(bulkItemResponse.getId());
                     String msg = failure.getMessage();
                     if (!msg.contains("document already exists")) { //$NON-NLS-1$
                         LOGGER.error("Elastic failure result {}: {}", path, msg); //$NON-NLS-1$
+                        failedItems.incrementAndGet();
                     } else {
                         LOGGER.debug("Elastic failure result {}: {}", path, msg); //$NON-NLS-1$
                     }
@@ -455,18 +555,45 @@ public void onResponse(BulkResponse response) {
                             idPathMap.get(bulkItemResponse.getId()));
                 }
             }
+
+            if (retryRequest != null) {
+                retry(retryRequest);
+            } else {
+                done();
+            }
         }
 
         @Override
         public void onFailure(Exception e) {
-            notifyWaitingRequests();
-            LOGGER.error("Error indexing to ElasticSearch ", e);
+            if (attempt < maxRetries) {
+                LOGGER.warn("Error indexing to ElasticSearch, retrying: {}", e.toString()); //$NON-NLS-1$
+                retry(bulkRequest);
+            } else {
+                LOGGER.error("Error indexing to ElasticSearch ", e);
+                failedItems.addAndGet(bulkRequest.numberOfActions());
+                done();
+            }
         }
 
-        private void notifyWaitingRequests() {
-            synchronized (ElasticSearchIndexTask.this) {
-                numRequests--;
-                ElasticSearchIndexTask.this.notifyAll();
+        private void retry(BulkRequest request) {
+            retriedItems.addAndGet(request.numberOfActions());
+            bulkRequest = request;
+            long delay = retryBackoff << attempt++;
+            try {
+                senderPool.schedule(this, delay, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                LOGGER.error("Error scheduling ElasticSearch retry", e); //$NON-NLS-1$
+                failedItems.addAndGet(request.numberOfActions());
+                done();
+            }
+        }
+
+        private void done() {
+            inFlightWindow.release();
+            synchronized (inFlightLock) {
+                if (--inFlightRequests == 0) {
+                    inFlightLock.notifyAll();
+                }
             }
         }
 
@@ -126,7 +126,13 @@ protected void process(IItem item) throws Exception {
 
         try (SleuthkitReader reader = new SleuthkitReader(true, caseData, output)) {
             logger.info("Decoding embedded disk image {} -> {}", item.getPath(), imageFile.getAbsolutePath());
-            reader.read(imageFile, (Item) item);
+            // image items reuse the parent data source, which is not fully enumerated yet
+            caseData.startEmbeddedEnumeration(item);
+            try {
+                reader.read(imageFile, (Item) item);
+            } finally {
+                caseData.finishEmbeddedEnumeration(item);
+            }
             int numSubitems = reader.getItemCount();
             if (numSubitems > 0) {
                 item.setHasChildren(true);
@@ -133,7 +133,8 @@ public class ExportFileTask extends AbstractTask {
     
     private static ArrayList<IHashValue> noContentHashes = new ArrayList<>();
 
-    public static int subDirCounter = 0, itensExtracted = 0;
+    public static int subDirCounter = 0;
+    private static AtomicInteger itensExtracted = new AtomicInteger();
     private static File subDir;
 
     private static boolean computeHash = false;
@@ -150,12 +151,12 @@ public ExportFileTask() {
         ExportFolder.setExportPath(EXTRACT_DIR);
     }
 
-    public static synchronized void incItensExtracted() {
-        itensExtracted++;
+    public static void incItensExtracted() {
+        itensExtracted.incrementAndGet();
     }
 
     public static int getItensExtracted() {
-        return itensExtracted;
+        return itensExtracted.get();
     }
 
     private static void setExtractLocation(ICaseData caseData, File output) {
@@ -721,7 +722,7 @@ public void init(ConfigurationManager configurationManager) throws Exception {
             computeHash = true;
         }
 
-        itensExtracted = 0;
+        itensExtracted.set(0);
         subDirCounter = 0;
 
         hashMap = (HashMap<IHashValue, IHashValue>) caseData.getCaseObject(DuplicateTask.HASH_MAP);
@@ -48,11 +48,20 @@
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.imageio.ImageIO;
@@ -102,26 +111,27 @@ public class HTMLReportTask extends AbstractTask {
     public static final String viewFolder = "view"; //$NON-NLS-1$
 
     /**
-     * Registros organizados por marcador.
+     * Registros organizados por marcador. Registros sem marcador ficam no grupo de
+     * nome vazio.
      */
-    private static final SortedMap<String, List<ReportEntry>> entriesByLabel = new TreeMap<String, List<ReportEntry>>(
-            collator);
+    private static final ReportEntrySorter entriesByLabel = new ReportEntrySorter(collator, new CustomComparator());
 
     /**
      * Registros organizados por categoria.
      */
-    private static final SortedMap<String, List<ReportEntry>> entriesByCategory = new TreeMap<String, List<ReportEntry>>(
-            collator);
+    private static final ReportEntrySorter entriesByCategory = new ReportEntrySorter(collator,
+            new CustomComparator());
 
     /**
-     * Registros sem marcador.
+     * Tag para registros sem marcador
      */
-    private static final List<ReportEntry> entriesNoLabel = new ArrayList<ReportEntry>();
+    private static final String NO_LABEL_NAME = Messages.getString("HTMLReportTask.NoBookmarks"); //$NON-NLS-1$
 
     /**
-     * Tag para registros sem marcador
+     * Marcadores que serão incluídos no relatório, mapeados para o grupo de
+     * registros correspondente.
      */
-    private static final String NO_LABEL_NAME = Messages.getString("HTMLReportTask.NoBookmarks"); //$NON-NLS-1$
+    private static final SortedMap<String, String> labelKeys = new TreeMap<String, String>(collator);
 
     /**
      * Mapa de marcadores para seus comentários
@@ -180,6 +190,20 @@ public class HTMLReportTask extends AbstractTask {
 
     private HtmlReportTaskConfig htmlReportConfig;
 
+    private static final ThreadLocal<DateFormat> dateFormat = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat(Messages.getString("HTMLReportTask.Dateformat")); //$NON-NLS-1$
+        }
+    };
+
+    private static final ThreadLocal<NumberFormat> longFormat = new ThreadLocal<NumberFormat>() {
+        @Override
+        protected NumberFormat initialValue() {
+            return LocalizedFormat.getDecimalInstance("#,##0"); //$NON-NLS-1$
+        }
+    };
+
     private boolean extractThumb;
 
     private static Collator getCollator() {
@@ -307,8 +331,12 @@ public void finish() throws Exception {
 
             reportSubFolder.mkdirs();
 
-            if (!entriesByLabel.isEmpty() && !entriesNoLabel.isEmpty())
-                entriesByLabel.put(NO_LABEL_NAME, entriesNoLabel);
+            for (String label : entriesByLabel.getKeys()) {
+                if (!label.isEmpty())
+                    labelKeys.put(label, label);
+            }
+            if (!labelKeys.isEmpty() && entriesByLabel.size("") > 0) //$NON-NLS-1$
+                labelKeys.put(NO_LABEL_NAME, ""); //$NON-NLS-1$
 
             modeloPerito = EncodedFile.readFile(new File(templateSubFolder, "perito.html"), StandardCharsets.UTF_8).content; //$NON-NLS-1$//$NON-NLS-2$
             processBookmarks(templateSubFolder);
@@ -333,6 +361,8 @@ public void finish() throws Exception {
             t = (System.currentTimeMillis() - t + 500) / 1000;
             logger.info("Report creation time (seconds): " + t); //$NON-NLS-1$
 
+            entriesByLabel.clear();
+            entriesByCategory.clear();
             externalImageConverter.close();
         }
     }
@@ -370,23 +400,11 @@ protected void process(IItem evidence) throws Exception {
         if (!evidence.getLabels().isEmpty())
             labels = evidence.getLabels().toArray(new String[0]);
         String[] categories = reg.category.split("\\|"); //$NON-NLS-1$
-        synchronized (init) {
-            for (String label : labels) {
-                label = label.trim();
-                List<ReportEntry> regs = label.length() == 0 ? entriesNoLabel : entriesByLabel.get(label);
-                if (regs == null) {
-                    entriesByLabel.put(label, regs = new ArrayList<ReportEntry>());
-                }
-                regs.add(reg);
-            }
-            for (String category : categories) {
-                category = category.trim();
-                List<ReportEntry> regs = entriesByCategory.get(category);
-                if (regs == null) {
-                    entriesByCategory.put(category, regs = new ArrayList<ReportEntry>());
-                }
-                regs.add(reg);
-            }
+        for (String label : labels) {
+            entriesByLabel.add(label.trim(), reg);
+        }
+        for (String category : categories) {
+            entriesByCategory.add(category.trim(), reg);
         }
 
         if (((htmlReportConfig.isImageThumbsEnabled() && reg.isImage)
@@ -490,10 +508,10 @@ private void processContents(File src, File target) throws Exception {
         StringBuilder sb = new StringBuilder();
 
         int idx = 1;
-        if (!entriesByLabel.isEmpty()) {
+        if (!labelKeys.isEmpty()) {
             sb.append("<p>\n"); //$NON-NLS-1$
             sb.append("\t<span class=\"SmallText1\">" + Messages.getString("HTMLReportTask.Bookmarks") + "</span>\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-            for (String marcador : entriesByLabel.keySet()) {
+            for (String marcador : labelKeys.keySet()) {
                 sb.append("\t\t<br />&nbsp;&nbsp;&nbsp;&nbsp;<a href=\"arq"); //$NON-NLS-1$
                 sb.append(String.format("%06d", idx)); //$NON-NLS-1$
                 sb.append("(1).html\" target=\"ReportPage\" class=\"MenuText\">"); //$NON-NLS-1$
@@ -507,7 +525,7 @@ private void processContents(File src, File target) throws Exception {
         if (htmlReportConfig.isCategoriesListEnabled() && !entriesByCategory.isEmpty()) {
             sb.append("<p>\n"); //$NON-NLS-1$
             sb.append("\t<span class=\"SmallText1\">" + Messages.getString("HTMLReportTask.Categories") + "</span>\n"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-            for (String categoria : entriesByCategory.keySet()) {
+            for (String categoria : entriesByCategory.getKeys()) {
                 sb.append("\t\t<br />&nbsp;&nbsp;&nbsp;&nbsp;<a href=\"arq"); //$NON-NLS-1$
                 sb.append(String.format("%06d", idx)); //$NON-NLS-1$
                 sb.append("(1).html\" target=\"ReportPage\" class=\"MenuText\">"); //$NON-NLS-1$
@@ -532,129 +550,95 @@ private void processContents(File src, File target) throws Exception {
     }
 
     private void processBookmarks(File templatesFolder) throws Exception {
-        sortRegs();
         StringBuilder modelo = EncodedFile.readFile(new File(templatesFolder, "arq.html"), StandardCharsets.UTF_8).content; //$NON-NLS-1$//$NON-NLS-2$
         replace(modelo, "%THUMBSIZE%", String.valueOf(htmlReportConfig.getThumbSize())); //$NON-NLS-1$
         StringBuilder item = EncodedFile.readFile(new File(templatesFolder, "item.html"), StandardCharsets.UTF_8).content; //$NON-NLS-1$//$NON-NLS-2$
-        int idx = 1;
-        for (String marcador : entriesByLabel.keySet()) {
-            String id = String.format("arq%06d", idx); //$NON-NLS-1$
-            List<ReportEntry> regs = entriesByLabel.get(marcador);
-            processaBookmark(marcador, id, modelo, item, true, regs);
-            idx++;
-            List<String> l = new ArrayList<String>();
-            for (ReportEntry e : regs) {
-                if (e.img != null)
-                    l.add(e.img);
-            }
-            if (!l.isEmpty())
-                imageThumbsByLabel.put(marcador, l);
-        }
-        if (htmlReportConfig.isCategoriesListEnabled()) {
-            for (String categoria : entriesByCategory.keySet()) {
+
+        // páginas de todos os marcadores e categorias são geradas pelo mesmo pool,
+        // limitando as páginas pendentes para manter o uso de memória limitado
+        LocalConfig localConfig = ConfigurationManager.get().findObject(LocalConfig.class);
+        final int numThreads = localConfig.getNumThreads();
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+        Semaphore pendingPages = new Semaphore(2 * numThreads);
+        Map<String, List<Future<List<String>>>> imagesByBookmark = new LinkedHashMap<>();
+        try {
+            int idx = 1;
+            for (Entry<String, String> marcador : labelKeys.entrySet()) {
                 String id = String.format("arq%06d", idx); //$NON-NLS-1$
-                List<ReportEntry> regs = entriesByCategory.get(categoria);
-                processaBookmark(categoria, id, modelo, item, false, regs);
+                String key = marcador.getValue();
+                imagesByBookmark.put(marcador.getKey(), processaBookmark(pool, pendingPages, marcador.getKey(), id,
+                        modelo, item, true, entriesByLabel.iterator(key), entriesByLabel.size(key)));
                 idx++;
-                if (entriesByLabel.isEmpty()) {
-                    List<String> l = new ArrayList<String>();
-                    for (ReportEntry e : regs) {
-                        if (e.img != null)
-                            l.add(e.img);
+            }
+            if (htmlReportConfig.isCategoriesListEnabled()) {
+                for (String categoria : entriesByCategory.getKeys()) {
+                    String id = String.format("arq%06d", idx); //$NON-NLS-1$
+                    List<Future<List<String>>> pages = processaBookmark(pool, pendingPages, categoria, id, modelo, item,
+                            false, entriesByCategory.iterator(categoria), entriesByCategory.size(categoria));
+                    idx++;
+                    if (labelKeys.isEmpty()) {
+                        imagesByBookmark.put(categoria, pages);
                     }
-                    if (!l.isEmpty())
-                        imageThumbsByLabel.put(categoria, l);
                 }
             }
-        }
-    }
-
-    private void sortRegs() {
-        final List<List<ReportEntry>> l = new ArrayList<List<ReportEntry>>(entriesByLabel.values());
-        if (htmlReportConfig.isCategoriesListEnabled()) {
-            l.addAll(entriesByCategory.values());
-        }
-        Collections.sort(l, new Comparator<List<ReportEntry>>() {
-            public int compare(List<ReportEntry> a, List<ReportEntry> b) {
-                return Integer.compare(b.size(), a.size());
-            }
-        });
-        final CustomComparator comparator = new CustomComparator();
-
-        LocalConfig localConfig = ConfigurationManager.get().findObject(LocalConfig.class);
-        final int numThreads = localConfig.getNumThreads();
-
-        Thread[] threads = new Thread[numThreads];
-        for (int i = 0; i < numThreads; i++) {
-            final int idx = i;
-            (threads[i] = new Thread() {
-                public void run() {
-                    for (int j = idx; j < l.size(); j += numThreads) {
-                        Collections.sort(l.get(j), new Comparator<ReportEntry>() {
-                            public int compare(ReportEntry a, ReportEntry b) {
-                                return comparator.compare(a.path, b.path);
-                            }
-                        });
-                    }
+            for (Entry<String, List<Future<List<String>>>> entry : imagesByBookmark.entrySet()) {
+                List<String> l = new ArrayList<String>();
+                for (Future<List<String>> page : entry.getValue()) {
+                    l.addAll(page.get());
                 }
-            }).start();
-        }
-        for (int i = 0; i < numThreads; i++) {
-            try {
-                if (threads[i] != null)
-                    threads[i].join();
-            } catch (InterruptedException e) {
+                if (!l.isEmpty())
+                    imageThumbsByLabel.put(entry.getKey(), l);
             }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
         }
     }
 
-    private void processaBookmark(final String name, final String id, final StringBuilder model,
-            final StringBuilder item, final boolean isLabel, final List<ReportEntry> regs) throws Exception {
-        final int tot = regs.size();
-        final int numPages = (tot + htmlReportConfig.getItemsPerPage() - 1) / htmlReportConfig.getItemsPerPage();
-
-        LocalConfig localConfig = ConfigurationManager.get().findObject(LocalConfig.class);
-        final int numThreads = localConfig.getNumThreads();
-
-        Thread[] threads = new Thread[numThreads];
-        for (int i = 0; i < numThreads; i++) {
-            final int idx = i;
-            (threads[i] = new Thread() {
-                public void run() {
-                    DateFormat dateFormat = new SimpleDateFormat(Messages.getString("HTMLReportTask.Dateformat")); //$NON-NLS-1$
-                    NumberFormat longFormat = LocalizedFormat.getDecimalInstance("#,##0"); //$NON-NLS-1$
-                    for (int page = 1; page <= numPages; page++) {
-                        if (page % numThreads != idx)
-                            continue;
-                        int start = (page - 1) * htmlReportConfig.getItemsPerPage();
-                        int end = Math.min(tot, start + htmlReportConfig.getItemsPerPage());
-                        try {
-                            createBookmarkPage(dateFormat, longFormat, name, id, model, item, page, numPages, tot,
-                                    regs.subList(start, end), isLabel);
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
+    /**
+     * Lê os registros do marcador em ordem e submete a geração de cada página ao
+     * pool. Retorna, para cada página, as miniaturas de imagem incluídas.
+     */
+    private List<Future<List<String>>> processaBookmark(ExecutorService pool, Semaphore pendingPages,
+            final String name, final String id, final StringBuilder model, final StringBuilder item,
+            final boolean isLabel, Iterator<ReportEntry> entries, final int tot) throws InterruptedException {
+        final int itemsPerPage = htmlReportConfig.getItemsPerPage();
+        final int numPages = (tot + itemsPerPage - 1) / itemsPerPage;
+
+        List<Future<List<String>>> pages = new ArrayList<>(numPages);
+        for (int page = 1; page <= numPages; page++) {
+            final List<ReportEntry> regs = new ArrayList<>(itemsPerPage);
+            while (regs.size() < itemsPerPage && entries.hasNext()) {
+                regs.add(entries.next());
+            }
+            final int pag = page;
+            pendingPages.acquire();
+            pages.add(pool.submit(new Callable<List<String>>() {
+                public List<String> call() {
+                    try {
+                        return createBookmarkPage(dateFormat.get(), longFormat.get(), name, id, model, item, pag,
+                                numPages, tot, regs, isLabel);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        return Collections.emptyList();
+                    } finally {
+                        pendingPages.release();
                     }
                 }
-            }).start();
-        }
-        for (int i = 0; i < numThreads; i++) {
-            try {
-                threads[i].join();
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
+            }));
         }
+        return pages;
     }
 
     private String getPageId(String id, int page) {
         return id + "(" + page + ").html"; //$NON-NLS-1$ //$NON-NLS-2$
     }
 
-    private void createBookmarkPage(DateFormat dateFormat, NumberFormat longFormat, String name, String id,
+    private List<String> createBookmarkPage(DateFormat dateFormat, NumberFormat longFormat, String name, String id,
             StringBuilder model, StringBuilder item, int pag, int totPags, int totRegs, List<ReportEntry> regs,
             boolean isLabel) throws Exception {
         File arq = new File(reportSubFolder, getPageId(id, pag));
+        List<String> images = new ArrayList<String>();
 
         StringBuilder sb = new StringBuilder();
         sb.append(model);
@@ -685,8 +669,8 @@ private void createBookmarkPage(DateFormat dateFormat, NumberFormat longFormat,
                     }
                     it.append(img);
                     it.append("</td></tr></table>\n"); //$NON-NLS-1$
-                    if (isLabel || entriesByLabel.isEmpty()) {
-                        reg.img = img.toString();
+                    if (isLabel || labelKeys.isEmpty()) {
+                        images.add(img.toString());
                     }
                 }
             } else if (reg.isVideo && htmlReportConfig.isVideoThumbsEnabled() && reg.hash != null) {
@@ -770,6 +754,7 @@ private void createBookmarkPage(DateFormat dateFormat, NumberFormat longFormat,
 
         EncodedFile ef = new EncodedFile(sb, Charset.forName("utf-8"), arq); //$NON-NLS-1$
         ef.write();
+        return images;
     }
 
     private String getComments(String bookmark) {
@@ -970,7 +955,7 @@ private void createThumbsPage() {
 
         for (String bookmark : imageThumbsByLabel.keySet()) {
             List<String> l = imageThumbsByLabel.get(bookmark);
-            addBookmarkTitle(sb, bookmark, l.size(), !entriesByLabel.isEmpty());
+            addBookmarkTitle(sb, bookmark, l.size(), !labelKeys.isEmpty());
             int cnt = 0;
             for (String s : l) {
                 n++;
@@ -983,7 +968,7 @@ private void createThumbsPage() {
                     n = 0;
                     sb.delete(0, sb.length());
                     if (++cnt < l.size()) {
-                        addBookmarkTitle(sb, bookmark, l.size(), !entriesByLabel.isEmpty());
+                        addBookmarkTitle(sb, bookmark, l.size(), !labelKeys.isEmpty());
                     }
                 }
             }
@@ -1058,7 +1043,7 @@ private void writeThumbsPage(StringBuilder sb, File f) {
  * @author Wladimir
  */
 class ReportEntry {
-    String name, export, ext, category, hash, path, img;
+    String name, export, ext, category, hash, path;
     Long length;
     boolean deleted, carved, isImage, isVideo;
     Date accessed, modified, created;
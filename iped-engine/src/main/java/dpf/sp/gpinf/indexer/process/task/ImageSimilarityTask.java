@@ -15,6 +15,7 @@
 
 import dpf.sp.gpinf.indexer.config.ConfigurationManager;
 import dpf.sp.gpinf.indexer.config.EnableTaskProperty;
+import dpf.sp.gpinf.indexer.config.ImageThumbTaskConfig;
 import gpinf.similarity.ImageSimilarity;
 import iped3.IItem;
 import macee.core.Configurable;
@@ -37,6 +38,14 @@ public class ImageSimilarityTask extends AbstractTask {
 
     private ImageSimilarity imageSimilarity;
 
+    private ArtifactStore artifactStore;
+
+    /**
+     * Features are extracted from thumbs, so their configuration is used to reuse
+     * stored features.
+     */
+    private String artifactFingerprint;
+
     private static final Logger logger = LoggerFactory.getLogger(ImageSimilarityTask.class);
 
     public boolean isEnabled() {
@@ -69,6 +78,11 @@ public void init(ConfigurationManager configurationManager) throws Exception {
         }
         if (taskEnabled) {
             imageSimilarity = new ImageSimilarity();
+            artifactStore = ArtifactStore.get();
+            if (artifactStore != null) {
+                ImageThumbTaskConfig thumbConfig = configurationManager.findObject(ImageThumbTaskConfig.class);
+                artifactFingerprint = ArtifactStore.fingerprint(thumbConfig.getArtifactSettings());
+            }
         }
     }
 
@@ -97,10 +111,22 @@ protected void process(IItem evidence) throws Exception {
             if (thumb == null) {
                 return;
             }
+            if (artifactStore != null) {
+                byte[] features = artifactStore.get(getClass().getSimpleName(), artifactFingerprint,
+                        evidence.getHash());
+                if (features != null) {
+                    evidence.setImageSimilarityFeatures(features);
+                    totalProcessed.incrementAndGet();
+                    return;
+                }
+            }
             long t = System.currentTimeMillis();
             BufferedImage img = ImageIO.read(new ByteArrayInputStream(thumb));
             byte[] features = imageSimilarity.extractFeatures(img);
             if (features != null) {
+                if (artifactStore != null) {
+                    artifactStore.put(getClass().getSimpleName(), artifactFingerprint, evidence.getHash(), features);
+                }
                 evidence.setImageSimilarityFeatures(features);
                 totalProcessed.incrementAndGet();
             } else {
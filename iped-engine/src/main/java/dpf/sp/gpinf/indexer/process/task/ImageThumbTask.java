@@ -4,6 +4,7 @@
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -67,6 +68,11 @@ public List<Configurable<?>> getConfigurables() {
         return Arrays.asList(new ImageThumbTaskConfig());
     }
 
+    @Override
+    protected Serializable getArtifactConfig() {
+        return imgThumbConfig.getArtifactSettings();
+    }
+
     @Override
     public void init(ConfigurationManager configurationManager) throws Exception {
 
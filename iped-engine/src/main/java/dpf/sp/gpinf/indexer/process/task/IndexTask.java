@@ -26,6 +26,7 @@
 import dpf.sp.gpinf.indexer.io.ParsingReader;
 import dpf.sp.gpinf.indexer.parsers.IndexerDefaultParser;
 import dpf.sp.gpinf.indexer.process.IndexItem;
+import dpf.sp.gpinf.indexer.process.ItemLookupIndex;
 import dpf.sp.gpinf.indexer.process.Worker.STATE;
 import dpf.sp.gpinf.indexer.search.IPEDSource;
 import dpf.sp.gpinf.indexer.util.CloseFilterReader;
@@ -58,6 +59,7 @@ public class IndexTask extends AbstractTask {
     private List<IdLenPair> textSizes;
 
     private IndexTaskConfig indexConfig;
+    private ItemLookupIndex lookupIndex;
 
     public static class IdLenPair {
 
@@ -164,7 +166,10 @@ public void process(IItem evidence) throws IOException {
                 }
 
                 Document doc = IndexItem.Document(evidence, noCloseReader, output);
+                // time blocked here includes segment flushes and flush stalls
+                long t = System.nanoTime();
                 worker.writer.addDocument(doc);
+                stats.addIndexWriteTime(System.nanoTime() - t);
 
                 while (worker.state != STATE.RUNNING) {
                     try {
@@ -190,6 +195,10 @@ public void process(IItem evidence) throws IOException {
 
         textSizes.add(new IdLenPair(evidence.getId(), fragReader.getTotalTextSize()));
 
+        if (lookupIndex != null) {
+            lookupIndex.add(evidence);
+        }
+
     }
 
     private Metadata getMetadata(IItem evidence) {
@@ -227,6 +236,8 @@ public void init(ConfigurationManager configurationManager) throws Exception {
             }
         }
 
+        lookupIndex = (ItemLookupIndex) caseData.getCaseObject(ItemLookupIndex.class.getName());
+
         textSizes = (List<IdLenPair>) caseData.getCaseObject(TEXT_SIZES);
         if (textSizes == null) {
             textSizes = Collections.synchronizedList(new ArrayList<IdLenPair>());
@@ -1,18 +1,24 @@
 package dpf.sp.gpinf.indexer.process.task;
 
-import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.security.MessageDigest;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -30,6 +36,7 @@
 import gpinf.hashdb.LedHashDB;
 import gpinf.hashdb.LedItem;
 import iped3.IItem;
+import iped3.io.SeekableInputStream;
 import iped3.util.MediaTypes;
 import macee.core.Configurable;
 
@@ -75,10 +82,21 @@ public class LedCarveTask extends BaseCarveTask {
      */
     private static final AtomicLong num512hit = new AtomicLong();
 
+    private static final int BLOCK_512 = 512;
+
+    private static final int BLOCK_64K = 65536;
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
     /**
-     * Digest utilizado para cálculo do MD5.
+     * Tamanho dos intervalos de itens grandes processados em paralelo.
      */
-    private MessageDigest digest = null;
+    private static final long RANGE_SIZE = 64 << 20;
+
+    /**
+     * Pool para cálculo dos hashes dos intervalos de itens grandes.
+     */
+    private static ExecutorService scanPool;
 
     /**
      * Base de hashes, com MD5 dos 512 bytes e 64 KBytes iniciais, e respectivos registros na base.
@@ -139,6 +157,13 @@ public void init(ConfigurationManager configurationManager) throws Exception {
                             if (ledHashDB != null && ledHashDB.size() > 0) {
                                 logger.info("{} LED Hashes loaded in {} ms.", ledHashDB.size(), System.currentTimeMillis() - t);
                                 taskEnabled = true;
+                                scanPool = Executors.newFixedThreadPool(localConfig.getNumThreads(), new ThreadFactory() {
+                                    public Thread newThread(Runnable r) {
+                                        Thread thread = new Thread(r, "LedCarveScanner"); //$NON-NLS-1$
+                                        thread.setDaemon(true);
+                                        return thread;
+                                    }
+                                });
                             }
                         }
                     }
@@ -147,7 +172,6 @@ public void init(ConfigurationManager configurationManager) throws Exception {
                 init.set(true);
             }
         }
-        if (taskEnabled) digest = MessageDigest.getInstance("MD5");
     }
 
     /**
@@ -156,6 +180,7 @@ public void init(ConfigurationManager configurationManager) throws Exception {
     public void finish() throws Exception {
         synchronized (finished) {
             if (taskEnabled && !finished.get()) {
+                scanPool.shutdownNow();
                 ledHashDB = null;
                 hashDBDataSource.close();
                 ledCarved.clear();
@@ -172,75 +197,60 @@ protected void process(IItem evidence) throws Exception {
         // Verifica se está desabilitado e se o tipo de arquivo é tratado
         if (!taskEnabled || caseData.isIpedReport() || !isAcceptedType(evidence.getMediaType()) || !isToProcess(evidence)) return;
 
-        byte[] buf512 = new byte[512];
-        byte[] buf64K = new byte[65536 - buf512.length];
-        BufferedInputStream is = null;
-
         int cntCarvedItems = 0;
         long cnt512hit = 0;
         long cnt512total = 0;
         long cntBytesHashed = 0;
         Set<Long> offsets = null;
+        List<Future<ScanResult>> futures = new ArrayList<>();
         try {
-            long offset = 0;
-            int read512 = 0;
-            is = evidence.getBufferedStream();
-            while ((read512 = is.read(buf512)) > 0) {
-                if (read512 != buf512.length) break;
-                cnt512total++;
-                boolean empty = true;
-                byte first = buf512[0];
-                for (int i = 1; i < read512; i++) {
-                    if (buf512[i] != first) {
-                        empty = false;
-                        break;
-                    }
+            Long length = evidence.getLength();
+            if (length != null && length >= 2 * RANGE_SIZE) {
+                // itens grandes são divididos em intervalos processados em paralelo
+                for (long start = 0; start < length; start += RANGE_SIZE) {
+                    final long rangeStart = start;
+                    final long rangeEnd = Math.min(start + RANGE_SIZE, length);
+                    futures.add(scanPool.submit(() -> scanRange(evidence, rangeStart, rangeEnd)));
                 }
-                if (!empty) {
-                    digest.update(buf512, 0, read512);
-                    cntBytesHashed += read512;
-                    byte[] hash512 = digest.digest();
-                    if (ledHashDB.containsMD5_512(hash512)) {
-                        cnt512hit++;
-                        is.mark(65536);
-                        int read64K = is.read(buf64K);
-                        is.reset();
-                        if (read64K == buf64K.length) {
-                            cntBytesHashed += read512 + read64K;
-                            digest.update(buf512, 0, read512);
-                            digest.update(buf64K, 0, read64K);
-                            byte[] hash64K = digest.digest();
-                            int hashId = ledHashDB.hashIdFromMD5_64K(hash64K);
-                            if (hashId >= 0) {
-                                LedItem ledItem = hashDBDataSource.getLedItem(hashId);
-                                if (ledItem != null) {
-                                    String name = "CarvedLed-" + offset;
-                                    String ext = ledItem.getExt();
-                                    if (ext != null) name += '.' + ext.toLowerCase();
-                                    IItem carvedItem = createCarvedFile(evidence, offset, ledItem.getLength(), name, null);
-                                    if (carvedItem != null) {
-                                        carvedItem.setExtraAttribute("ledCarvedMD5", ledItem.getMD5());
-                                        cntCarvedItems++;
-                                        if (offsets == null) {
-                                            offsets = new HashSet<Long>();
-                                            synchronized (ledCarved) {
-                                                ledCarved.put(evidence, offsets);
-                                            }
-                                        }
-                                        offsets.add(offset);
-                                        addOffsetFile(carvedItem, evidence);
-                                    }
+            } else {
+                try (InputStream is = evidence.getBufferedStream()) {
+                    futures.add(CompletableFuture.completedFuture(scan(is, 0, Long.MAX_VALUE)));
+                }
+            }
+            for (Future<ScanResult> future : futures) {
+                ScanResult result = future.get();
+                cnt512total += result.num512total;
+                cnt512hit += result.num512hit;
+                cntBytesHashed += result.bytesHashed;
+                for (int k = 0; k < result.numHits; k++) {
+                    long offset = result.hitOffsets[k];
+                    LedItem ledItem = hashDBDataSource.getLedItem(result.hitHashIds[k]);
+                    if (ledItem != null) {
+                        String name = "CarvedLed-" + offset;
+                        String ext = ledItem.getExt();
+                        if (ext != null) name += '.' + ext.toLowerCase();
+                        IItem carvedItem = createCarvedFile(evidence, offset, ledItem.getLength(), name, null);
+                        if (carvedItem != null) {
+                            carvedItem.setExtraAttribute("ledCarvedMD5", ledItem.getMD5());
+                            cntCarvedItems++;
+                            if (offsets == null) {
+                                offsets = new HashSet<Long>();
+                                synchronized (ledCarved) {
+                                    ledCarved.put(evidence, offsets);
                                 }
                             }
+                            offsets.add(offset);
+                            addOffsetFile(carvedItem, evidence);
                         }
                     }
                 }
-                offset += read512;
             }
         } catch (Exception e) {
             logger.warn(evidence.toString(), e);
         } finally {
-            IOUtil.closeQuietly(is);
+            for (Future<ScanResult> future : futures) {
+                future.cancel(true);
+            }
         }
         numCarvedItems.addAndGet(cntCarvedItems);
         num512hit.addAndGet(cnt512hit);
@@ -248,6 +258,99 @@ protected void process(IItem evidence) throws Exception {
         bytesHashed.addAndGet(cntBytesHashed);
     }
 
+    /**
+     * Blocos conhecidos encontrados em um intervalo do item.
+     */
+    private static class ScanResult {
+        long[] hitOffsets = new long[4];
+        int[] hitHashIds = new int[4];
+        int numHits;
+        long num512total;
+        long num512hit;
+        long bytesHashed;
+
+        void addHit(long offset, int hashId) {
+            if (numHits == hitOffsets.length) {
+                hitOffsets = Arrays.copyOf(hitOffsets, numHits * 2);
+                hitHashIds = Arrays.copyOf(hitHashIds, numHits * 2);
+            }
+            hitOffsets[numHits] = offset;
+            hitHashIds[numHits++] = hashId;
+        }
+    }
+
+    private static ScanResult scanRange(IItem evidence, long start, long end) throws Exception {
+        try (SeekableInputStream is = evidence.getSeekableInputStream()) {
+            is.seek(start);
+            return scan(is, start, end);
+        }
+    }
+
+    /**
+     * Procura arquivos conhecidos que iniciam em blocos de 512 bytes do intervalo
+     * [start, end) do item, a partir da posição atual do stream (start). Lê até
+     * 64K além do fim do intervalo, para que os blocos encontrados sejam
+     * verificados a partir do buffer, sem reler o stream.
+     */
+    private static ScanResult scan(InputStream is, long start, long end) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        byte[] buf = new byte[BUFFER_SIZE + BLOCK_64K];
+        byte[] hash = new byte[16];
+        ScanResult result = new ScanResult();
+        long bufOffset = start;
+        int len = 0;
+        boolean eof = false;
+        while (!Thread.currentThread().isInterrupted()) {
+            long remaining = end - bufOffset;
+            int max = remaining >= buf.length ? buf.length : (int) Math.min(buf.length, remaining + BLOCK_64K);
+            while (!eof && len < max) {
+                int read = is.read(buf, len, max - len);
+                if (read < 0) {
+                    eof = true;
+                } else {
+                    len += read;
+                }
+            }
+            int pos = 0;
+            while (pos + BLOCK_512 <= len && bufOffset + pos < end && (eof || pos + BLOCK_64K <= len)) {
+                result.num512total++;
+                boolean empty = true;
+                byte first = buf[pos];
+                for (int i = pos + 1; i < pos + BLOCK_512; i++) {
+                    if (buf[i] != first) {
+                        empty = false;
+                        break;
+                    }
+                }
+                if (!empty) {
+                    digest.update(buf, pos, BLOCK_512);
+                    digest.digest(hash, 0, hash.length);
+                    result.bytesHashed += BLOCK_512;
+                    if (ledHashDB.containsMD5_512(hash)) {
+                        result.num512hit++;
+                        if (pos + BLOCK_64K <= len) {
+                            digest.update(buf, pos, BLOCK_64K);
+                            digest.digest(hash, 0, hash.length);
+                            result.bytesHashed += BLOCK_64K;
+                            int hashId = ledHashDB.hashIdFromMD5_64K(hash);
+                            if (hashId >= 0) {
+                                result.addHit(bufOffset + pos, hashId);
+                            }
+                        }
+                    }
+                }
+                pos += BLOCK_512;
+            }
+            if (bufOffset + pos >= end || (eof && pos + BLOCK_512 > len)) {
+                break;
+            }
+            System.arraycopy(buf, pos, buf, 0, len - pos);
+            len -= pos;
+            bufOffset += pos;
+        }
+        return result;
+    }
+
     private static boolean isAcceptedType(MediaType mediaType) {
         return mediaType.getBaseType().equals(UNALLOCATED_MIMETYPE)
                 || mediaType.getBaseType().equals(MediaType.OCTET_STREAM)
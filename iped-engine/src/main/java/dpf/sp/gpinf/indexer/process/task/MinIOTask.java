@@ -9,9 +9,14 @@
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.tika.Tika;
 import org.slf4j.Logger;
@@ -21,13 +26,13 @@
 import dpf.sp.gpinf.indexer.config.ConfigurationManager;
 import dpf.sp.gpinf.indexer.config.MinIOConfig;
 import dpf.sp.gpinf.indexer.util.SeekableInputStreamFactory;
-import gpinf.dev.data.Item;
 import io.minio.BucketExistsArgs;
 import io.minio.ErrorCode;
+import io.minio.ListObjectsArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
-import io.minio.ObjectStat;
 import io.minio.PutObjectArgs;
+import io.minio.Result;
 import io.minio.StatObjectArgs;
 import io.minio.errors.ErrorResponseException;
 import io.minio.errors.InsufficientDataException;
@@ -60,12 +65,48 @@ public class MinIOTask extends AbstractTask {
     private static final String SECRET_KEY = "secretkey";
     private static final String BUCKET_KEY = "bucket";
 
+    private static final String PREVIEW_FOLDER = "preview/";
+
     private static String accessKey;
     private static String secretKey;
     private static String bucket = null;
 
     private static Tika tika;
 
+    private static final int MAX_KNOWN_OBJECTS = 1 << 18;
+
+    /**
+     * Objects known to be in the bucket, loaded by listing each prefix of the
+     * folder structure the first time it is used, plus objects uploaded since.
+     * The oldest ones are evicted when it is full, and then objects not found
+     * here are checked in the server.
+     */
+    private static Set<String> knownObjects = Collections
+            .synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<String, Boolean>() {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    if (size() > MAX_KNOWN_OBJECTS) {
+                        knownObjectsEvicted = true;
+                        return true;
+                    }
+                    return false;
+                }
+            }));
+    private static volatile boolean knownObjectsEvicted = false;
+
+    /**
+     * Listings of each prefix, completed exceptionally if the listing failed.
+     */
+    private static Map<String, CompletableFuture<Void>> listedPrefixes = new ConcurrentHashMap<>();
+
+    /**
+     * Objects being uploaded, completed with true if the upload succeeded.
+     */
+    private static Map<String, CompletableFuture<Boolean>> pendingUploads = new ConcurrentHashMap<>();
+
     private MinIOConfig minIOConfig;
     private MinioClient minioClient;
     private MinIOInputInputStreamFactory inputStreamFactory;
@@ -87,8 +128,8 @@ public void init(ConfigurationManager configurationManager) throws Exception {
         }
         loadCredentials(caseData);
 
-        minioClient = MinioClient.builder().endpoint(server).credentials(accessKey, secretKey).build();
-        inputStreamFactory = new MinIOInputInputStreamFactory(URI.create(server));
+        start(MinioClient.builder().endpoint(server).credentials(accessKey, secretKey).build(), URI.create(server),
+                bucket);
 
         // Check if the bucket already exists.
         boolean isExist = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucket).build());
@@ -98,6 +139,15 @@ public void init(ConfigurationManager configurationManager) throws Exception {
 
     }
 
+    /**
+     * Sets the client and the bucket used by this instance.
+     */
+    void start(MinioClient minioClient, URI server, String bucket) {
+        this.minioClient = minioClient;
+        this.inputStreamFactory = new MinIOInputInputStreamFactory(server);
+        MinIOTask.bucket = bucket;
+    }
+
     private static void loadCredentials(ICaseData caseData) {
         if (accessKey != null && secretKey != null) {
             return;
@@ -147,20 +197,90 @@ public void finish() throws Exception {
 
     }
 
-    private boolean checkIfExists(String hash) throws Exception {
-        boolean exists = false;
+    /**
+     * Checks if the object exists or reserves its path, so other workers do not
+     * upload the same content. If false is returned, the caller must upload the
+     * object and then call {@link #finishUpload(String, boolean)}. If the object
+     * is being uploaded by another worker, waits for that upload.
+     */
+    private boolean checkIfExists(String path) throws Exception {
+        CompletableFuture<Boolean> upload = new CompletableFuture<>();
+        CompletableFuture<Boolean> pending = pendingUploads.putIfAbsent(path, upload);
+        if (pending != null) {
+            if (!pending.get()) {
+                throw new IOException("Upload of object failed in another worker: " + path);
+            }
+            return true;
+        }
+        boolean exists;
         try {
-            ObjectStat stat = minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(hash).build());
-            exists = true;
+            exists = isInBucket(path);
+        } catch (Exception e) {
+            finishUpload(path, false);
+            throw e;
+        }
+        if (exists) {
+            finishUpload(path, true);
+        }
+        return exists;
+    }
+
+    private static void finishUpload(String path, boolean success) {
+        if (success) {
+            knownObjects.add(path);
+        }
+        pendingUploads.remove(path).complete(success);
+    }
+
+    /**
+     * Existing objects are found by listing the object folder once, instead of a
+     * request per item.
+     */
+    private boolean isInBucket(String path) throws Exception {
+        if (knownObjects.contains(path)) {
+            return true;
+        }
+        String prefix = path.startsWith(PREVIEW_FOLDER) ? PREVIEW_FOLDER : path.substring(0, 4);
+        CompletableFuture<Void> listing = new CompletableFuture<>();
+        CompletableFuture<Void> other = listedPrefixes.putIfAbsent(prefix, listing);
+        if (other == null) {
+            try {
+                for (Result<io.minio.messages.Item> result : minioClient.listObjects(
+                        ListObjectsArgs.builder().bucket(bucket).prefix(prefix).recursive(true).build())) {
+                    knownObjects.add(result.get().objectName());
+                }
+                listing.complete(null);
+
+            } catch (Exception e) {
+                // workers waiting this listing fail, next ones list the prefix again
+                listedPrefixes.remove(prefix);
+                listing.completeExceptionally(e);
+                throw e;
+            }
+        } else {
+            try {
+                other.get();
+            } catch (ExecutionException e) {
+                throw new IOException("Error listing objects with prefix " + prefix, e.getCause());
+            }
+        }
+        if (knownObjects.contains(path)) {
+            return true;
+        }
+        if (!knownObjectsEvicted) {
+            return false;
+        }
+        try {
+            minioClient.statObject(StatObjectArgs.builder().bucket(bucket).object(path).build());
+            return true;
 
         } catch (ErrorResponseException e) {
             ErrorCode code = e.errorResponse().errorCode();
             if (code != ErrorCode.NO_SUCH_OBJECT && code != ErrorCode.NO_SUCH_KEY) {
                 throw e;
             }
+            return false;
         }
-
-        return exists;
     }
 
     private String insertItem(String hash, InputStream is, long length, String mediatype, boolean preview)
@@ -168,7 +288,7 @@ private String insertItem(String hash, InputStream is, long length, String media
         String bucketPath = buildPath(hash);
         // if preview saves in a preview folder
         if (preview) {
-            bucketPath = "preview/" + hash;
+            bucketPath = PREVIEW_FOLDER + hash;
         }
         String fullPath = bucket + "/" + bucketPath;
 
@@ -176,25 +296,38 @@ private String insertItem(String hash, InputStream is, long length, String media
             return fullPath;
         }
 
-        // create directory structure
-        if (FOLDER_LEVELS > 0) {
-            String folder = bucketPath.substring(0, FOLDER_LEVELS * 2);
-            minioClient.putObject(PutObjectArgs.builder().bucket(bucket).object(folder)
-                    .stream(new ByteArrayInputStream(new byte[0]), 0, -1).build());
-        }
-
         try {
+            createFolder(bucketPath);
             minioClient.putObject(PutObjectArgs.builder().bucket(bucket).object(bucketPath).stream(is, length, -1)
                     .contentType(mediatype).build());
+            finishUpload(bucketPath, true);
 
             return fullPath;
 
         } catch (Exception e) {
+            finishUpload(bucketPath, false);
             throw new Exception("Error when uploading object ", e);
         }
 
     }
 
+    private void createFolder(String bucketPath) throws Exception {
+        // create directory structure
+        if (FOLDER_LEVELS > 0) {
+            String folder = bucketPath.substring(0, FOLDER_LEVELS * 2);
+            if (!checkIfExists(folder)) {
+                try {
+                    minioClient.putObject(PutObjectArgs.builder().bucket(bucket).object(folder)
+                            .stream(new ByteArrayInputStream(new byte[0]), 0, -1).build());
+                    finishUpload(folder, true);
+                } catch (Exception e) {
+                    finishUpload(folder, false);
+                    throw e;
+                }
+            }
+        }
+    }
+
     private static String getMimeType(String name) {
         if (tika == null) {
             synchronized (MinIOTask.class) {
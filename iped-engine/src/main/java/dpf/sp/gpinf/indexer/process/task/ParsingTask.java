@@ -232,7 +232,7 @@ private ParseContext getTikaContext(File output, IPEDSource ipedsource) {
         if (ipedsource != null) {
             context.set(IItemSearcher.class, new ItemSearcher(ipedsource));
         } else {
-            context.set(IItemSearcher.class, (IItemSearcher) caseData.getCaseObject(IItemSearcher.class.getName()));
+            context.set(IItemSearcher.class, caseData.getItemSearcher(evidence));
         }
 
         extractEmbedded = expandConfig.isToBeExpanded(itemInfo.getCategories()) || isToAlwaysExpand(evidence);
@@ -646,6 +646,14 @@ public void parseEmbedded(InputStream inputStream, ContentHandler handler, Metad
             String embeddedId = metadata.get(ExtraProperties.ITEM_VIRTUAL_ID);
             metadata.remove(ExtraProperties.ITEM_VIRTUAL_ID);
 
+            // other workers may take the subitem as soon as it is queued, so its info
+            // is read before, with the id it will have after being queued
+            ParentInfo parentInfo = null;
+            if (embeddedId != null) {
+                caseData.calctrackIDAndUpdateID(subItem);
+                parentInfo = new ParentInfo(subItem);
+            }
+
             // pausa contagem de timeout do pai antes de extrair e processar subitem
             if (reader.setTimeoutPaused(true)) {
                 try {
@@ -675,9 +683,8 @@ public void parseEmbedded(InputStream inputStream, ContentHandler handler, Metad
                     // despausa contador de timeout do pai somente após processar subitem
                     reader.setTimeoutPaused(false);
 
-                    // must do this after adding subitem to queue
-                    if (embeddedId != null) {
-                        idToItemMap.put(embeddedId, new ParentInfo(subItem));
+                    if (parentInfo != null) {
+                        idToItemMap.put(embeddedId, parentInfo);
                     }
                 }
             }
@@ -826,6 +833,15 @@ public void finish() throws Exception {
         if (totalText != null) {
             LOGGER.info("Total extracted text size: " + totalText.get()); //$NON-NLS-1$
             WhatsAppParser.clearStaticResources();
+            ForkParser2 forkParser = ForkParser2.getInstance();
+            if (forkParser != null) {
+                LOGGER.info("External parsing: {} items parsed in {}s, waited {}s for a free process", //$NON-NLS-1$
+                        forkParser.getParses(), forkParser.getParseTime() / 1000,
+                        forkParser.getAcquireWaitTime() / 1000);
+                LOGGER.info("External parsing processes: {} started, {} restarted, {} recycled", //$NON-NLS-1$
+                        forkParser.getClientsStarted(), forkParser.getClientsRestarted(),
+                        forkParser.getClientsRecycled());
+            }
         }
         totalText = null;
     }
@@ -0,0 +1,334 @@
+package dpf.sp.gpinf.indexer.process.task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import dpf.sp.gpinf.indexer.util.IOUtil;
+
+/**
+ * Agrupa registros do relatório por marcador ou categoria, ordenados pelo
+ * caminho. Os registros são mantidos em memória até um limite, então cada grupo
+ * é ordenado e gravado em um arquivo temporário (run). Na leitura de um grupo,
+ * os runs são intercalados (k-way merge) com os registros ainda em memória, de
+ * forma que o uso de memória não depende do tamanho do relatório.
+ */
+class ReportEntrySorter {
+
+    private static final int MAX_ENTRIES_IN_MEMORY = 100000;
+
+    private final Comparator<String> keyComparator;
+
+    private final Comparator<ReportEntry> comparator;
+
+    private SortedMap<String, List<ReportEntry>> buffers;
+
+    private final SortedMap<String, Integer> counts;
+
+    private final SortedMap<String, List<Run>> runs;
+
+    private int buffered = 0;
+
+    private static class Run {
+        File file;
+        int size;
+    }
+
+    ReportEntrySorter(Comparator<String> keyComparator, Comparator<String> pathComparator) {
+        this.keyComparator = keyComparator;
+        this.comparator = new Comparator<ReportEntry>() {
+            public int compare(ReportEntry a, ReportEntry b) {
+                return pathComparator.compare(a.path, b.path);
+            }
+        };
+        this.buffers = new TreeMap<>(keyComparator);
+        this.counts = new TreeMap<>(keyComparator);
+        this.runs = new TreeMap<>(keyComparator);
+    }
+
+    void add(String key, ReportEntry entry) throws IOException {
+        SortedMap<String, List<ReportEntry>> toSpill = null;
+        synchronized (this) {
+            List<ReportEntry> regs = buffers.get(key);
+            if (regs == null) {
+                buffers.put(key, regs = new ArrayList<ReportEntry>());
+            }
+            regs.add(entry);
+            counts.merge(key, 1, Integer::sum);
+            if (++buffered >= MAX_ENTRIES_IN_MEMORY) {
+                toSpill = buffers;
+                buffers = new TreeMap<>(keyComparator);
+                buffered = 0;
+            }
+        }
+        if (toSpill != null) {
+            spill(toSpill);
+        }
+    }
+
+    /**
+     * Ordena e grava os registros de cada grupo em um novo run, fora do lock para
+     * não bloquear as outras threads de processamento. Se a gravação falhar, os
+     * registros ainda não gravados voltam para a memória, mantendo-se consistentes
+     * com as contagens, e a exceção é propagada.
+     */
+    private void spill(SortedMap<String, List<ReportEntry>> groups) throws IOException {
+        for (Map.Entry<String, List<ReportEntry>> group : groups.entrySet()) {
+            List<ReportEntry> regs = group.getValue();
+            Collections.sort(regs, comparator);
+            Run run = new Run();
+            run.size = regs.size();
+            try {
+                run.file = File.createTempFile("report", ".run"); //$NON-NLS-1$ //$NON-NLS-2$
+                run.file.deleteOnExit();
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(new FileOutputStream(run.file)))) {
+                    for (ReportEntry reg : regs) {
+                        write(out, reg);
+                    }
+                }
+            } catch (IOException e) {
+                if (run.file != null) {
+                    run.file.delete();
+                }
+                restore(groups.tailMap(group.getKey()));
+                throw e;
+            }
+            synchronized (this) {
+                List<Run> l = runs.get(group.getKey());
+                if (l == null) {
+                    runs.put(group.getKey(), l = new ArrayList<Run>());
+                }
+                l.add(run);
+            }
+        }
+    }
+
+    private synchronized void restore(SortedMap<String, List<ReportEntry>> groups) {
+        for (Map.Entry<String, List<ReportEntry>> group : groups.entrySet()) {
+            List<ReportEntry> regs = buffers.get(group.getKey());
+            if (regs == null) {
+                buffers.put(group.getKey(), regs = new ArrayList<ReportEntry>());
+            }
+            regs.addAll(group.getValue());
+            buffered += group.getValue().size();
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * @return grupos em ordem alfabética
+     */
+    synchronized Set<String> getKeys() {
+        return counts.keySet();
+    }
+
+    synchronized int size(String key) {
+        Integer count = counts.get(key);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Retorna os registros do grupo ordenados pelo caminho. Deve ser chamado após o
+     * término da inclusão de registros.
+     */
+    synchronized Iterator<ReportEntry> iterator(String key) throws IOException {
+        List<Iterator<ReportEntry>> sources = new ArrayList<>();
+        List<ReportEntry> regs = buffers.get(key);
+        if (regs != null) {
+            Collections.sort(regs, comparator);
+            sources.add(regs.iterator());
+        }
+        List<Run> l = runs.get(key);
+        if (l != null) {
+            for (Run run : l) {
+                sources.add(new RunIterator(run));
+            }
+        }
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        return new MergeIterator(sources);
+    }
+
+    synchronized void clear() {
+        for (List<Run> l : runs.values()) {
+            for (Run run : l) {
+                run.file.delete();
+            }
+        }
+        runs.clear();
+        buffers.clear();
+        counts.clear();
+        buffered = 0;
+    }
+
+    private class MergeIterator implements Iterator<ReportEntry> {
+
+        private class Head {
+            ReportEntry entry;
+            Iterator<ReportEntry> source;
+        }
+
+        private final PriorityQueue<Head> queue = new PriorityQueue<>(new Comparator<Head>() {
+            public int compare(Head a, Head b) {
+                return comparator.compare(a.entry, b.entry);
+            }
+        });
+
+        private MergeIterator(List<Iterator<ReportEntry>> sources) {
+            for (Iterator<ReportEntry> source : sources) {
+                if (source.hasNext()) {
+                    Head head = new Head();
+                    head.source = source;
+                    head.entry = source.next();
+                    queue.add(head);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public ReportEntry next() {
+            Head head = queue.poll();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            ReportEntry entry = head.entry;
+            if (head.source.hasNext()) {
+                head.entry = head.source.next();
+                queue.add(head);
+            }
+            return entry;
+        }
+    }
+
+    private static class RunIterator implements Iterator<ReportEntry> {
+
+        private final Run run;
+        private DataInputStream in;
+        private int read = 0;
+
+        private RunIterator(Run run) throws IOException {
+            this.run = run;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run.file)));
+        }
+
+        @Override
+        public boolean hasNext() {
+            return read < run.size;
+        }
+
+        @Override
+        public ReportEntry next() {
+            if (read >= run.size) {
+                throw new NoSuchElementException();
+            }
+            try {
+                ReportEntry reg = ReportEntrySorter.read(in);
+                if (++read == run.size) {
+                    IOUtil.closeQuietly(in);
+                    run.file.delete();
+                }
+                return reg;
+            } catch (IOException e) {
+                IOUtil.closeQuietly(in);
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static void write(DataOutputStream out, ReportEntry reg) throws IOException {
+        writeString(out, reg.name);
+        writeString(out, reg.export);
+        writeString(out, reg.ext);
+        writeString(out, reg.category);
+        writeString(out, reg.hash);
+        writeString(out, reg.path);
+        out.writeLong(reg.length == null ? -1 : reg.length);
+        out.writeByte((reg.deleted ? 1 : 0) | (reg.carved ? 2 : 0) | (reg.isImage ? 4 : 0) | (reg.isVideo ? 8 : 0)
+                | (reg.length == null ? 16 : 0));
+        writeDate(out, reg.accessed);
+        writeDate(out, reg.modified);
+        writeDate(out, reg.created);
+    }
+
+    private static ReportEntry read(DataInputStream in) throws IOException {
+        ReportEntry reg = new ReportEntry();
+        reg.name = readString(in);
+        reg.export = readString(in);
+        reg.ext = readString(in);
+        reg.category = readString(in);
+        reg.hash = readString(in);
+        reg.path = readString(in);
+        long length = in.readLong();
+        int flags = in.readByte();
+        reg.length = (flags & 16) != 0 ? null : length;
+        reg.deleted = (flags & 1) != 0;
+        reg.carved = (flags & 2) != 0;
+        reg.isImage = (flags & 4) != 0;
+        reg.isVideo = (flags & 8) != 0;
+        reg.accessed = readDate(in);
+        reg.modified = readDate(in);
+        reg.created = readDate(in);
+        return reg;
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int len = in.readInt();
+        if (len == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, Date date) throws IOException {
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.getTime());
+        }
+    }
+
+    private static Date readDate(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new Date(in.readLong()) : null;
+    }
+
+}
@@ -1,6 +1,7 @@
 package dpf.sp.gpinf.indexer.process.task;
 
 import java.io.File;
+import java.io.Serializable;
 import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -19,6 +20,27 @@ public abstract class ThumbTask extends AbstractTask {
     private static final String SELECT_THUMB = "SELECT thumb FROM thumbs WHERE id=?;"; //$NON-NLS-1$
     private static final String INSERT_THUMB = "INSERT INTO thumbs(id, thumb) VALUES(?,?) ON CONFLICT(id) DO UPDATE SET thumb=? WHERE thumb IS NULL;"; //$NON-NLS-1$
 
+    private String artifactFingerprint;
+
+    /**
+     * Subclasses returning their configuration here have their thumbs reused from
+     * and saved to the {@link ArtifactStore}, if it is enabled.
+     */
+    protected Serializable getArtifactConfig() {
+        return null;
+    }
+
+    private String getArtifactFingerprint() {
+        if (artifactFingerprint == null) {
+            artifactFingerprint = ArtifactStore.fingerprint(getArtifactConfig());
+        }
+        return artifactFingerprint;
+    }
+
+    private ArtifactStore getArtifactStore() {
+        return getArtifactConfig() != null ? ArtifactStore.get() : null;
+    }
+
     protected File getThumbFile(IItem evidence) throws Exception {
         File thumbFile = null;
 
@@ -70,15 +92,35 @@ protected boolean hasThumb(IItem evidence, File thumbFile) throws Exception {
                 return true;
             }
         }
+        ArtifactStore store = getArtifactStore();
+        if (store != null) {
+            byte[] thumb = store.get(getClass().getSimpleName(), getArtifactFingerprint(), evidence.getHash());
+            if (thumb != null) {
+                evidence.setThumb(thumb);
+                updateHasThumb(evidence);
+                saveThumb(evidence, thumbFile, false);
+                return true;
+            }
+        }
         return false;
     }
 
     protected void saveThumb(IItem evidence, File thumbFile) throws Throwable {
+        saveThumb(evidence, thumbFile, true);
+    }
+
+    private void saveThumb(IItem evidence, File thumbFile, boolean storeArtifact) throws Exception {
         File tmp = null;
         try {
             if (evidence.getThumb() == null) {
                 evidence.setThumb(new byte[0]); // zero size thumb means thumb error
             }
+            ArtifactStore store = getArtifactStore();
+            // thumb errors are not stored, they could be caused by timeouts
+            if (storeArtifact && store != null && evidence.getThumb().length > 0) {
+                store.put(getClass().getSimpleName(), getArtifactFingerprint(), evidence.getHash(),
+                        evidence.getThumb());
+            }
             if (thumbFile == null) {
                 Connection con = ExportFileTask.getSQLiteStorageCon(output, evidence.getHashValue().getBytes());
                 try (PreparedStatement ps = con.prepareStatement(INSERT_THUMB)) {
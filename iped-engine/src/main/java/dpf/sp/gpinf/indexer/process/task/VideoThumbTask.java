@@ -115,6 +115,12 @@ public class VideoThumbTask extends ThumbTask {
     private static final AtomicLong totalAnimatedImagesFailed = new AtomicLong();
     private static final AtomicLong totalAnimatedImagesTime = new AtomicLong();
     
+    // Time spent in each stage of video thumbs creation and MPlayer processes created
+    private static final AtomicLong totalSpawnTime = new AtomicLong();
+    private static final AtomicLong totalDecodeTime = new AtomicLong();
+    private static final AtomicLong totalComposeTime = new AtomicLong();
+    private static final AtomicLong totalProcesses = new AtomicLong();
+
     private static final AtomicLong totalTimeGallery = new AtomicLong();
     private static final AtomicLong totalGallery = new AtomicLong();
 
@@ -277,6 +283,9 @@ public boolean isEnabled() {
      * no Log.
      */
     public void finish() throws Exception {
+        if (videoThumbsMaker != null) {
+            videoThumbsMaker.close();
+        }
         synchronized (finished) {
             if (taskEnabled && !finished.get()) {
                 processedVideos.clear();
@@ -290,6 +299,15 @@ public void finish() throws Exception {
                     logger.info("Average video processing time (milliseconds/video): " //$NON-NLS-1$
                             + (totalVideosTime.longValue() / total));
 
+                total += totalAnimatedImagesProcessed.longValue() + totalAnimatedImagesFailed.longValue();
+                if (total > 0) {
+                    logger.info("Average time by stage (milliseconds/item): spawn={} decode={} compose={}", //$NON-NLS-1$
+                            totalSpawnTime.longValue() / total, totalDecodeTime.longValue() / total,
+                            totalComposeTime.longValue() / total);
+                    logger.info("Average MPlayer processes created per item: {}", //$NON-NLS-1$
+                            String.format("%.2f", totalProcesses.doubleValue() / total)); //$NON-NLS-1$
+                }
+
                 // Animated images statistics
                 logger.info("Total animated images processed: " + totalAnimatedImagesProcessed); //$NON-NLS-1$
                 logger.info(
@@ -382,6 +400,10 @@ protected void process(IItem evidence) throws Exception {
                 long t = System.currentTimeMillis();
                 r = videoThumbsMaker.createThumbs(evidence.getTempFile(), tmpFolder, configs, numFrames);
                 t = System.currentTimeMillis() - t;
+                totalSpawnTime.addAndGet(r.getSpawnTime());
+                totalDecodeTime.addAndGet(r.getDecodeTime());
+                totalComposeTime.addAndGet(r.getComposeTime());
+                totalProcesses.addAndGet(r.getProcesses());
                 if (r != null && isAnimated) {
                     //Clear video duration for animated images
                     r.setVideoDuration(-1);
@@ -463,6 +485,13 @@ protected void process(IItem evidence) throws Exception {
         }
     }
 
+    @Override
+    public void interrupted() {
+        if (videoThumbsMaker != null) {
+            videoThumbsMaker.close();
+        }
+    }
+
     private void saveMetadata(VideoProcessResult r, Metadata metadata) {
         long bitrate = r.getBitRate();
         if (bitrate != -1)
@@ -7,6 +7,11 @@ public boolean validate(String regexName, String hit) {
         return validate(hit);
     }
 
+    @Override
+    public boolean prefilter(String regexName, char[] buf, int off, int len) {
+        return prefilter(buf, off, len);
+    }
+
     @Override
     public String format(String regexName, String hit) {
         return format(hit);
@@ -18,4 +23,8 @@ public String format(String hit) {
 
     protected abstract boolean validate(String hit);
 
+    protected boolean prefilter(char[] buf, int off, int len) {
+        return true;
+    }
+
 }
@@ -273,6 +273,39 @@ protected void process(IItem item) throws Exception {
         processRegex(evidence, getExtraAttributeReader(evidence));
     }
 
+    /**
+     * Hits of one regex found in the current text chunk, validated together
+     * after the chunk is scanned.
+     */
+    private static class HitBatch {
+
+        List<String> hits = new ArrayList<>();
+        long[] offsets = new long[16];
+
+        void add(String hit, long offset) {
+            if (hits.size() == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            offsets[hits.size()] = offset;
+            hits.add(hit);
+        }
+    }
+
+    /**
+     * Same as {@link RunAutomaton#run(String)}, but runs directly on the char
+     * buffer, without creating a String for each candidate hit.
+     */
+    private static boolean matches(RunAutomaton pattern, char[] buf, int start, int end) {
+        int state = pattern.getInitialState();
+        for (int i = start; i < end; i++) {
+            state = pattern.step(state, buf[i]);
+            if (state == -1) {
+                return false;
+            }
+        }
+        return pattern.isAccept(state);
+    }
+
     private Reader getExtraAttributeReader(IItem item) {
         StringBuilder sb = new StringBuilder();
         for (String key : item.getExtraAttributeMap().keySet().toArray(new String[0])) {
@@ -297,37 +330,51 @@ private void processRegex(IItem evidence, Reader reader) throws IOException {
 
             String text = new String(cbuf, 0, off);
 
-            List<Map<String, RegexHits>> hitList = new ArrayList<Map<String, RegexHits>>();
+            List<HitBatch> batches = new ArrayList<HitBatch>();
             for (int i = 0; i < regexList.size(); i++) {
-                hitList.add(new HashMap<>());
+                batches.add(new HitBatch());
             }
 
             AutomatonMatcher fullMatcher = regexFull.pattern.newMatcher(text);
             while (fullMatcher.find()) {
                 int start = fullMatcher.start();
                 int end = fullMatcher.end();
-                String hit = text.substring(start, end);
                 int i = 0;
                 for (Regex regex : regexList) {
-                    if (regex.pattern.run(hit)) {
-                        hit = hit.substring(regex.prefix, hit.length() - regex.sufix);
-                        if (regex.ignoreCases)
-                            hit = hit.toLowerCase();
-                        if (regexValidator.validate(regex, hit)) {
-                            if (regexConfig.isFormatRegexMatches()) {
-                                hit = regexValidator.format(regex, hit);
-                            }
-                            Map<String, RegexHits> hitMap = hitList.get(i);
+                    if (matches(regex.pattern, cbuf, start, end)) {
+                        int hitStart = start + regex.prefix;
+                        int hitLen = end - regex.sufix - hitStart;
+                        if (regexValidator.prefilter(regex, cbuf, hitStart, hitLen)) {
+                            String hit = new String(cbuf, hitStart, hitLen);
+                            if (regex.ignoreCases)
+                                hit = hit.toLowerCase();
+                            batches.get(i).add(hit, totalOffset + hitStart);
+                        }
+                    }
+                    i++;
+                }
+            }
+
+            List<Map<String, RegexHits>> hitList = new ArrayList<Map<String, RegexHits>>();
+            for (int i = 0; i < regexList.size(); i++) {
+                Map<String, RegexHits> hitMap = new HashMap<>();
+                HitBatch batch = batches.get(i);
+                if (!batch.hits.isEmpty()) {
+                    String[] validHits = regexValidator.validate(regexList.get(i), batch.hits,
+                            regexConfig.isFormatRegexMatches());
+                    for (int j = 0; j < validHits.length; j++) {
+                        String hit = validHits[j];
+                        if (hit != null) {
                             RegexHits hits = hitMap.get(hit);
                             if (hits == null) {
                                 hits = new RegexHits(hit);
                                 hitMap.put(hit, hits);
                             }
-                            hits.addOffset(totalOffset + start + regex.prefix);
+                            hits.addOffset(batch.offsets[j]);
                         }
                     }
-                    i++;
                 }
+                hitList.add(hitMap);
             }
             for (int i = 0; i < regexList.size(); i++) {
                 if (hitList.get(i).size() > 0) {
@@ -7,6 +7,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.stream.IntStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +18,11 @@ public class RegexValidator {
 
     private Logger LOGGER = LoggerFactory.getLogger(RegexValidator.class);
 
+    /**
+     * Batches with at least this number of hits are validated in parallel.
+     */
+    private static final int MIN_PARALLEL_BATCH = 1024;
+
     private Map<String, RegexValidatorService> services = new HashMap<>();
 
     public RegexValidator() {
@@ -67,6 +73,42 @@ public boolean validate(String name, String hit) {
         }
     }
 
+    public boolean prefilter(Regex regex, char[] buf, int off, int len) {
+        RegexValidatorService service = services.get(regex.name);
+        if (service != null) {
+            return service.prefilter(regex.name, buf, off, len);
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Validates and optionally formats a batch of hits of the same regex.
+     * 
+     * @return the (formatted) hits, with null in place of the invalid ones
+     */
+    public String[] validate(Regex regex, List<String> hits, boolean format) {
+        String name = regex.name;
+        String[] result = hits.toArray(new String[hits.size()]);
+        RegexValidatorService service = services.get(name);
+        if (service == null) {
+            return result;
+        }
+        IntStream range = IntStream.range(0, result.length);
+        if (result.length >= MIN_PARALLEL_BATCH) {
+            range = range.parallel();
+        }
+        range.forEach(i -> {
+            String hit = result[i];
+            if (!service.validate(name, hit)) {
+                result[i] = null;
+            } else if (format) {
+                result[i] = service.format(name, hit);
+            }
+        });
+        return result;
+    }
+
     public String format(Regex regex, String hit) {
         String name = regex.name;
         return format(name, hit);
@@ -9,6 +9,14 @@ public interface RegexValidatorService {
 
     boolean validate(String regexName, String hit);
 
+    /**
+     * Cheap check run on the text buffer before the hit String is created. Must
+     * not return false for hits accepted by {@link #validate(String, String)}.
+     */
+    default boolean prefilter(String regexName, char[] buf, int off, int len) {
+        return true;
+    }
+
     String format(String regexName, String hit);
 
     List<String> getRegexNames();
@@ -0,0 +1,166 @@
+package dpf.sp.gpinf.indexer.process.task.transcript;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import iped3.IItem;
+
+/**
+ * Base class of implementations able to transcribe raw PCM data (16khz, 16 bits,
+ * little endian, mono) read directly from the decoder output, while it is
+ * written by the decoder. If a stream command is configured, it is used instead
+ * of converting the audio to a temporary wav file.
+ */
+public abstract class AbstractStreamingTranscriptTask extends AbstractTranscriptTask {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(AbstractStreamingTranscriptTask.class);
+
+    private static final AtomicInteger streamSuccess = new AtomicInteger();
+    private static final AtomicInteger streamFail = new AtomicInteger();
+    private static final AtomicInteger streamTimeouts = new AtomicInteger();
+
+    private static ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "TranscriptStreamWatchdog"); //$NON-NLS-1$
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Transcribes raw PCM data (16khz, 16 bits, little endian, mono).
+     */
+    protected abstract TextAndScore transcribePcm(InputStream pcm) throws Exception;
+
+    @Override
+    protected boolean transcribeWithoutWav(IItem evidence) throws Exception {
+        String cmd = transcriptConfig.getStreamCmd();
+        if (cmd == null || (cmd.startsWith("ffmpeg") && !isFfmpegOk())) { //$NON-NLS-1$
+            return false;
+        }
+        transcribeStream(evidence);
+        return true;
+    }
+
+    /**
+     * Decodes the audio with the configured stream command and transcribes the PCM
+     * data while it is written by the decoder. The decoder is killed if it does
+     * not finish within the timeout used for wav files, computed from the audio
+     * duration decoded so far.
+     */
+    private void transcribeStream(IItem evidence) throws Exception {
+        ProcessBuilder pb = new ProcessBuilder();
+        pb.command(getCommand(transcriptConfig.getStreamCmd(), evidence.getTempFile(), null));
+        pb.redirectError(ProcessBuilder.Redirect.DISCARD);
+        long t = System.currentTimeMillis();
+        Process p = pb.start();
+        TimeoutInputStream pcm = new TimeoutInputStream(new BufferedInputStream(p.getInputStream()), t);
+        ScheduledFuture<?> check = watchdog.scheduleWithFixedDelay(() -> {
+            if (p.isAlive() && pcm.isPastDeadline()) {
+                pcm.timedOut = true;
+                p.destroyForcibly();
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+        TextAndScore result;
+        try (InputStream is = pcm) {
+            this.evidence = evidence;
+            result = transcribePcm(is);
+        } finally {
+            check.cancel(false);
+            if (p.isAlive() && !p.waitFor(1, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+            }
+        }
+        int exit = p.waitFor();
+        transcriptionTime.addAndGet(System.currentTimeMillis() - t);
+        if (pcm.timedOut) {
+            streamTimeouts.incrementAndGet();
+            LOGGER.warn("Timeout decoding audio {} ({} bytes)", evidence.getPath(), evidence.getLength()); //$NON-NLS-1$
+            saveResult(evidence, null);
+            return;
+        }
+        if (exit != 0 && result == null) {
+            streamFail.incrementAndGet();
+            LOGGER.warn("Error decoding audio {} (exit code {})", evidence.getPath(), exit); //$NON-NLS-1$
+            return;
+        }
+        streamSuccess.incrementAndGet();
+        saveResult(evidence, result);
+    }
+
+    @Override
+    public void finish() throws Exception {
+        super.finish();
+
+        long totStreams = streamSuccess.longValue() + streamFail.longValue() + streamTimeouts.longValue();
+        if (totStreams != 0) {
+            LOGGER.info("Total audios decoded by streaming: " + totStreams); //$NON-NLS-1$
+            LOGGER.info("Failed audio decoding by streaming: " + streamFail.intValue()); //$NON-NLS-1$
+            LOGGER.info("Timeouts decoding audio by streaming: " + streamTimeouts.intValue()); //$NON-NLS-1$
+            streamSuccess.set(0);
+            streamFail.set(0);
+            streamTimeouts.set(0);
+        }
+    }
+
+    /**
+     * PCM stream that fails once its deadline passes. The deadline grows with the
+     * audio duration read, like the timeout of wav files grows with their size.
+     */
+    private class TimeoutInputStream extends FilterInputStream {
+
+        private final long start;
+        private volatile long bytesRead = 0;
+        private volatile boolean timedOut = false;
+
+        private TimeoutInputStream(InputStream in, long start) {
+            super(in);
+            this.start = start;
+        }
+
+        private boolean isPastDeadline() {
+            long timeoutSecs = MIN_TIMEOUT + transcriptConfig.getTimeoutPerSec() * bytesRead / WAV_BYTES_PER_SEC;
+            return System.currentTimeMillis() - start > timeoutSecs * 1000;
+        }
+
+        private int count(int read) throws IOException {
+            if (timedOut || isPastDeadline()) {
+                timedOut = true;
+                throw new InterruptedIOException("Timeout decoding audio"); //$NON-NLS-1$
+            }
+            if (read > 0) {
+                bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            count(b == -1 ? -1 : 1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return count(super.read(b, off, len));
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count((int) skipped);
+            return skipped;
+        }
+    }
+
+}
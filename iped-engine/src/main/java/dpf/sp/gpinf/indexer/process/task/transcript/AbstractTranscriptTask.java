@@ -59,7 +59,7 @@ public abstract class AbstractTranscriptTask extends AbstractTask {
     
     // Variables to store some statistics
     private static final AtomicLong wavTime = new AtomicLong();
-    private static final AtomicLong transcriptionTime = new AtomicLong();
+    protected static final AtomicLong transcriptionTime = new AtomicLong();
     private static final AtomicInteger wavSuccess = new AtomicInteger();
     private static final AtomicInteger wavFail = new AtomicInteger();
     private static final AtomicInteger transcriptionSuccess = new AtomicInteger();
@@ -193,12 +193,8 @@ public void init(ConfigurationManager configurationManager) throws Exception {
 
     }
 
-    protected File getWavFile(IItem evidence) throws IOException, InterruptedException {
-        File input = evidence.getTempFile();
-        File tmpFile = File.createTempFile("iped", ".wav");
-        Files.delete(tmpFile.toPath());
-        ProcessBuilder pb = new ProcessBuilder();
-        String[] cmd = transcriptConfig.getConvertCmd().split(" ");
+    protected String[] getCommand(String cmdLine, File input, String output) {
+        String[] cmd = cmdLine.split(" ");
         if (SystemUtils.IS_OS_WINDOWS) {
             LocalConfig localConfig = ConfigurationManager.get().findObject(LocalConfig.class);
             String mplayerWin = localConfig.getMplayerWinPath();
@@ -206,9 +202,19 @@ protected File getWavFile(IItem evidence) throws IOException, InterruptedExcepti
         }
         for (int i = 0; i < cmd.length; i++) {
             cmd[i] = cmd[i].replace("$INPUT", input.getAbsolutePath());
-            cmd[i] = cmd[i].replace("$OUTPUT", tmpFile.getName());
+            if (output != null) {
+                cmd[i] = cmd[i].replace("$OUTPUT", output);
+            }
         }
-        pb.command(cmd);
+        return cmd;
+    }
+
+    protected File getWavFile(IItem evidence) throws IOException, InterruptedException {
+        File input = evidence.getTempFile();
+        File tmpFile = File.createTempFile("iped", ".wav");
+        Files.delete(tmpFile.toPath());
+        ProcessBuilder pb = new ProcessBuilder();
+        pb.command(getCommand(transcriptConfig.getConvertCmd(), input, tmpFile.getName()));
         if (tmpFile.getParentFile() != null) {
             pb.directory(tmpFile.getParentFile());
         }
@@ -283,6 +289,10 @@ protected void process(IItem evidence) throws Exception {
             return;
         }
 
+        if (transcribeWithoutWav(evidence)) {
+            return;
+        }
+
         long t = System.currentTimeMillis();
         File tempWav = getWavFile(evidence);
         wavTime.addAndGet(System.currentTimeMillis() - t);
@@ -297,17 +307,7 @@ protected void process(IItem evidence) throws Exception {
             t = System.currentTimeMillis();
             TextAndScore result = transcribeWav(tempWav);
             transcriptionTime.addAndGet(System.currentTimeMillis() - t);
-            if (result != null) {
-                evidence.getMetadata().set(ExtraProperties.CONFIDENCE_ATTR, Double.toString(result.score));
-                evidence.getMetadata().set(ExtraProperties.TRANSCRIPT_ATTR, result.text);
-                storeTextInDb(evidence.getHash(), result.text, result.score);
-                transcriptionSuccess.incrementAndGet();
-                if (result.text != null) {
-                    transcriptionChars.addAndGet(result.text.length());
-                }
-            } else {
-                transcriptionFail.incrementAndGet();
-            }
+            saveResult(evidence, result);
 
         } finally {
             if (tempWav != null) {
@@ -317,6 +317,30 @@ protected void process(IItem evidence) throws Exception {
 
     }
 
+    protected void saveResult(IItem evidence, TextAndScore result) throws IOException {
+        if (result != null) {
+            evidence.getMetadata().set(ExtraProperties.CONFIDENCE_ATTR, Double.toString(result.score));
+            evidence.getMetadata().set(ExtraProperties.TRANSCRIPT_ATTR, result.text);
+            storeTextInDb(evidence.getHash(), result.text, result.score);
+            transcriptionSuccess.incrementAndGet();
+            if (result.text != null) {
+                transcriptionChars.addAndGet(result.text.length());
+            }
+        } else {
+            transcriptionFail.incrementAndGet();
+        }
+    }
+
+    /**
+     * Transcribes the item without converting it to a temporary wav file, if the
+     * implementation is able to.
+     * 
+     * @return false if the item must be transcribed from a wav file
+     */
+    protected boolean transcribeWithoutWav(IItem evidence) throws Exception {
+        return false;
+    }
+
     protected abstract TextAndScore transcribeWav(File tmpFile) throws Exception;
 
 }
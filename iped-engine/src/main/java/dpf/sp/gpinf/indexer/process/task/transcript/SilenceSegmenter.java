@@ -0,0 +1,95 @@
+package dpf.sp.gpinf.indexer.process.task.transcript;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits a raw PCM stream (16khz, 16 bits, little endian, mono) into segments
+ * ending at silences, so they can be transcribed independently. A simple
+ * energy based voice activity detection is used: a frame is silent if its RMS
+ * is below a fraction of the average RMS seen in the current segment.
+ */
+class SilenceSegmenter {
+
+    private static final int FRAME_BYTES = 960; // 30ms
+
+    private static final int MIN_SEGMENT_BYTES = 15 * AbstractTranscriptTask.WAV_BYTES_PER_SEC;
+
+    private static final int MAX_SEGMENT_BYTES = 60 * AbstractTranscriptTask.WAV_BYTES_PER_SEC;
+
+    private static final int MIN_SILENCE_FRAMES = 10; // 300ms
+
+    private static final double MIN_SILENCE_RMS = 100;
+
+    private static final double SILENCE_RMS_RATIO = 0.1;
+
+    private final InputStream pcm;
+
+    private final byte[] frame = new byte[FRAME_BYTES];
+
+    private boolean eof = false;
+
+    SilenceSegmenter(InputStream pcm) {
+        this.pcm = pcm;
+    }
+
+    /**
+     * @return next segment or null if the stream has ended
+     */
+    byte[] next() throws IOException {
+        if (eof) {
+            return null;
+        }
+        ByteArrayOutputStream segment = new ByteArrayOutputStream(MIN_SEGMENT_BYTES);
+        double rmsSum = 0;
+        int frames = 0, silentFrames = 0;
+        while (true) {
+            int len = readFrame();
+            if (len <= 0) {
+                eof = true;
+                break;
+            }
+            segment.write(frame, 0, len);
+            double rms = rms(frame, len);
+            rmsSum += rms;
+            frames++;
+            if (rms < Math.max(MIN_SILENCE_RMS, SILENCE_RMS_RATIO * rmsSum / frames)) {
+                silentFrames++;
+            } else {
+                silentFrames = 0;
+            }
+            if (segment.size() >= MAX_SEGMENT_BYTES
+                    || (segment.size() >= MIN_SEGMENT_BYTES && silentFrames >= MIN_SILENCE_FRAMES)) {
+                break;
+            }
+        }
+        return segment.size() > 0 ? segment.toByteArray() : null;
+    }
+
+    /**
+     * @return true if the stream has ended, so the last returned segment was the
+     *         last one
+     */
+    boolean isEof() {
+        return eof;
+    }
+
+    private int readFrame() throws IOException {
+        int off = 0, read;
+        while (off < FRAME_BYTES && (read = pcm.read(frame, off, FRAME_BYTES - off)) != -1) {
+            off += read;
+        }
+        return off & ~1;
+    }
+
+    private static double rms(byte[] buf, int len) {
+        double sum = 0;
+        for (int i = 0; i < len; i += 2) {
+            int sample = (short) ((buf[i] & 0xFF) | (buf[i + 1] << 8));
+            sum += sample * sample;
+        }
+        return Math.sqrt(sum / (len / 2));
+    }
+
+}
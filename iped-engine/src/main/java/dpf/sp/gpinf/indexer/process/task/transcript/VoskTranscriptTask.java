@@ -4,7 +4,18 @@
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.UnsupportedAudioFileException;
@@ -20,15 +31,79 @@
 
 import dpf.sp.gpinf.indexer.Configuration;
 import dpf.sp.gpinf.indexer.config.ConfigurationManager;
+import dpf.sp.gpinf.indexer.config.LocalConfig;
 import dpf.sp.gpinf.indexer.util.IPEDException;
 
-public class VoskTranscriptTask extends AbstractTranscriptTask {
+public class VoskTranscriptTask extends AbstractStreamingTranscriptTask {
 
     private static Logger logger = LoggerFactory.getLogger(VoskTranscriptTask.class);
 
+    private static final int SAMPLE_RATE = 16000;
+
+    private static final int FEED_BYTES = 8000; // 250ms
+
     private static Model model;
 
-    private Recognizer recognizer;
+    /**
+     * Recognizers sharing the static model, used by all workers and by the segment
+     * transcription pool.
+     */
+    private static BlockingQueue<Recognizer> recognizers;
+
+    /**
+     * Pool used to transcribe segments of long audios in parallel.
+     */
+    static ExecutorService segmentPool;
+
+    /**
+     * Limits the decoded segments waiting for transcription, bounding memory usage.
+     */
+    static Semaphore pendingSegments;
+
+    /**
+     * Transcribes a segment of raw PCM data.
+     */
+    interface SegmentTranscriber {
+        TextScoreWords transcribe(byte[] segment) throws Exception;
+    }
+
+    /**
+     * Segment submitted to the segment pool. It holds a permit of
+     * {@link #pendingSegments}, released once by whoever claims the segment: the
+     * pool when it starts transcribing it, or {@link #cancel()}.
+     */
+    private static class PendingSegment implements Callable<TextScoreWords> {
+
+        private final byte[] data;
+        private final SegmentTranscriber transcriber;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private Future<TextScoreWords> future;
+
+        private PendingSegment(byte[] data, SegmentTranscriber transcriber) {
+            this.data = data;
+            this.transcriber = transcriber;
+        }
+
+        @Override
+        public TextScoreWords call() throws Exception {
+            if (!claimed.compareAndSet(false, true)) {
+                // cancelled, permit already released
+                return null;
+            }
+            try {
+                return transcriber.transcribe(data);
+            } finally {
+                pendingSegments.release();
+            }
+        }
+
+        private void cancel() {
+            future.cancel(false);
+            if (claimed.compareAndSet(false, true)) {
+                pendingSegments.release();
+            }
+        }
+    }
 
     @Override
     public void init(ConfigurationManager configurationManager) throws Exception {
@@ -65,69 +140,164 @@ public void init(ConfigurationManager configurationManager) throws Exception {
                 throw new IPEDException(msg);
             }
             model = new Model(modelDir.getAbsolutePath());
+
+            int numThreads = configurationManager.findObject(LocalConfig.class).getNumThreads();
+            recognizers = new ArrayBlockingQueue<>(numThreads);
+            for (int i = 0; i < numThreads; i++) {
+                Recognizer recognizer = new Recognizer(model, SAMPLE_RATE);
+                recognizer.setWords(true);
+                recognizers.add(recognizer);
+            }
+            startSegmentPool(numThreads);
         }
 
-        recognizer = new Recognizer(model, 16000);
-        recognizer.setWords(true);
+    }
 
+    static void startSegmentPool(int numThreads) {
+        segmentPool = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "VoskSegmentTranscriber"); //$NON-NLS-1$
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        pendingSegments = new Semaphore(2 * numThreads);
     }
 
     @Override
     public void finish() throws Exception {
         super.finish();
         if (this.isEnabled()) {
-            recognizer.close();
-            if (model != null) {
-                model.close();
-                model = null;
+            synchronized (VoskTranscriptTask.class) {
+                if (model != null) {
+                    segmentPool.shutdownNow();
+                    for (Recognizer recognizer : recognizers) {
+                        recognizer.close();
+                    }
+                    recognizers = null;
+                    model.close();
+                    model = null;
+                }
             }
         }
     }
 
     @Override
     protected TextAndScore transcribeWav(File tmpFile) throws Exception {
+        try (InputStream ais = AudioSystem.getAudioInputStream(tmpFile)) {
+            return transcribePcm(ais);
+
+        } catch (IOException | UnsupportedAudioFileException e) {
+            logger.warn("Fail to transcribe audio file " + evidence.getPath(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Splits the audio at silences. Short audios, with just one segment, are
+     * transcribed by the worker thread itself, while segments of long audios are
+     * transcribed in parallel by the segment pool.
+     */
+    @Override
+    protected TextAndScore transcribePcm(InputStream pcm) throws Exception {
+
+        List<TextScoreWords> results = transcribeSegments(pcm, this::transcribeSegment);
+        if (results == null) {
+            return null;
+        }
+
+        StringBuilder totalText = new StringBuilder();
+        double totalScore = 0;
+        int words = 0;
+        for (TextScoreWords result : results) {
+            totalText.append(result.text);
+            totalScore += result.score;
+            words += result.words;
+        }
 
         TextAndScore textAndScore = null;
-        recognizer.reset();
+        if (words > 0) {
+            textAndScore = new TextAndScore();
+            textAndScore.text = totalText.toString().trim();
+            textAndScore.score = totalScore / words;
+        }
+        return textAndScore;
+    }
 
-        try (InputStream ais = AudioSystem.getAudioInputStream(tmpFile)) {
+    /**
+     * @return the transcription of each segment or null if the audio could not be
+     *         transcribed
+     */
+    List<TextScoreWords> transcribeSegments(InputStream pcm, SegmentTranscriber transcriber) throws Exception {
 
-            StringBuilder totalText = new StringBuilder();
-            double totalScore = 0;
-            int words = 0;
-
-            int nbytes;
-            byte[] buf = new byte[1 << 20];
-            while ((nbytes = ais.read(buf)) >= 0) {
-                if (recognizer.acceptWaveForm(buf, nbytes)) {
-                    TextScoreWords result = decodeFromJson(recognizer.getResult());
-                    if (result != null) {
-                        totalText.append(result.text);
-                        totalScore += result.score;
-                        words += result.words;
-                    }
-                } else {
-                    // System.out.println(recognizer.getPartialResult());
+        List<PendingSegment> segments = new ArrayList<>();
+        List<TextScoreWords> results = new ArrayList<>();
+        try {
+            SilenceSegmenter segmenter = new SilenceSegmenter(pcm);
+            byte[] segment;
+            while ((segment = segmenter.next()) != null) {
+                if (segments.isEmpty() && segmenter.isEof()) {
+                    results.add(transcriber.transcribe(segment));
+                    break;
+                }
+                PendingSegment pending = new PendingSegment(segment, transcriber);
+                pendingSegments.acquire();
+                try {
+                    pending.future = segmentPool.submit(pending);
+                } catch (RuntimeException e) {
+                    pendingSegments.release();
+                    throw e;
                 }
+                segments.add(pending);
             }
+            for (PendingSegment pending : segments) {
+                results.add(pending.future.get());
+            }
+            return results;
+
+        } catch (IOException e) {
+            logger.warn("Fail to transcribe audio file " + evidence.getPath(), e);
+            return null;
 
-            TextScoreWords result = decodeFromJson(recognizer.getFinalResult());
-            if (result != null) {
-                totalText.append(result.text);
-                totalScore += result.score;
-                words += result.words;
+        } catch (ExecutionException e) {
+            logger.warn("Fail to transcribe audio file " + evidence.getPath(), e.getCause());
+            return null;
+
+        } finally {
+            for (PendingSegment pending : segments) {
+                pending.cancel();
             }
+        }
+    }
 
-            if (words > 0) {
-                textAndScore = new TextAndScore();
-                textAndScore.text = totalText.toString().trim();
-                textAndScore.score = totalScore / words;
+    private TextScoreWords transcribeSegment(byte[] data) throws Exception {
+        TextScoreWords total = new TextScoreWords();
+        StringBuilder totalText = new StringBuilder();
+        Recognizer recognizer = recognizers.take();
+        try {
+            recognizer.reset();
+            byte[] buf = new byte[FEED_BYTES];
+            for (int off = 0; off < data.length; off += FEED_BYTES) {
+                int len = Math.min(FEED_BYTES, data.length - off);
+                System.arraycopy(data, off, buf, 0, len);
+                if (recognizer.acceptWaveForm(buf, len)) {
+                    add(total, totalText, decodeFromJson(recognizer.getResult()));
+                }
             }
-        } catch (IOException | UnsupportedAudioFileException e) {
-            logger.warn("Fail to transcribe audio file " + evidence.getPath(), e);
+            add(total, totalText, decodeFromJson(recognizer.getFinalResult()));
+        } finally {
+            recognizers.add(recognizer);
         }
+        total.text = totalText.toString();
+        return total;
+    }
 
-        return textAndScore;
+    private static void add(TextScoreWords total, StringBuilder totalText, TextScoreWords result) {
+        if (result != null) {
+            totalText.append(result.text);
+            total.score += result.score;
+            total.words += result.words;
+        }
     }
 
     private TextScoreWords decodeFromJson(String json) throws ParseException {
@@ -160,7 +330,7 @@ private TextScoreWords decodeFromJson(String json) throws ParseException {
         return result;
     }
 
-    private static class TextScoreWords extends TextAndScore {
+    static class TextScoreWords extends TextAndScore {
         int words = 0;
     }
 
@@ -54,9 +54,15 @@ public class IPEDSearcher implements IIPEDSearcher {
     Query query;
     boolean treeQuery, noScore;
     NoScoringCollector collector;
+    PagingCollector pagingCollector;
 
     private volatile boolean canceled;
 
+    public static interface HitListener {
+
+        void hitFound(int luceneId, IItemId itemId) throws IOException;
+    }
+
     public IPEDSearcher(IPEDSource ipedCase) {
         this.ipedCase = ipedCase;
     }
@@ -100,6 +106,8 @@ public void cancel() {
         canceled = true;
         if (collector != null)
             collector.cancel();
+        if (pagingCollector != null)
+            pagingCollector.cancel();
     }
 
     public SearchResult search() throws IOException {
@@ -170,6 +178,28 @@ public LuceneSearchResult searchAll() throws IOException {
         return searchResult;
     }
 
+    /**
+     * Searches one page of results in index order, without computing scores,
+     * passing each hit to the listener as soon as it is found instead of
+     * materializing the whole result. Fragments of splitted items are filtered.
+     * 
+     * @param after
+     *            lucene id of the last hit of the previous page, or -1 to get the
+     *            first page
+     * @param pageSize
+     *            max number of hits
+     * @return lucene id to pass as <code>after</code> to get the next page, or -1
+     *         if there are no more hits
+     */
+    public int searchPage(int after, int pageSize, HitListener listener) throws IOException {
+        if (!treeQuery)
+            query = getNonTreeQuery();
+
+        pagingCollector = new PagingCollector(ipedCase, query, after, pageSize, listener);
+        ipedCase.getSearcher().search(query, pagingCollector);
+        return pagingCollector.getNextPageAfter();
+    }
+
     private void sortResultsByFinalLuceneIds(ScoreDoc[] totalScoreDocs) {
         if (ipedCase instanceof IPEDMultiSource) {
             Arrays.parallelSort(totalScoreDocs, new Comparator<ScoreDoc>() {
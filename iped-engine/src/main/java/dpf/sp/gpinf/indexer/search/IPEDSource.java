@@ -48,6 +48,8 @@
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCache;
 import org.apache.lucene.store.Directory;
 import org.sleuthkit.datamodel.SleuthkitCase;
 import org.sleuthkit.datamodel.TskCoreException;
@@ -94,6 +96,8 @@ public class IPEDSource implements Closeable, IIPEDSource {
      */
     private static List<SleuthkitCase> tskCaseList = new ArrayList<SleuthkitCase>();
 
+    private static QueryCache interactiveQueryCache;
+
     private File casePath;
     private File moduleDir;
     private File index;
@@ -442,6 +446,28 @@ protected void openSearcher() {
             searcher = new IndexSearcher(reader);
 
         searcher.setSimilarity(new IndexerSimilarity());
+
+        if (interactiveQueryCache != null) {
+            searcher.setQueryCache(interactiveQueryCache);
+            searcher.setQueryCachingPolicy(new InteractiveQueryCachingPolicy());
+        }
+    }
+
+    /**
+     * Enables a query cache shared by searchers opened after this call, which
+     * caches filter clauses as bitsets per index segment on their first use. Cache
+     * entries are tied to segments, so they are still valid after the index is
+     * reopened. Used by the analysis UI, where searches are repeated changing just
+     * one filter.
+     * 
+     * @param maxRamBytes
+     *            memory limit of the cache, least recently used entries are
+     *            evicted
+     */
+    public static synchronized void enableInteractiveQueryCache(long maxRamBytes) {
+        if (interactiveQueryCache == null) {
+            interactiveQueryCache = new LRUQueryCache(1000, maxRamBytes);
+        }
     }
 
     @Override
@@ -0,0 +1,30 @@
+package dpf.sp.gpinf.indexer.search;
+
+import java.io.IOException;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+
+/**
+ * Caches filter clauses (category, tree node, filter expression...) on their
+ * first use, so when the analyst changes just one UI filter the other clauses
+ * are intersected from cached bitsets instead of being evaluated again. The
+ * default Lucene policy only caches clauses after being used several times.
+ */
+public class InteractiveQueryCachingPolicy implements QueryCachingPolicy {
+
+    @Override
+    public void onUse(Query query) {
+    }
+
+    @Override
+    public boolean shouldCache(Query query) throws IOException {
+        // cheap to evaluate, caching does not pay off
+        return !(query instanceof TermQuery || query instanceof MatchAllDocsQuery
+                || query instanceof MatchNoDocsQuery);
+    }
+
+}
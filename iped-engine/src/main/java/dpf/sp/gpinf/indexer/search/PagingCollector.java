@@ -0,0 +1,132 @@
+package dpf.sp.gpinf.indexer.search;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
+
+import dpf.sp.gpinf.indexer.process.IndexItem;
+import iped3.IItemId;
+
+/**
+ * Collector that passes hits to a listener in index order as they are found,
+ * starting after a lucene id and stopping after a page of hits, so memory does
+ * not depend on the result size. Only the first matching fragment of splitted
+ * items is reported, also across pages.
+ */
+class PagingCollector extends SimpleCollector {
+
+    private final IPEDSource ipedCase;
+    private final Query query;
+    private final int after;
+    private final int pageSize;
+    private final IPEDSearcher.HitListener listener;
+
+    private int docBase = 0;
+    private int maxDoc = 0;
+    private int found = 0;
+    private int lastLuceneId = -1;
+    private boolean hasMore = false;
+
+    private volatile boolean canceled = false;
+
+    PagingCollector(IPEDSource ipedCase, Query query, int after, int pageSize, IPEDSearcher.HitListener listener) {
+        this.ipedCase = ipedCase;
+        this.query = query;
+        this.after = after;
+        this.pageSize = pageSize;
+        this.listener = listener;
+    }
+
+    public void cancel() {
+        canceled = true;
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        docBase = context.docBase;
+        maxDoc = context.reader().maxDoc();
+        if (hasMore || maxDoc == 0 || docBase + maxDoc <= after + 1) {
+            throw new CollectionTerminatedException();
+        }
+    }
+
+    /**
+     * Lets the scorer skip the docs of previous pages.
+     */
+    @Override
+    public DocIdSetIterator competitiveIterator() throws IOException {
+        return DocIdSetIterator.range(Math.max(0, after + 1 - docBase), maxDoc);
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        if (canceled)
+            throw new InterruptedIOException("Search canceled!"); //$NON-NLS-1$
+
+        int luceneId = docBase + doc;
+        if (luceneId <= after) {
+            return;
+        }
+        IItemId itemId;
+        IPEDSource atomicSource;
+        int atomicLuceneId;
+        if (ipedCase instanceof IPEDMultiSource) {
+            IPEDMultiSource multiSource = (IPEDMultiSource) ipedCase;
+            itemId = multiSource.getItemId(luceneId);
+            atomicSource = (IPEDSource) multiSource.getAtomicSourceBySourceId(itemId.getSourceId());
+            atomicLuceneId = luceneId - multiSource.getBaseLuceneId(atomicSource);
+        } else {
+            atomicSource = ipedCase;
+            atomicLuceneId = luceneId;
+            itemId = new ItemId(ipedCase.getSourceId(), ipedCase.getId(luceneId));
+        }
+        if (atomicSource.isSplited(itemId.getId())
+                && !isFirstMatchingFragment(atomicSource, itemId.getId(), atomicLuceneId)) {
+            return;
+        }
+        if (found == pageSize) {
+            hasMore = true;
+            throw new CollectionTerminatedException();
+        }
+        listener.hitFound(luceneId, itemId);
+        lastLuceneId = luceneId;
+        found++;
+    }
+
+    private boolean isFirstMatchingFragment(IPEDSource atomicSource, int id, int atomicLuceneId)
+            throws IOException {
+        if (atomicSource.getLuceneId(id) == atomicLuceneId) {
+            return true;
+        }
+        BooleanQuery.Builder fragments = new BooleanQuery.Builder();
+        fragments.add(query, Occur.MUST);
+        fragments.add(IntPoint.newExactQuery(IndexItem.ID, id), Occur.FILTER);
+        ScoreDoc[] first = atomicSource.getSearcher().search(fragments.build(), 1, Sort.INDEXORDER).scoreDocs;
+        return first.length == 0 || first[0].doc == atomicLuceneId;
+    }
+
+    /**
+     * @return lucene id to start the next page after, or -1 if there are no more
+     *         hits
+     */
+    public int getNextPageAfter() {
+        return hasMore ? lastLuceneId : -1;
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE_NO_SCORES;
+    }
+
+}
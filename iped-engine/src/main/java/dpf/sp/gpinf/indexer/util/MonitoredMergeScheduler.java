@@ -0,0 +1,60 @@
+package dpf.sp.gpinf.indexer.util;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.index.ConcurrentMergeScheduler;
+import org.apache.lucene.index.MergePolicy.OneMerge;
+
+/**
+ * ConcurrentMergeScheduler that collects the number of merges, the time spent
+ * merging and the time indexing threads were stalled waiting for pending
+ * merges, so they can be reported at the end of processing.
+ */
+public class MonitoredMergeScheduler extends ConcurrentMergeScheduler {
+
+    private final AtomicLong merges = new AtomicLong();
+    private final AtomicLong mergeTime = new AtomicLong();
+    private final AtomicLong stallTime = new AtomicLong();
+
+    @Override
+    protected void doMerge(MergeSource mergeSource, OneMerge merge) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.doMerge(mergeSource, merge);
+        } finally {
+            mergeTime.addAndGet(System.nanoTime() - start);
+            merges.incrementAndGet();
+        }
+    }
+
+    @Override
+    protected synchronized boolean maybeStall(MergeSource mergeSource) {
+        long start = System.nanoTime();
+        try {
+            return super.maybeStall(mergeSource);
+        } finally {
+            stallTime.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    public long getMerges() {
+        return merges.get();
+    }
+
+    /**
+     * @return total time spent by all merge threads, in milliseconds
+     */
+    public long getMergeTime() {
+        return mergeTime.get() / 1000000;
+    }
+
+    /**
+     * @return total time indexing threads were stalled by pending merges, in
+     *         milliseconds
+     */
+    public long getStallTime() {
+        return stallTime.get() / 1000000;
+    }
+
+}
@@ -50,6 +50,10 @@ public synchronized void setReadOnly(boolean readOnly) {
         this.readOnly = readOnly;
     }
 
+    public synchronized boolean isReadOnly() {
+        return readOnly;
+    }
+
     private synchronized void checkReadOnly() {
         if (readOnly) {
             try {
@@ -85,7 +85,7 @@ public Reader getTextReader() throws IOException {
 
         Reader reader = null;
         if (sb != null)
-            reader = new StringReader(sb.toString());
+            reader = new CharSequenceReader(sb);
 
         if (tmp != null) {
             try {
@@ -113,6 +113,45 @@ public void close() throws IOException {
             tmp.delete();
     }
 
+    /**
+     * Reads cached text directly from the StringBuilder, avoiding a full copy of
+     * it for each consumer of the text (indexing, regex, NER, language detection).
+     * Text must not be appended to the cache after its readers are created.
+     */
+    private static class CharSequenceReader extends Reader {
+
+        private StringBuilder sb;
+        private int pos = 0;
+
+        private CharSequenceReader(StringBuilder sb) {
+            this.sb = sb;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (sb == null) {
+                throw new IOException("Reader closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            if (pos >= sb.length()) {
+                return -1;
+            }
+            int end = Math.min(sb.length(), pos + len);
+            sb.getChars(pos, end, cbuf, off);
+            int read = end - pos;
+            pos = end;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            sb = null;
+        }
+
+    }
+
     public class KnownSizeReader extends Reader {
 
         private Reader delegate;
@@ -46,7 +46,7 @@ public int read(char[] cbuf, int off, int len) throws IOException {
         }
 
         int min = Math.min(len, size - pos);
-        System.arraycopy(buffer.toCharArray(), pos, cbuf, off, min);
+        buffer.getChars(pos, pos + min, cbuf, off);
         pos += min;
 
         return min;
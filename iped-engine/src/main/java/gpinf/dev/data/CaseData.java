@@ -6,6 +6,7 @@
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -13,6 +14,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -26,6 +28,7 @@
 import iped3.IItem;
 import iped3.IFileGroup;
 import iped3.IPathNode;
+import iped3.search.IItemSearcher;
 
 /**
  * Classe que define todos os dados do caso.
@@ -119,6 +122,12 @@ synchronized public int getDiscoveredEvidences() {
 
     private int maxQueueSize;
 
+    private transient QueueSpillStore spillStore;
+
+    private int spillThreshold;
+
+    private transient DependencyScheduler scheduler;
+
     /**
      * Cria objeto do caso
      *
@@ -130,6 +139,45 @@ public CaseData(int queueSize) {
         initQueues();
     }
 
+    /**
+     * Enables spilling to disk of items waiting in processing queues of later
+     * phases, when those queues exceed the specified number of items.
+     *
+     * @param spillDir
+     *            directory where spill files are created
+     * @param spillThreshold
+     *            number of items kept entirely in memory in each queue
+     */
+    public void enableQueueSpill(File spillDir, int spillThreshold) {
+        this.spillStore = new QueueSpillStore(spillDir);
+        this.spillThreshold = spillThreshold;
+    }
+
+    public void closeQueueSpill() {
+        if (spillStore != null) {
+            spillStore.close();
+        }
+    }
+
+    /**
+     * @return the queue spill store, or null if spilling is disabled
+     */
+    public QueueSpillStore getQueueSpillStore() {
+        return spillStore;
+    }
+
+    /**
+     * Enables early release of deferred items whose dependencies are confined to
+     * their own data source, instead of waiting the global queue change.
+     *
+     * @param searcherFactory
+     *            creates searchers over the items indexed so far, used by parsers
+     *            of released items to find their dependencies
+     */
+    public void enableDependencyScheduling(Supplier<IItemSearcher> searcherFactory) {
+        this.scheduler = new DependencyScheduler(searcherFactory);
+    }
+
     private void initQueues() {
         queues = new TreeMap<Integer, LinkedList<IItem>>();
         queues.put(0, new LinkedList<IItem>());
@@ -251,6 +299,17 @@ private void addItemToQueue(IItem item, int queuePriority, boolean addFirst, boo
                     sleep = true;
                     continue;
                 } else {
+                    if (scheduler != null && !item.isQueueEnd()) {
+                        if (queuePriority > currentQueuePriority
+                                && MimeTypesProcessingOrder.isDataSourceScoped(item.getMediaType())) {
+                            List<IItem> released = scheduler.hold(item, queuePriority);
+                            if (released != null) {
+                                addReleasedItems(released);
+                                break;
+                            }
+                        }
+                        scheduler.inc(item, queuePriority);
+                    }
                     if (addFirst) {
                         queue.addFirst(item);
                     } else {
@@ -263,6 +322,46 @@ private void addItemToQueue(IItem item, int queuePriority, boolean addFirst, boo
 
     }
 
+    /**
+     * Items waiting in the queues not processed yet, beyond the spill threshold,
+     * have most of their properties moved to disk. Done only when changing the
+     * queue, when no item is being processed, so no other thread can be using the
+     * spilled items.
+     */
+    private void spillWaitingItems() {
+        if (spillStore == null || currentQueuePriority == null) {
+            return;
+        }
+        for (LinkedList<IItem> queue : queues.tailMap(currentQueuePriority, true).values()) {
+            int i = 0;
+            for (IItem item : queue) {
+                if (i++ >= spillThreshold && !item.isQueueEnd() && item instanceof Item) {
+                    spillStore.spill((Item) item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores the properties of an item spilled to disk while it waited in a
+     * queue. Must not be called holding the lock of this object, so other workers
+     * do not wait for the disk read.
+     */
+    public IItem rehydrate(IItem item) {
+        if (spillStore != null && item instanceof Item) {
+            try {
+                spillStore.rehydrate((Item) item);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return item;
+    }
+
+    /**
+     * @return the first item of the current queue, which may have been spilled to
+     *         disk, see {@link #rehydrate(IItem)}
+     */
     public synchronized IItem pollFirstFromCurrentQueue() throws InterruptedException {
         return getItemQueue().pollFirst();
     }
@@ -271,24 +370,136 @@ public synchronized void addLastToCurrentQueue(IItem item) throws InterruptedExc
         getItemQueue().addLast(item);
     }
 
-    public synchronized IItem peekItemFromCurrentQueue() {
-        return getItemQueue().peek();
+    public IItem peekItemFromCurrentQueue() {
+        IItem item;
+        synchronized (this) {
+            item = getItemQueue().peek();
+        }
+        return rehydrate(item);
     }
 
     public synchronized int getCurrentQueueSize() {
         return getItemQueue().size();
     }
 
+    /**
+     * @return number of items waiting in each processing queue, by priority
+     */
+    public synchronized Map<Integer, Integer> getQueueSizes() {
+        Map<Integer, Integer> sizes = new TreeMap<>();
+        for (Map.Entry<Integer, LinkedList<IItem>> entry : queues.entrySet()) {
+            sizes.put(entry.getKey(), entry.getValue().size());
+        }
+        return sizes;
+    }
+
     public synchronized int getItemsBeingProcessed() {
         return totalItemsBeingProcessed;
     }
 
+    /**
+     * Contabiliza item retirado da fila atual para processamento.
+     */
     public synchronized void incItemsBeingProcessed() {
         totalItemsBeingProcessed++;
     }
 
-    public synchronized void decItemsBeingProcessed() {
+    /**
+     * Contabiliza item processado diretamente, sem passar pelas filas.
+     */
+    public synchronized void incItemsBeingProcessed(IItem item) {
+        totalItemsBeingProcessed++;
+        if (scheduler != null) {
+            scheduler.inc(item, currentQueuePriority);
+        }
+    }
+
+    public synchronized void decItemsBeingProcessed(IItem item) {
         totalItemsBeingProcessed--;
+        if (scheduler != null) {
+            addReleasedItems(scheduler.dec(item, currentQueuePriority));
+        }
+    }
+
+    /**
+     * Released items are processed in the current queue, before other items, so
+     * items depending on them are released sooner.
+     */
+    private void addReleasedItems(List<IItem> items) {
+        LinkedList<IItem> queue = getItemQueue();
+        for (int i = items.size() - 1; i >= 0; i--) {
+            queue.addFirst(items.get(i));
+        }
+    }
+
+    /**
+     * Signals that all items of data sources seen so far were added to the
+     * queues, so their deferred items can be released when dependencies are done.
+     */
+    public synchronized void setDataSourcesEnumerated() {
+        if (scheduler != null) {
+            addReleasedItems(scheduler.setAllEnumerated());
+        }
+    }
+
+    /**
+     * Signals that a reader is going to add the items of a disk image embedded in
+     * the parent item, which belong to the parent data source. Deferred items of
+     * that data source are not released until {@link #finishEmbeddedEnumeration}.
+     */
+    public synchronized void startEmbeddedEnumeration(IItem parent) {
+        if (scheduler != null) {
+            scheduler.incEmbeddedReaders(parent);
+        }
+    }
+
+    public synchronized void finishEmbeddedEnumeration(IItem parent) {
+        if (scheduler != null) {
+            addReleasedItems(scheduler.decEmbeddedReaders(parent));
+        }
+    }
+
+    /**
+     * @return priority of the queue the item is being processed in, which is higher
+     *         than the current queue priority if it was released early
+     */
+    public synchronized int getQueuePriority(IItem item) {
+        if (scheduler != null) {
+            Integer priority = scheduler.getReleasedPriority(item);
+            if (priority != null) {
+                return priority;
+            }
+        }
+        return currentQueuePriority;
+    }
+
+    /**
+     * @return searcher to be used by parsers of the item. Items released early
+     *         use a searcher over their data source items indexed until release,
+     *         kept open until the item is processed.
+     */
+    public IItemSearcher getItemSearcher(IItem item) {
+        if (scheduler != null) {
+            int generation;
+            synchronized (this) {
+                if (scheduler.getReleasedPriority(item) == null) {
+                    return (IItemSearcher) getCaseObject(IItemSearcher.class.getName());
+                }
+                generation = scheduler.getGeneration(item);
+            }
+            return scheduler.getSearcher(item, generation);
+        }
+        return (IItemSearcher) getCaseObject(IItemSearcher.class.getName());
+    }
+
+    /**
+     * Closes searchers created for items released early. Must be called when no
+     * item is being processed, like when changing the queue.
+     */
+    public synchronized void closeReleasedSearchers() {
+        if (scheduler != null) {
+            scheduler.closeSearchers();
+        }
     }
 
     public synchronized boolean isNoItemInQueueOrBeingProcessed() {
@@ -321,8 +532,15 @@ public void calctrackIDAndUpdateID(IItem item) {
         ((Item) item).setAllowGetId(true);
     }
 
-    public Integer changeToNextQueue() {
+    public synchronized Integer changeToNextQueue() {
         currentQueuePriority = queues.ceilingKey(currentQueuePriority + 1);
+        if (scheduler != null && currentQueuePriority != null) {
+            for (IItem item : scheduler.flush(currentQueuePriority)) {
+                scheduler.inc(item, currentQueuePriority);
+                getItemQueue().addLast(item);
+            }
+        }
+        spillWaitingItems();
         return currentQueuePriority;
     }
 
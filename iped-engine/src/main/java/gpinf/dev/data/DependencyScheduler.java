@@ -0,0 +1,310 @@
+package gpinf.dev.data;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import iped3.IItem;
+import iped3.datasource.IDataSource;
+import iped3.search.IItemSearcher;
+
+/**
+ * Controla a liberação antecipada de itens adiados cujas dependências estão
+ * restritas à sua própria fonte de dados (ver
+ * {@link dpf.sp.gpinf.indexer.process.MimeTypesProcessingOrder#isDataSourceScoped}).
+ * Em vez de esperar a troca global de fila, tais itens são liberados para a fila
+ * atual assim que a fonte de dados foi totalmente enumerada e nenhum item dela
+ * de prioridade menor está enfileirado ou em processamento.
+ *
+ * Não é thread safe, exceto {@link #getSearcher}: os demais métodos devem ser
+ * chamados com o lock de {@link CaseData}.
+ */
+class DependencyScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DependencyScheduler.class);
+
+    private static class SourceState {
+
+        /** itens enfileirados ou em processamento, por prioridade */
+        private TreeMap<Integer, Integer> pending = new TreeMap<>();
+
+        /** itens adiados aguardando liberação, por prioridade */
+        private TreeMap<Integer, List<IItem>> held = new TreeMap<>();
+
+        private boolean enumerated = false;
+
+        /** leitores de imagens embutidas enumerando itens da fonte */
+        private int embeddedReaders = 0;
+
+        /** incrementado a cada liberação, invalida o searcher atual */
+        private int generation = 0;
+    }
+
+    private static class GenerationSearcher {
+
+        private final IItemSearcher searcher;
+
+        private final int generation;
+
+        /** itens em processamento que obtiveram o searcher */
+        private int users = 0;
+
+        private GenerationSearcher(IItemSearcher searcher, int generation) {
+            this.searcher = searcher;
+            this.generation = generation;
+        }
+    }
+
+    private final Map<String, SourceState> sources = new HashMap<>();
+
+    /** itens liberados antecipadamente e a prioridade com que foram liberados */
+    private final Map<IItem, Integer> released = new IdentityHashMap<>();
+
+    /** searchers atuais por fonte de dados, protegidos pelo seu próprio lock */
+    private final Map<String, GenerationSearcher> searchers = new HashMap<>();
+
+    /** searchers de gerações antigas ainda em uso */
+    private final List<GenerationSearcher> retiredSearchers = new ArrayList<>();
+
+    /** searchers obtidos por cada item, liberados ao fim do seu processamento */
+    private final Map<IItem, List<GenerationSearcher>> searcherUsers = new IdentityHashMap<>();
+
+    private final Supplier<IItemSearcher> searcherFactory;
+
+    private int releasedItems = 0;
+
+    DependencyScheduler(Supplier<IItemSearcher> searcherFactory) {
+        this.searcherFactory = searcherFactory;
+    }
+
+    static String getSourceId(IItem item) {
+        IDataSource dataSource = item.getDataSource();
+        return dataSource != null ? dataSource.getUUID() : null;
+    }
+
+    private SourceState getState(String sourceId) {
+        return sources.computeIfAbsent(sourceId, id -> new SourceState());
+    }
+
+    /**
+     * Contabiliza item enfileirado ou colocado em processamento com a prioridade
+     * especificada.
+     */
+    void inc(IItem item, int priority) {
+        String sourceId = getSourceId(item);
+        if (sourceId != null) {
+            getState(sourceId).pending.merge(priority, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Descontabiliza item processado.
+     *
+     * @return itens liberados pelo término do processamento do item
+     */
+    List<IItem> dec(IItem item, int currentPriority) {
+        Integer priority = released.remove(item);
+        if (priority == null) {
+            priority = currentPriority;
+        } else {
+            releaseSearchers(item);
+        }
+        String sourceId = getSourceId(item);
+        if (sourceId == null) {
+            return Collections.emptyList();
+        }
+        SourceState state = getState(sourceId);
+        state.pending.computeIfPresent(priority, (p, count) -> count > 1 ? count - 1 : null);
+        return release(state);
+    }
+
+    /**
+     * Retém item adiado para liberação antecipada.
+     *
+     * @return itens liberados, que podem incluir o próprio item, ou null se o item
+     *         não tem fonte de dados e não foi retido
+     */
+    List<IItem> hold(IItem item, int priority) {
+        String sourceId = getSourceId(item);
+        if (sourceId == null) {
+            return null;
+        }
+        SourceState state = getState(sourceId);
+        state.held.computeIfAbsent(priority, p -> new ArrayList<>()).add(item);
+        return release(state);
+    }
+
+    /**
+     * Libera os itens retidos com a menor prioridade da fonte de dados, caso não
+     * exista item de prioridade menor dela pendente.
+     */
+    private List<IItem> release(SourceState state) {
+        if (!state.enumerated || state.embeddedReaders > 0 || state.held.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Integer priority = state.held.firstKey();
+        if (!state.pending.headMap(priority).isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<IItem> items = state.held.remove(priority);
+        for (IItem item : items) {
+            released.put(item, priority);
+        }
+        state.pending.merge(priority, items.size(), Integer::sum);
+        state.generation++;
+        releasedItems += items.size();
+        return items;
+    }
+
+    /**
+     * Marca as fontes de dados conhecidas como totalmente enumeradas.
+     *
+     * @return itens liberados
+     */
+    List<IItem> setAllEnumerated() {
+        List<IItem> items = new ArrayList<>();
+        for (SourceState state : sources.values()) {
+            state.enumerated = true;
+            items.addAll(release(state));
+        }
+        return items;
+    }
+
+    /**
+     * Contabiliza leitor que vai enumerar os itens de uma imagem embutida no item
+     * pai, que pertencem à fonte de dados do pai. Enquanto houver leitor, a fonte
+     * não é considerada totalmente enumerada.
+     */
+    void incEmbeddedReaders(IItem parent) {
+        String sourceId = getSourceId(parent);
+        if (sourceId != null) {
+            getState(sourceId).embeddedReaders++;
+        }
+    }
+
+    /**
+     * Descontabiliza leitor de imagem embutida que terminou.
+     *
+     * @return itens liberados
+     */
+    List<IItem> decEmbeddedReaders(IItem parent) {
+        String sourceId = getSourceId(parent);
+        if (sourceId == null) {
+            return Collections.emptyList();
+        }
+        SourceState state = getState(sourceId);
+        state.embeddedReaders--;
+        return release(state);
+    }
+
+    /**
+     * Remove os itens retidos que devem ser processados na fila de prioridade
+     * especificada, que se torna a fila atual.
+     */
+    List<IItem> flush(int priority) {
+        List<IItem> items = new ArrayList<>();
+        for (SourceState state : sources.values()) {
+            Iterator<List<IItem>> it = state.held.headMap(priority, true).values().iterator();
+            while (it.hasNext()) {
+                items.addAll(it.next());
+                it.remove();
+            }
+        }
+        return items;
+    }
+
+    /**
+     * @return prioridade com que o item foi liberado ou null se não foi liberado
+     *         antecipadamente
+     */
+    Integer getReleasedPriority(IItem item) {
+        return released.get(item);
+    }
+
+    /**
+     * @return geração de liberação da fonte de dados do item
+     */
+    int getGeneration(IItem item) {
+        SourceState state = sources.get(getSourceId(item));
+        return state != null ? state.generation : 0;
+    }
+
+    /**
+     * Obtém searcher que enxerga todos os itens indexados até a geração de
+     * liberação especificada da fonte de dados do item. O searcher fica em uso
+     * pelo item até o fim do seu processamento (ver {@link #dec}), e searchers de
+     * gerações antigas são fechados assim que não tiverem mais itens usando. Pode
+     * ser chamado sem o lock de {@link CaseData}.
+     */
+    IItemSearcher getSearcher(IItem item, int generation) {
+        String sourceId = getSourceId(item);
+        synchronized (searchers) {
+            GenerationSearcher current = searchers.get(sourceId);
+            if (current == null || current.generation < generation) {
+                if (current != null) {
+                    if (current.users == 0) {
+                        close(current.searcher);
+                    } else {
+                        retiredSearchers.add(current);
+                    }
+                }
+                current = new GenerationSearcher(searcherFactory.get(), generation);
+                searchers.put(sourceId, current);
+            }
+            current.users++;
+            searcherUsers.computeIfAbsent(item, i -> new ArrayList<>()).add(current);
+            return current.searcher;
+        }
+    }
+
+    private void releaseSearchers(IItem item) {
+        synchronized (searchers) {
+            List<GenerationSearcher> used = searcherUsers.remove(item);
+            if (used == null) {
+                return;
+            }
+            for (GenerationSearcher searcher : used) {
+                if (--searcher.users == 0 && retiredSearchers.remove(searcher)) {
+                    close(searcher.searcher);
+                }
+            }
+        }
+    }
+
+    private static void close(IItemSearcher searcher) {
+        try {
+            searcher.close();
+        } catch (IOException e) {
+            LOGGER.warn("Error closing item searcher", e); //$NON-NLS-1$
+        }
+    }
+
+    void closeSearchers() {
+        synchronized (searchers) {
+            for (GenerationSearcher current : searchers.values()) {
+                close(current.searcher);
+            }
+            searchers.clear();
+            for (GenerationSearcher retired : retiredSearchers) {
+                close(retired.searcher);
+            }
+            retiredSearchers.clear();
+            searcherUsers.clear();
+        }
+        if (releasedItems > 0) {
+            LOGGER.info("Items released before queue change: {}", releasedItems); //$NON-NLS-1$
+            releasedItems = 0;
+        }
+    }
+
+}
@@ -40,6 +40,7 @@
 import dpf.sp.gpinf.indexer.util.HashValue;
 import dpf.sp.gpinf.indexer.util.IOUtil;
 import dpf.sp.gpinf.indexer.util.LimitedSeekableInputStream;
+import dpf.sp.gpinf.indexer.util.MetadataInputStreamFactory;
 import dpf.sp.gpinf.indexer.util.ParentInfo;
 import dpf.sp.gpinf.indexer.util.SeekableByteChannelImpl;
 import dpf.sp.gpinf.indexer.util.SeekableFileInputStream;
@@ -211,6 +212,8 @@ public static void setStartID(int start) {
 
     private ISeekableInputStreamFactory inputStreamFactory;
 
+    private QueueSpillStore.Entry spillEntry;
+
     static final int BUF_LEN = 8 * 1024 * 1024;
 
     /**
@@ -1239,4 +1242,108 @@ public Object getTempAttribute(String key) {
     public void setTempAttribute(String key, Object value) {
         tempAttributes.put(key, value);
     }
+
+    QueueSpillStore.Entry getSpillEntry() {
+        return spillEntry;
+    }
+
+    /**
+     * Encodes the properties released from memory while this item waits in a
+     * processing queue. Metadata is kept in memory if it is read only or if it is
+     * also the content source of the item.
+     */
+    void writeSpilledData(QueueSpillStore.Encoder out) throws IOException {
+        out.writeString(name);
+        out.writeString(path);
+        out.writeVInt(parentIds.size());
+        for (Integer parent : parentIds) {
+            out.writeVInt(parent);
+        }
+        out.writeVInt(categories.size());
+        for (String category : categories) {
+            out.writeKey(category);
+        }
+        out.writeVInt(labels.size());
+        for (String label : labels) {
+            out.writeKey(label);
+        }
+        out.writeVInt(extraAttributes.size());
+        for (Map.Entry<String, Object> entry : extraAttributes.entrySet()) {
+            out.writeKey(entry.getKey());
+            out.writeValue(entry.getValue());
+        }
+        if (metadata == null || ((SyncMetadata) metadata).isReadOnly()
+                || inputStreamFactory instanceof MetadataInputStreamFactory) {
+            out.writeVInt(0);
+        } else {
+            String[] names = metadata.names();
+            out.writeVInt(names.length + 1);
+            for (String meta : names) {
+                out.writeKey(meta);
+                String[] values = metadata.getValues(meta);
+                out.writeVInt(values.length);
+                for (String val : values) {
+                    out.writeString(val);
+                }
+            }
+        }
+        out.writeBytes(thumb);
+        out.writeBytes(imageSimilarityFeatures);
+    }
+
+    void clearSpilledData(QueueSpillStore.Entry entry) {
+        this.spillEntry = entry;
+        name = null;
+        path = null;
+        parentIds = null;
+        categories = null;
+        labels = null;
+        extraAttributes = null;
+        if (!(metadata == null || ((SyncMetadata) metadata).isReadOnly()
+                || inputStreamFactory instanceof MetadataInputStreamFactory)) {
+            metadata = null;
+        }
+        thumb = null;
+        imageSimilarityFeatures = null;
+    }
+
+    void readSpilledData(QueueSpillStore.Decoder in) throws IOException {
+        name = in.readString();
+        path = in.readString();
+        int size = in.readVInt();
+        parentIds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            parentIds.add(in.readVInt());
+        }
+        size = in.readVInt();
+        categories = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            categories.add(in.readKey());
+        }
+        size = in.readVInt();
+        labels = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            labels.add(in.readKey());
+        }
+        size = in.readVInt();
+        extraAttributes = new ConcurrentHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String key = in.readKey();
+            extraAttributes.put(key, in.readValue());
+        }
+        size = in.readVInt() - 1;
+        if (size >= 0) {
+            metadata = new SyncMetadata();
+            for (int i = 0; i < size; i++) {
+                String meta = in.readKey();
+                int numValues = in.readVInt();
+                for (int j = 0; j < numValues; j++) {
+                    metadata.add(meta, in.readString());
+                }
+            }
+        }
+        thumb = in.readBytes();
+        imageSimilarityFeatures = in.readBytes();
+        spillEntry = null;
+    }
 }
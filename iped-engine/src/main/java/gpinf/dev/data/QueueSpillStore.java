@@ -0,0 +1,435 @@
+package gpinf.dev.data;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Disk storage for items parked in processing queues of later phases. The
+ * heavier properties of those items (path, attributes, metadata, thumbnails,
+ * etc) are encoded in a compact binary form and appended to segment files,
+ * while just a small item skeleton stays in memory, keeping its position in the
+ * queue. The properties are decoded back into the same item instance when it is
+ * polled from the queue. Segment files are deleted as soon as all their records
+ * were read back.
+ */
+public class QueueSpillStore implements Closeable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(QueueSpillStore.class);
+
+    private static final long SEGMENT_SIZE = 256 << 20;
+
+    private static final int MAX_KEYS = 1 << 16;
+
+    private static final byte NULL = 0, STRING = 1, INTEGER = 2, LONG = 3, DOUBLE = 4, FLOAT = 5, BOOLEAN = 6,
+            DATE = 7, BYTES = 8, LIST = 9;
+
+    /**
+     * Location of a spilled record.
+     */
+    static class Entry {
+
+        private final Segment segment;
+        private final long position;
+        private final int length;
+
+        private Entry(Segment segment, long position, int length) {
+            this.segment = segment;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    private static class Segment {
+
+        private final File file;
+        private final FileChannel channel;
+        private long size = 0;
+        private int live = 0;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+
+        private void delete() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            file.delete();
+        }
+    }
+
+    /**
+     * Thrown while encoding an item with some property that can not be encoded.
+     * Such items are kept entirely in memory.
+     */
+    static class NotSpillableException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        NotSpillableException(Object value) {
+            super("Value not supported: " + value.getClass().getName()); //$NON-NLS-1$
+        }
+    }
+
+    private final File dir;
+
+    private Segment current;
+
+    private int segmentCount = 0;
+
+    private boolean closed = false;
+
+    private final Map<String, Integer> keyIds = new ConcurrentHashMap<>();
+
+    private final AtomicReferenceArray<String> keys = new AtomicReferenceArray<>(MAX_KEYS);
+
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder rehydrated = new LongAdder();
+    private final LongAdder spilledBytes = new LongAdder();
+    private final LongAdder notSpillable = new LongAdder();
+
+    public QueueSpillStore(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Encodes the heavier properties of the item to disk and releases them from
+     * memory.
+     *
+     * @return true if the item was spilled, false if it was left untouched
+     */
+    boolean spill(Item item) {
+        if (item.getSpillEntry() != null) {
+            return false;
+        }
+        Encoder encoder = new Encoder();
+        Entry entry;
+        try {
+            item.writeSpilledData(encoder);
+            entry = write(encoder.buf, encoder.size);
+
+        } catch (NotSpillableException e) {
+            notSpillable.increment();
+            return false;
+
+        } catch (IOException e) {
+            LOGGER.warn("Error spilling queue item to disk, keeping it in memory: " + item.getPath(), e); //$NON-NLS-1$
+            return false;
+        }
+        if (entry == null) {
+            return false;
+        }
+        item.clearSpilledData(entry);
+        spilled.increment();
+        spilledBytes.add(encoder.size);
+        return true;
+    }
+
+    /**
+     * Restores the properties of a previously spilled item.
+     */
+    void rehydrate(Item item) throws IOException {
+        // the same item may be peeked and polled by different threads
+        synchronized (item) {
+            Entry entry = item.getSpillEntry();
+            if (entry == null) {
+                return;
+            }
+            ByteBuffer buf = ByteBuffer.allocate(entry.length);
+            while (buf.hasRemaining()) {
+                if (entry.segment.channel.read(buf, entry.position + buf.position()) < 0) {
+                    throw new IOException("Unexpected end of queue spill file " + entry.segment.file); //$NON-NLS-1$
+                }
+            }
+            item.readSpilledData(new Decoder(buf.array()));
+            release(entry);
+            rehydrated.increment();
+        }
+    }
+
+    private synchronized Entry write(byte[] data, int len) throws IOException {
+        if (closed) {
+            return null;
+        }
+        if (current == null || current.size + len > SEGMENT_SIZE) {
+            if (current != null && current.live == 0) {
+                current.delete();
+            }
+            dir.mkdirs();
+            current = new Segment(new File(dir, "queue" + (segmentCount++) + ".spill")); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data, 0, len);
+        long position = current.size;
+        while (buf.hasRemaining()) {
+            current.channel.write(buf, position + buf.position());
+        }
+        current.size += len;
+        current.live++;
+        return new Entry(current, position, len);
+    }
+
+    private synchronized void release(Entry entry) {
+        if (--entry.segment.live == 0 && entry.segment != current) {
+            entry.segment.delete();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (current != null && current.live == 0) {
+            current.delete();
+        }
+        current = null;
+        if (spilled.sum() > 0) {
+            LOGGER.info("Queue items spilled to disk: {} ({} MB), read back: {}", spilled.sum(), //$NON-NLS-1$
+                    spilledBytes.sum() >> 20, rehydrated.sum());
+        }
+    }
+
+    public long getSpilledItems() {
+        return spilled.sum();
+    }
+
+    public long getRehydratedItems() {
+        return rehydrated.sum();
+    }
+
+    public long getSpilledBytes() {
+        return spilledBytes.sum();
+    }
+
+    public long getNotSpillableItems() {
+        return notSpillable.sum();
+    }
+
+    private int getKeyId(String key) {
+        Integer id = keyIds.get(key);
+        if (id != null) {
+            return id;
+        }
+        synchronized (keyIds) {
+            id = keyIds.get(key);
+            if (id == null) {
+                if (keyIds.size() >= MAX_KEYS) {
+                    return -1;
+                }
+                id = keyIds.size();
+                keys.set(id, key);
+                keyIds.put(key, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * Binary writer of item properties. Integers are written as varints and
+     * repeated strings, like attribute and metadata names, are replaced by ids.
+     */
+    class Encoder {
+
+        private byte[] buf = new byte[256];
+        private int size = 0;
+
+        private void ensure(int len) {
+            if (size + len > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, size + len));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[size++] = (byte) b;
+        }
+
+        void writeVInt(int i) {
+            writeVLong(i & 0xFFFFFFFFL);
+        }
+
+        void writeVLong(long l) {
+            ensure(10);
+            while ((l & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((l & 0x7F) | 0x80);
+                l >>>= 7;
+            }
+            buf[size++] = (byte) l;
+        }
+
+        void writeBytes(byte[] bytes) {
+            if (bytes == null) {
+                writeVInt(0);
+                return;
+            }
+            writeVInt(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeString(String str) {
+            writeBytes(str == null ? null : str.getBytes(StandardCharsets.UTF_8));
+        }
+
+        void writeKey(String key) {
+            int id = getKeyId(key);
+            writeVInt(id + 1);
+            if (id == -1) {
+                writeString(key);
+            }
+        }
+
+        void writeValue(Object value) throws NotSpillableException {
+            if (value == null) {
+                writeByte(NULL);
+            } else if (value instanceof String) {
+                writeByte(STRING);
+                writeString((String) value);
+            } else if (value instanceof Integer) {
+                writeByte(INTEGER);
+                writeVInt((Integer) value);
+            } else if (value instanceof Long) {
+                writeByte(LONG);
+                writeVLong((Long) value);
+            } else if (value instanceof Double) {
+                writeByte(DOUBLE);
+                writeVLong(Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof Float) {
+                writeByte(FLOAT);
+                writeVInt(Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof Boolean) {
+                writeByte(BOOLEAN);
+                writeByte((Boolean) value ? 1 : 0);
+            } else if (value.getClass() == Date.class) {
+                writeByte(DATE);
+                writeVLong(((Date) value).getTime());
+            } else if (value instanceof byte[]) {
+                writeByte(BYTES);
+                writeBytes((byte[]) value);
+            } else if (value.getClass() == ArrayList.class) {
+                List<?> list = (List<?>) value;
+                writeByte(LIST);
+                writeVInt(list.size());
+                for (Object o : list) {
+                    writeValue(o);
+                }
+            } else {
+                throw new NotSpillableException(value);
+            }
+        }
+    }
+
+    /**
+     * Reader of item properties written by {@link Encoder}.
+     */
+    class Decoder {
+
+        private final byte[] buf;
+        private int pos = 0;
+
+        private Decoder(byte[] buf) {
+            this.buf = buf;
+        }
+
+        int readByte() {
+            return buf[pos++];
+        }
+
+        int readVInt() {
+            return (int) readVLong();
+        }
+
+        long readVLong() {
+            long l = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                l |= (b & 0x7FL) << shift;
+                shift += 7;
+            } while (b < 0);
+            return l;
+        }
+
+        byte[] readBytes() {
+            int len = readVInt() - 1;
+            if (len == -1) {
+                return null;
+            }
+            byte[] bytes = Arrays.copyOfRange(buf, pos, pos + len);
+            pos += len;
+            return bytes;
+        }
+
+        String readString() {
+            int len = readVInt() - 1;
+            if (len == -1) {
+                return null;
+            }
+            String str = new String(buf, pos, len, StandardCharsets.UTF_8);
+            pos += len;
+            return str;
+        }
+
+        String readKey() {
+            int id = readVInt() - 1;
+            if (id == -1) {
+                return readString();
+            }
+            return keys.get(id);
+        }
+
+        Object readValue() throws IOException {
+            byte type = (byte) readByte();
+            switch (type) {
+                case NULL:
+                    return null;
+                case STRING:
+                    return readString();
+                case INTEGER:
+                    return readVInt();
+                case LONG:
+                    return readVLong();
+                case DOUBLE:
+                    return Double.longBitsToDouble(readVLong());
+                case FLOAT:
+                    return Float.intBitsToFloat(readVInt());
+                case BOOLEAN:
+                    return readByte() != 0;
+                case DATE:
+                    return new Date(readVLong());
+                case BYTES:
+                    return readBytes();
+                case LIST:
+                    int size = readVInt();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(readValue());
+                    }
+                    return list;
+                default:
+                    throw new IOException("Unknown value type in queue spill file: " + type); //$NON-NLS-1$
+            }
+        }
+    }
+
+}
@@ -1,14 +1,33 @@
 package gpinf.hashdb;
 
 public class LedHashDB {
+    /**
+     * Number of initial bits of the MD5 used to index the prefix filter.
+     */
+    private static final int PREFIX_BITS = 24;
+
     private final byte[] md5_512;
     private final byte[] md5_64k;
     private final int[] hashIds;
 
+    /**
+     * Bitmap of the MD5 prefixes of 512 bytes blocks, discards most blocks without
+     * the binary search. Uses 2 MB of memory.
+     */
+    private final long[] prefixFilter = new long[1 << (PREFIX_BITS - 6)];
+
     public LedHashDB(byte[] md5_512, byte[] md5_64k, int[] hashIds) {
         this.md5_512 = md5_512;
         this.md5_64k = md5_64k;
         this.hashIds = hashIds;
+        for (int off = 0; off < md5_512.length; off += 16) {
+            int prefix = prefix(md5_512, off);
+            prefixFilter[prefix >>> 6] |= 1L << prefix;
+        }
+    }
+
+    private static int prefix(byte[] bytes, int off) {
+        return ((bytes[off] & 255) << 16) | ((bytes[off + 1] & 255) << 8) | (bytes[off + 2] & 255);
     }
 
     public byte[] getMD5_512() {
@@ -29,6 +48,8 @@ public int size() {
 
     public boolean containsMD5_512(byte[] bytes) {
         if (bytes.length != 16) return false;
+        int prefix = prefix(bytes, 0);
+        if ((prefixFilter[prefix >>> 6] & (1L << prefix)) == 0) return false;
         return binarySearch(md5_512, bytes) >= 0;
     }
 
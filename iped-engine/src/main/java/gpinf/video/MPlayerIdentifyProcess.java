@@ -0,0 +1,192 @@
+package gpinf.video;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Processo do MPlayer em modo escravo (-slave -idle), reutilizado para obter as
+ * informações (-identify) de vários vídeos, evitando a criação de um novo
+ * processo por vídeo apenas para identificação. Em caso de erro ou timeout o
+ * processo é finalizado e o chamador deve utilizar a identificação tradicional.
+ */
+class MPlayerIdentifyProcess {
+
+    private static final boolean isWindows = System.getProperty("os.name").toLowerCase().startsWith("windows"); //$NON-NLS-1$ //$NON-NLS-2$
+
+    /**
+     * Reinicia o processo periodicamente, limitando efeitos de possíveis
+     * vazamentos de memória do MPlayer.
+     */
+    private static final int maxFilesPerProcess = 1000;
+
+    /**
+     * Após essa quantidade de falhas consecutivas, o modo escravo é desabilitado.
+     */
+    private static final int maxConsecutiveFailures = 3;
+
+    private static final String EOF = new String("EOF"); //$NON-NLS-1$
+
+    /**
+     * Texto impresso pelo MPlayer após processar todos os comandos de uma
+     * requisição, delimitando sua saída.
+     */
+    private static final String END_MARKER = "IPED_IDENTIFY_END_"; //$NON-NLS-1$
+
+    private final String mplayer;
+    private final boolean verbose;
+
+    private Process process;
+    private Writer writer;
+    private BlockingQueue<String> lines;
+    private int files;
+    private int requests;
+    private int failures;
+    private boolean disabled;
+
+    MPlayerIdentifyProcess(String mplayer, boolean verbose) {
+        this.mplayer = mplayer;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Obtém as informações do vídeo no mesmo formato da saída de "mplayer
+     * -identify".
+     *
+     * @return informações do vídeo ou null se não foi possível obtê-las
+     */
+    String identify(File in, int timeout) {
+        if (disabled) {
+            return null;
+        }
+        String path = in.getAbsolutePath();
+        if (path.indexOf('"') >= 0 || path.indexOf('\n') >= 0 || (isWindows && !isAscii(path))) {
+            return null;
+        }
+        try {
+            if (process == null || !process.isAlive()) {
+                start();
+            }
+            String marker = END_MARKER + (++requests);
+            send("loadfile \"" + path + "\""); //$NON-NLS-1$ //$NON-NLS-2$
+            send("get_property length"); //$NON-NLS-1$
+            send("stop"); //$NON-NLS-1$
+            send("print_text " + marker); //$NON-NLS-1$
+
+            // a saída das requisições anteriores foi consumida até seu marcador
+            StringBuilder sb = new StringBuilder();
+            boolean answered = false;
+            long deadline = System.currentTimeMillis() + timeout;
+            while (true) {
+                long wait = deadline - System.currentTimeMillis();
+                String line = wait > 0 ? lines.poll(wait, TimeUnit.MILLISECONDS) : null;
+                if (line == null || line == EOF || (!answered && marker.equals(line.trim()))) {
+                    if (verbose) {
+                        System.err.println("MPlayer slave identify failed: " + path); //$NON-NLS-1$
+                    }
+                    fail();
+                    return null;
+                }
+                if (marker.equals(line.trim())) {
+                    break;
+                }
+                if (line.startsWith("ANS_")) { //$NON-NLS-1$
+                    answered = true;
+                } else if (!answered) {
+                    sb.append(line).append('\n');
+                }
+            }
+            failures = 0;
+            if (++files >= maxFilesPerProcess) {
+                close();
+            }
+            return sb.toString();
+
+        } catch (IOException e) {
+            fail();
+            return null;
+
+        } catch (InterruptedException e) {
+            close();
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void start() throws IOException {
+        List<String> cmds = Arrays.asList(mplayer, "-slave", "-idle", "-quiet", "-identify", "-demuxer", "lavf", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+                "-nosound", "-noautosub", "-vo", "null", "-ao", "null"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+        ProcessBuilder pb = new ProcessBuilder(cmds);
+        pb.redirectErrorStream(true);
+        process = pb.start();
+        writer = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+        lines = new LinkedBlockingQueue<>();
+        files = 0;
+
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        final BlockingQueue<String> queue = lines;
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (verbose) {
+                            System.err.println(line);
+                        }
+                        queue.add(line);
+                    }
+                } catch (IOException e) {
+                    // processo finalizado
+                } finally {
+                    queue.add(EOF);
+                }
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void send(String cmd) throws IOException {
+        writer.write(cmd);
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private void fail() {
+        close();
+        if (++failures >= maxConsecutiveFailures) {
+            disabled = true;
+        }
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void close() {
+        if (process != null) {
+            try {
+                send("quit"); //$NON-NLS-1$
+            } catch (IOException e) {
+                // ignora
+            }
+            process.destroyForcibly();
+            process = null;
+        }
+    }
+}
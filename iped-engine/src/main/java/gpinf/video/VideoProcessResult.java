@@ -41,6 +41,8 @@ public class VideoProcessResult {
 
     private boolean success, timeout;
     private long processingTime;
+    private long spawnTime, decodeTime, composeTime;
+    private int processes;
 
     public long getVideoDuration() {
         return videoDuration;
@@ -58,6 +60,43 @@ public void setProcessingTime(long processingTime) {
         this.processingTime = processingTime;
     }
 
+    /**
+     * Soma os tempos de uma execução do MPlayer: criação do processo e
+     * decodificação (espera pelo término).
+     */
+    public void addExecTimes(long spawnTime, long decodeTime) {
+        this.spawnTime += spawnTime;
+        this.decodeTime += decodeTime;
+        processes++;
+    }
+
+    public void addDecodeTime(long decodeTime) {
+        this.decodeTime += decodeTime;
+    }
+
+    public void addComposeTime(long composeTime) {
+        this.composeTime += composeTime;
+    }
+
+    public long getSpawnTime() {
+        return spawnTime;
+    }
+
+    public long getDecodeTime() {
+        return decodeTime;
+    }
+
+    public long getComposeTime() {
+        return composeTime;
+    }
+
+    /**
+     * @return número de processos do MPlayer criados para o vídeo
+     */
+    public int getProcesses() {
+        return processes;
+    }
+
     public Dimension getDimension() {
         return dimension;
     }
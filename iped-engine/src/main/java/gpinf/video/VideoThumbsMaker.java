@@ -43,6 +43,8 @@ public class VideoThumbsMaker {
     private static final String prefix = "_vtm"; //$NON-NLS-1$
     private int ignoreWaitKeyFrame;
     private static final int maxLines = 20000;
+    private MPlayerIdentifyProcess identifyProcess;
+    private File frameDir;
 
     public String getVersion() {
         List<String> cmds = new ArrayList<String>(Arrays.asList(new String[] { mplayer }));
@@ -77,14 +79,32 @@ public VideoProcessResult createThumbs(File inOrg, File tmp, List<VideoThumbsOut
         List<String> cmds = new ArrayList<String>(Arrays.asList(new String[] { mplayer, "-demuxer", "lavf", "-nosound", "-noautosub", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
                 "-noconsolecontrols", "-vo", "null", "-ao", "null", "-frames", "0", "-identify", in.getPath() })); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$
 
-        File subTmp = new File(tmp, prefix + Thread.currentThread().getId() + "_" + System.currentTimeMillis()); //$NON-NLS-1$
-        subTmp.mkdir();
-        subTmp.deleteOnExit();
+        File subTmp = getFrameDir(tmp);
+        cleanTemp(subTmp);
 
         boolean fixed = false;
         File lnk = null;
         String videoStream = null;
-        for (int step = numFrames <= 0 ? 0 : 1; step <= 1; step++) {
+
+        // Identificação pelo processo persistente, evitando uma execução do MPlayer
+        // apenas para obter as informações do vídeo
+        boolean identified = false;
+        if (numFrames <= 0) {
+            if (identifyProcess == null) {
+                identifyProcess = new MPlayerIdentifyProcess(mplayer, verbose);
+            }
+            long t = System.currentTimeMillis();
+            String info = identifyProcess.identify(in, firstCall ? timeoutFirstCall : timeoutInfo);
+            result.addDecodeTime(System.currentTimeMillis() - t);
+            firstCall = false;
+            if (info != null) {
+                result.setVideoInfo(info);
+                videoStream = result.getVideoStream();
+                identified = result.getVideoDuration() > 0 && result.getDimension() != null;
+            }
+        }
+
+        for (int step = identified ? 2 : numFrames <= 0 ? 0 : 1; step <= 1; step++) {
             if (step == 1) {
                 int pos = cmds.indexOf("-demuxer"); //$NON-NLS-1$
                 if (pos < 0) {
@@ -94,6 +114,7 @@ public VideoProcessResult createThumbs(File inOrg, File tmp, List<VideoThumbsOut
                 cmds.remove(pos);
             }
             ExecResult res = run(cmds.toArray(new String[0]), firstCall ? timeoutFirstCall : timeoutInfo, null);
+            result.addExecTimes(res.spawnTime, res.runTime);
             if (firstCall) {
                 firstCall = false;
             }
@@ -134,6 +155,7 @@ public VideoProcessResult createThumbs(File inOrg, File tmp, List<VideoThumbsOut
             }
         }
         if (outs == null) {
+            cleanTemp(subTmp);
             return result;
         }
 
@@ -273,6 +295,7 @@ public VideoProcessResult createThumbs(File inOrg, File tmp, List<VideoThumbsOut
             }
 
             ExecResult res = run(cmds.toArray(new String[0]), timeoutProcess, subTmp);
+            result.addExecTimes(res.spawnTime, res.runTime);
             if (res.timeout) {
                 result.setTimeout(true);
             } else if (result.isTimeout()) {
@@ -308,26 +331,26 @@ public boolean accept(File pathname) {
             ignoreWaitKeyFrame = -1;
         }
 
+        long t = System.currentTimeMillis();
         Arrays.sort(files);
-        List<File> images = new ArrayList<File>();
+        List<BufferedImage> images = new ArrayList<BufferedImage>();
         for (File file : files) {
-            file.deleteOnExit();
-            images.add(file);
-        }
-        if (lnk != null) {
-            lnk.delete();
+            BufferedImage frame = ImageIO.read(file);
+            if (frame != null) {
+                images.add(frame);
+            }
         }
+        cleanTemp(subTmp);
         if (images.size() == 0) {
-            cleanTemp(subTmp);
             return result;
         }
         if (transposed) {
             transpose(result.getDimension());
         }
         for (VideoThumbsOutputConfig config : outs) {
-            generateGridImage(config, images, result.getDimension());
+            generateGridImage(config, new ArrayList<>(images), result.getDimension());
         }
-        cleanTemp(subTmp);
+        result.addComposeTime(System.currentTimeMillis() - t);
 
         result.setTimeout(false);
         result.setSuccess(true);
@@ -405,7 +428,7 @@ private String getShortName(File in) {
         return null;
     }
 
-    private void generateGridImage(VideoThumbsOutputConfig config, List<File> images, Dimension dimension)
+    private void generateGridImage(VideoThumbsOutputConfig config, List<BufferedImage> images, Dimension dimension)
             throws IOException {
         int w = config.getThumbWidth();
         if (images.size() > config.getRows() * config.getColumns()) {
@@ -437,7 +460,7 @@ private void generateGridImage(VideoThumbsOutputConfig config, List<File> images
             int y = 1 + i * (h + border) + border;
             for (int j = 0; j < config.getColumns(); j++) {
                 int x = 1 + j * (w + border) + border;
-                BufferedImage in = ImageIO.read(images.get(Math.min(images.size() - 1, (int) pos)));
+                BufferedImage in = images.get(Math.min(images.size() - 1, (int) pos));
                 g2.drawImage(in, x, y, w, h, null);
                 pos += rate;
             }
@@ -447,12 +470,38 @@ private void generateGridImage(VideoThumbsOutputConfig config, List<File> images
                 "Frames=" + config.getRows() + "x" + config.getColumns()); //$NON-NLS-1$ //$NON-NLS-2$
     }
 
+    /**
+     * Pasta de saída dos frames, criada uma única vez e reutilizada para todos os
+     * vídeos processados por esta instância.
+     */
+    private File getFrameDir(File tmp) throws IOException {
+        if (frameDir == null || !frameDir.exists()) {
+            frameDir = Files.createTempDirectory(tmp.toPath(), prefix).toFile();
+            frameDir.deleteOnExit();
+        }
+        return frameDir;
+    }
+
     public void cleanTemp(File subTmp) {
         File[] files = subTmp.listFiles();
-        for (File file : files) {
-            file.delete();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Finaliza o processo persistente do MPlayer e apaga a pasta de frames.
+     */
+    public void close() {
+        if (identifyProcess != null) {
+            identifyProcess.close();
+        }
+        if (frameDir != null) {
+            cleanTemp(frameDir);
+            frameDir.delete();
         }
-        subTmp.delete();
     }
 
     private final ExecResult run(String[] cmds, int timeout, File currDir) {
@@ -470,6 +519,8 @@ private final ExecResult run(String[] cmds, int timeout, File currDir) {
         int exitCode = -1000;
         boolean isTimeout = false;
         Process process = null;
+        long spawnTime = 0;
+        long t = System.currentTimeMillis();
         try {
             final ProcessBuilder pb = new ProcessBuilder(cmds);
             pb.redirectErrorStream(true);
@@ -477,6 +528,7 @@ private final ExecResult run(String[] cmds, int timeout, File currDir) {
                 pb.directory(currDir);
             }
             process = pb.start();
+            spawnTime = System.currentTimeMillis() - t;
             StreamGobbler outputGobbler = new StreamGobbler(process.getInputStream(), sb, process);
             outputGobbler.start();
 
@@ -490,7 +542,8 @@ private final ExecResult run(String[] cmds, int timeout, File currDir) {
             outputGobbler.join();
             exitCode = process.exitValue();
 
-            return new ExecResult(exitCode, sb.toString(), isTimeout);
+            return new ExecResult(exitCode, sb.toString(), isTimeout, spawnTime,
+                    System.currentTimeMillis() - t - spawnTime);
         } catch (Exception e) {
             if (verbose) {
                 System.err.print("Error running program '"); //$NON-NLS-1$
@@ -500,7 +553,7 @@ private final ExecResult run(String[] cmds, int timeout, File currDir) {
             if (process != null && process.isAlive())
                 process.destroyForcibly();
         }
-        return new ExecResult(exitCode, null, isTimeout);
+        return new ExecResult(exitCode, null, isTimeout, spawnTime, System.currentTimeMillis() - t - spawnTime);
     }
 
     private String getExtensao(String nome) {
@@ -580,11 +633,14 @@ class ExecResult {
         final int exitCode;
         final String output;
         boolean timeout;
+        final long spawnTime, runTime;
 
-        public ExecResult(int exitCode, String output, boolean timeout) {
+        public ExecResult(int exitCode, String output, boolean timeout, long spawnTime, long runTime) {
             this.exitCode = exitCode;
             this.output = output;
             this.timeout = timeout;
+            this.spawnTime = spawnTime;
+            this.runTime = runTime;
         }
     }
 }
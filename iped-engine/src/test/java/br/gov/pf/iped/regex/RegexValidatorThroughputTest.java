@@ -0,0 +1,120 @@
+package br.gov.pf.iped.regex;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import br.gov.pf.iped.regex.cripto.BitcoinAddressValidatorService;
+import br.gov.pf.iped.regex.cripto.EthereumAddressValidatorService;
+import dpf.sp.gpinf.indexer.process.task.regex.RegexValidatorService;
+
+/**
+ * Checks that the char buffer prefilters never reject a hit accepted by the
+ * validators and reports the throughput of each validator.
+ */
+public class RegexValidatorThroughputTest {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(RegexValidatorThroughputTest.class);
+
+    private static final int NUM_HITS = 50000;
+
+    private Random random = new Random(0);
+
+    @Test
+    public void testCPF() {
+        run(new CPFRegexValidatorService(), "BR_CPF", "###.###.###-##", NUM_HITS, "570.428.820-08");
+    }
+
+    @Test
+    public void testCNPJ() {
+        run(new CNPJRegexValidatorService(), "BR_CNPJ", "##.###.###/####-##", NUM_HITS, "11.222.333/0001-81");
+    }
+
+    @Test
+    public void testPisPasep() {
+        run(new PisPasepRegexValidatorService(), "BR_PISPASEP", "###.####.###-#", NUM_HITS, "892.0607.587-3");
+    }
+
+    @Test
+    public void testCreditCard() {
+        run(new CreditCardRegexValidatorService(), "CREDIT_CARD", "#### #### #### ####", NUM_HITS,
+                "4111 1111 1111 1111");
+    }
+
+    @Test
+    public void testTelefone() {
+        run(new TelefoneRegexValidatorService(), "PHONE", "(##) 9####-####", NUM_HITS / 10, "(11) 99876-5555");
+    }
+
+    @Test
+    public void testEthereum() {
+        run(new EthereumAddressValidatorService(), "CRIPTOCOIN_ETHEREUM",
+                "0x########################################", NUM_HITS / 10,
+                "0x5aAeb6053F3E94C9b9A09f33669435E7Ef1BeAed");
+    }
+
+    @Test
+    public void testBitcoin() {
+        run(new BitcoinAddressValidatorService(), "CRIPTOCOIN_BITCOIN_ADDRESS", "1#################################",
+                NUM_HITS / 10, "1BvBMSEYstWetqTFn5Au4m4GFg7xJaNVN2");
+    }
+
+    private void run(RegexValidatorService service, String regexName, String mask, int numHits, String validHit) {
+        List<String> hits = new ArrayList<>(numHits);
+        hits.add(validHit);
+        while (hits.size() < numHits) {
+            hits.add(randomHit(mask));
+        }
+
+        long t = System.nanoTime();
+        int prefiltered = 0;
+        for (String hit : hits) {
+            char[] buf = hit.toCharArray();
+            if (service.prefilter(regexName, buf, 0, buf.length)) {
+                prefiltered++;
+            }
+        }
+        long prefilterTime = System.nanoTime() - t;
+
+        t = System.nanoTime();
+        int valid = 0;
+        for (String hit : hits) {
+            if (service.validate(regexName, hit)) {
+                valid++;
+                char[] buf = hit.toCharArray();
+                assertTrue(hit, service.prefilter(regexName, buf, 0, buf.length));
+            }
+        }
+        long validateTime = System.nanoTime() - t;
+
+        assertTrue(service.validate(regexName, validHit));
+        assertTrue(prefiltered >= valid);
+
+        LOGGER.info("{}: {} hits, {} prefiltered ({} hits/s), {} valid ({} hits/s)", regexName, numHits, prefiltered,
+                numHits * 1_000_000_000L / Math.max(1, prefilterTime), valid,
+                numHits * 1_000_000_000L / Math.max(1, validateTime));
+    }
+
+    private String randomHit(String mask) {
+        char[] hit = mask.toCharArray();
+        for (int i = 0; i < hit.length; i++) {
+            if (hit[i] == '#') {
+                if (mask.startsWith("0x")) {
+                    hit[i] = "0123456789abcdefABCDEF".charAt(random.nextInt(22));
+                } else if (mask.startsWith("1")) {
+                    hit[i] = "123456789ABCDEFGHJKLMNPQRSTUVWXYZabcdefghijkmnopqrstuvwxyz".charAt(random.nextInt(58));
+                } else {
+                    hit[i] = (char) ('0' + random.nextInt(10));
+                }
+            }
+        }
+        return new String(hit);
+    }
+
+}
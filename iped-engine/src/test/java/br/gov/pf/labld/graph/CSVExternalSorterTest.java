@@ -0,0 +1,109 @@
+package br.gov.pf.labld.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link CSVExternalSorter} calls the merger once per key with the
+ * lines in insertion order, whether the lines fit in memory or were spilled to
+ * several chunks.
+ */
+public class CSVExternalSorterTest {
+
+    private static final int LINES = 500;
+
+    private static final int KEYS = 37;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private int countChunks() {
+        return folder.getRoot().list((dir, name) -> name.startsWith("sort-chunk")).length; //$NON-NLS-1$
+    }
+
+    private List<String> sort(CSVExternalSorter sorter, Map<String, List<String>> expected) throws IOException {
+        for (int i = 0; i < LINES; i++) {
+            // keys are spread over all chunks
+            String key = "key" + (i * 7 % KEYS); //$NON-NLS-1$
+            String line = "line" + i; //$NON-NLS-1$
+            sorter.add(key, line);
+            expected.computeIfAbsent(key, k -> new ArrayList<>()).add(line);
+        }
+        List<String> groups = new ArrayList<>();
+        StringWriter out = new StringWriter();
+        try (BufferedWriter writer = new BufferedWriter(out)) {
+            sorter.writeTo(writer, (key, lines) -> {
+                groups.add(key + "=" + String.join(",", lines)); //$NON-NLS-1$ //$NON-NLS-2$
+                // odd groups are dropped
+                return groups.size() % 2 == 1 ? groups.get(groups.size() - 1) : null;
+            });
+        }
+        List<String> written = Arrays.asList(out.toString().split("\r\n")); //$NON-NLS-1$
+        for (int i = 0; i < groups.size(); i += 2) {
+            assertEquals(groups.get(i), written.get(i / 2));
+        }
+        assertEquals((groups.size() + 1) / 2, written.size());
+        return groups;
+    }
+
+    private static List<String> toGroups(Map<String, List<String>> expected) {
+        List<String> groups = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : expected.entrySet()) {
+            groups.add(entry.getKey() + "=" + String.join(",", entry.getValue())); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return groups;
+    }
+
+    @Test
+    public void testInMemory() throws IOException {
+        Map<String, List<String>> expected = new TreeMap<>();
+        try (CSVExternalSorter sorter = new CSVExternalSorter(folder.getRoot(), executor)) {
+            List<String> groups = sort(sorter, expected);
+            assertEquals(0, countChunks());
+            assertEquals(toGroups(expected), groups);
+        }
+    }
+
+    @Test
+    public void testSpilledChunks() throws IOException {
+        Map<String, List<String>> expected = new TreeMap<>();
+        File tmpDir = folder.getRoot();
+        try (CSVExternalSorter sorter = new CSVExternalSorter(tmpDir, executor, 100)) {
+            List<String> groups = sort(sorter, expected);
+            assertTrue("Several chunks expected", countChunks() > 10); //$NON-NLS-1$
+            assertEquals(toGroups(expected), groups);
+        }
+        assertEquals(0, countChunks());
+    }
+
+}
@@ -0,0 +1,221 @@
+package br.gov.pf.labld.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import dpf.sp.gpinf.indexer.util.StringUtil;
+
+/**
+ * Checks that normalizing the CSVs with an external sort spilling several
+ * chunks gives the same nodes as the previous in-memory normalization, and that
+ * identical relationships are written once.
+ */
+public class GraphFileWriterTest {
+
+    private static final String NODES_CSV = "nodes_PERSON_iped.csv"; //$NON-NLS-1$
+
+    private static final String RELS_CSV = "relationships_KNOWS_iped.csv"; //$NON-NLS-1$
+
+    private static final int NODES = 60;
+
+    private static final int CHUNK_CHARS = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    private final Map<String, String> replaces = new HashMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot();
+        // chains, and n31 has only replaced nodes, so it is dropped
+        replaces.put("n11", "n10"); //$NON-NLS-1$ //$NON-NLS-2$
+        replaces.put("n10", "n00"); //$NON-NLS-1$ //$NON-NLS-2$
+        replaces.put("n20", "n21"); //$NON-NLS-1$ //$NON-NLS-2$
+        replaces.put("n30", "n31"); //$NON-NLS-1$ //$NON-NLS-2$
+        replaces.put("n45", "n46"); //$NON-NLS-1$ //$NON-NLS-2$
+        replaces.put("n46", "n47"); //$NON-NLS-1$ //$NON-NLS-2$
+        List<String> lines = replaces.entrySet().stream().map(e -> e.getKey() + "," + e.getValue()) //$NON-NLS-1$
+                .collect(Collectors.toList());
+        Files.write(new File(root, GraphFileWriter.REPLACE_NAME).toPath(), lines, StandardCharsets.UTF_8);
+    }
+
+    private static String id(int i) {
+        return String.format("n%02d", i); //$NON-NLS-1$
+    }
+
+    private static String values(Random random) {
+        List<String> values = new ArrayList<>();
+        for (int i = random.nextInt(3); i > 0; i--) {
+            values.add("v" + random.nextInt(10)); //$NON-NLS-1$
+        }
+        return String.join(";", values); //$NON-NLS-1$
+    }
+
+    private static List<String> createNodes(Random random) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            if (i == 31) {
+                continue;
+            }
+            for (int j = random.nextInt(3); j >= 0; j--) {
+                lines.add("\"" + id(i) + "\",\"PERSON\",\"" + values(random) + "\",\"" + values(random) + "\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            }
+        }
+        // lines of the same node are spread over all chunks
+        Collections.shuffle(lines, random);
+        return lines;
+    }
+
+    private static List<String> createRels(Random random) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            lines.add("\"" + id(random.nextInt(NODES)) + "\",\"" + id(random.nextInt(NODES)) //$NON-NLS-1$ //$NON-NLS-2$
+                    + "\",\"KNOWS\",\"s" + random.nextInt(2) + "\",\"\""); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        for (int i = 0; i < 10; i++) {
+            lines.add(lines.get(i * 7));
+        }
+        // identical after replacing n11 by n00
+        lines.add("\"n11\",\"n01\",\"KNOWS\",\"s0\",\"\""); //$NON-NLS-1$
+        lines.add("\"n00\",\"n01\",\"KNOWS\",\"s0\",\"\""); //$NON-NLS-1$
+        Collections.shuffle(lines, random);
+        return lines;
+    }
+
+    private String getLastReplace(String id) {
+        String tmp, key = id;
+        while ((tmp = replaces.get(key)) != null) {
+            key = tmp;
+        }
+        return key;
+    }
+
+    private static String[] split(String string, String pattern) {
+        ArrayList<String> strs = new ArrayList<>();
+        int idx = 0 - pattern.length(), i = 0;
+        while ((i = string.indexOf(pattern, idx + pattern.length())) != -1) {
+            strs.add(string.substring(idx + pattern.length(), i));
+            idx = i;
+        }
+        strs.add(string.substring(idx + pattern.length()));
+        return strs.toArray(new String[strs.size()]);
+    }
+
+    /**
+     * Previous in-memory node normalization.
+     */
+    private List<String> normalizeNodesInMemory(List<String> lines) {
+        Map<String, String> uniques = new TreeMap<>();
+        Set<String> finalIds = new HashSet<>();
+        for (String line : lines) {
+            String id = line.substring(1, line.indexOf("\",\"")).trim(); //$NON-NLS-1$
+            String newId = getLastReplace(id);
+            if (id.equals(newId))
+                finalIds.add(id);
+            String prevLine = uniques.get(newId);
+            if (prevLine == null) {
+                uniques.put(newId, line);
+            } else {
+                TreeMap<Integer, Set<String>> map = new TreeMap<>();
+                String[][] valss = { split(line, "\",\""), split(prevLine, "\",\"") }; //$NON-NLS-1$ //$NON-NLS-2$
+                for (String[] vals : valss) {
+                    for (int i = 0; i < vals.length; i++) {
+                        Set<String> vs = map.get(i);
+                        if (vs == null) {
+                            vs = new TreeSet<>(StringUtil.getIgnoreCaseComparator());
+                            map.put(i, vs);
+                        }
+                        if (i == 0)
+                            vs.add(newId);
+                        else
+                            vs.addAll(Arrays.asList(vals[i].replaceAll("\"", "").split(";"))); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    }
+                }
+                StringBuilder sb = new StringBuilder();
+                int i = 0;
+                for (Set<String> set : map.values()) {
+                    sb.append("\""); //$NON-NLS-1$
+                    sb.append(set.stream().filter(a -> !a.isEmpty()).collect(Collectors.joining(";"))); //$NON-NLS-1$
+                    sb.append("\""); //$NON-NLS-1$
+                    if (++i < map.size())
+                        sb.append(","); //$NON-NLS-1$
+                }
+                uniques.put(newId, sb.toString());
+            }
+        }
+        return uniques.entrySet().stream().filter(e -> finalIds.contains(e.getKey())).map(e -> e.getValue())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Previous relationship id replacement, with identical lines removed and
+     * sorted.
+     */
+    private List<String> replaceRelsInMemory(List<String> lines) {
+        Set<String> result = new TreeSet<>();
+        for (String line : lines) {
+            int firstIdx = line.indexOf("\",\""); //$NON-NLS-1$
+            String id1 = line.substring(1, firstIdx).trim();
+            String id2 = line.substring(firstIdx + 3, line.indexOf("\",\"", firstIdx + 3)).trim(); //$NON-NLS-1$
+            line = line.replaceFirst(id1, getLastReplace(id1));
+            line = line.replaceFirst(id2, getLastReplace(id2));
+            result.add(line);
+        }
+        return new ArrayList<>(result);
+    }
+
+    private List<String> read(String name) throws IOException {
+        return Files.readAllLines(new File(root, name).toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testNormalizeSpilledChunks() throws IOException {
+        Random random = new Random(0);
+        List<String> nodes = createNodes(random);
+        List<String> rels = createRels(random);
+        Files.write(new File(root, NODES_CSV).toPath(), nodes, StandardCharsets.UTF_8);
+        Files.write(new File(root, RELS_CSV).toPath(), rels, StandardCharsets.UTF_8);
+
+        GraphFileWriter writer = new GraphFileWriter(root, null);
+        writer.close(true);
+        writer.normalize(CHUNK_CHARS);
+
+        List<String> normalizedNodes = read(NODES_CSV);
+        assertEquals(normalizeNodesInMemory(nodes), normalizedNodes);
+        assertTrue(normalizedNodes.stream().noneMatch(line -> line.startsWith("\"n31\""))); //$NON-NLS-1$
+        assertEquals(1, normalizedNodes.stream().filter(line -> line.startsWith("\"n00\"")).count()); //$NON-NLS-1$
+
+        List<String> expectedRels = replaceRelsInMemory(rels);
+        assertTrue("Duplicated relationships expected", expectedRels.size() < rels.size()); //$NON-NLS-1$
+        assertEquals(expectedRels, read(RELS_CSV));
+
+        // chunk files were removed
+        assertEquals(0, root.list((dir, name) -> name.startsWith("sort-chunk")).length); //$NON-NLS-1$
+    }
+
+}
@@ -0,0 +1,213 @@
+package dpf.sp.gpinf.indexer.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.FileVisitor;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link ParallelFileTreeWalker} calls the visitor with the same
+ * arguments and in the same order as {@link Files#walkFileTree(Path, FileVisitor)}.
+ */
+public class ParallelFileTreeWalkerTest {
+
+    /**
+     * More entries than a listing batch.
+     */
+    private static final int BIG_DIR_FILES = 2500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    /**
+     * Visitor recording its calls, returning the results configured for some of
+     * them. Results are keyed by call type and file name, like "pre:dir".
+     */
+    private static class RecordingVisitor implements FileVisitor<Path> {
+
+        private final Path root;
+        private final Map<String, FileVisitResult> results;
+        private final List<String> calls = new ArrayList<>();
+
+        private RecordingVisitor(Path root, Map<String, FileVisitResult> results) {
+            this.root = root;
+            this.results = results;
+        }
+
+        private FileVisitResult record(String type, Path path, String details) {
+            String name = path.getFileName() != null ? path.getFileName().toString() : ""; //$NON-NLS-1$
+            calls.add(type + " " + root.relativize(path) + " " + details); //$NON-NLS-1$ //$NON-NLS-2$
+            return results.getOrDefault(type + ":" + name, FileVisitResult.CONTINUE); //$NON-NLS-1$
+        }
+
+        private static String describe(BasicFileAttributes attrs) {
+            return "dir=" + attrs.isDirectory() + " link=" + attrs.isSymbolicLink() + " file=" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                    + attrs.isRegularFile() + " size=" + (attrs.isRegularFile() ? attrs.size() : -1); //$NON-NLS-1$
+        }
+
+        private static String describe(IOException e) {
+            return e == null ? "null" : e.getClass().getName(); //$NON-NLS-1$
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return record("pre", dir, describe(attrs)); //$NON-NLS-1$
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            return record("file", file, describe(attrs)); //$NON-NLS-1$
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            return record("failed", file, describe(exc)); //$NON-NLS-1$
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+            return record("post", dir, describe(exc)); //$NON-NLS-1$
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        createFiles(root, "root", 2); //$NON-NLS-1$
+        createFiles(Files.createDirectories(root.resolve("a/sub/deep")), "d", 2); //$NON-NLS-1$ //$NON-NLS-2$
+        createFiles(root.resolve("a/sub"), "s", 3); //$NON-NLS-1$ //$NON-NLS-2$
+        createFiles(root.resolve("a"), "a", 3); //$NON-NLS-1$ //$NON-NLS-2$
+        Files.createDirectories(root.resolve("b")); //$NON-NLS-1$
+        createFiles(Files.createDirectories(root.resolve("c")), "c", 5); //$NON-NLS-1$ //$NON-NLS-2$
+        Path big = Files.createDirectories(root.resolve("big")); //$NON-NLS-1$
+        createFiles(big, "f", BIG_DIR_FILES); //$NON-NLS-1$
+        for (int i = 0; i < 3; i++) {
+            createFiles(Files.createDirectories(big.resolve("dir" + i)), "g" + i + "_", 2); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+    }
+
+    private static void createFiles(Path dir, String prefix, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Files.write(dir.resolve(prefix + i), new byte[i % 10]);
+        }
+    }
+
+    private List<String> assertSameCalls(Map<String, FileVisitResult> results) throws IOException {
+        RecordingVisitor expected = new RecordingVisitor(root, results);
+        Files.walkFileTree(root, expected);
+
+        RecordingVisitor actual = new RecordingVisitor(root, results);
+        try (ParallelFileTreeWalker walker = new ParallelFileTreeWalker(false)) {
+            walker.walk(root, actual);
+        }
+        assertEquals(expected.calls, actual.calls);
+        return actual.calls;
+    }
+
+    @Test
+    public void testWholeTree() throws IOException {
+        List<String> calls = assertSameCalls(Collections.emptyMap());
+        // files, directories and their post visits
+        assertEquals(2 + 2 + 3 + 3 + 5 + BIG_DIR_FILES + 6 + 2 * 10, calls.size());
+    }
+
+    @Test
+    public void testStartIsFile() throws IOException {
+        root = root.resolve("root0"); //$NON-NLS-1$
+        assertEquals(1, assertSameCalls(Collections.emptyMap()).size());
+    }
+
+    @Test
+    public void testSkipSubtree() throws IOException {
+        Map<String, FileVisitResult> results = new HashMap<>();
+        results.put("pre:sub", FileVisitResult.SKIP_SUBTREE); //$NON-NLS-1$
+        results.put("pre:big", FileVisitResult.SKIP_SUBTREE); //$NON-NLS-1$
+        results.put("file:c2", FileVisitResult.SKIP_SUBTREE); //$NON-NLS-1$
+        results.put("post:a", FileVisitResult.SKIP_SUBTREE); //$NON-NLS-1$
+        assertSameCalls(results);
+    }
+
+    @Test
+    public void testSkipSiblings() throws IOException {
+        Map<String, FileVisitResult> results = new HashMap<>();
+        results.put("pre:deep", FileVisitResult.SKIP_SIBLINGS); //$NON-NLS-1$
+        results.put("file:c2", FileVisitResult.SKIP_SIBLINGS); //$NON-NLS-1$
+        results.put("post:a", FileVisitResult.SKIP_SIBLINGS); //$NON-NLS-1$
+        // after the first batch of the big directory
+        results.put("file:f1500", FileVisitResult.SKIP_SIBLINGS); //$NON-NLS-1$
+        assertSameCalls(results);
+    }
+
+    @Test
+    public void testTerminate() throws IOException {
+        Map<String, FileVisitResult> results = new HashMap<>();
+        results.put("file:f1200", FileVisitResult.TERMINATE); //$NON-NLS-1$
+        assertSameCalls(results);
+
+        results.clear();
+        results.put("pre:sub", FileVisitResult.TERMINATE); //$NON-NLS-1$
+        assertSameCalls(results);
+    }
+
+    @Test
+    public void testSymlinks() throws IOException {
+        try {
+            Files.createSymbolicLink(root.resolve("linkToDir"), root.resolve("a")); //$NON-NLS-1$ //$NON-NLS-2$
+            Files.createSymbolicLink(root.resolve("c/linkToFile"), root.resolve("root0")); //$NON-NLS-1$ //$NON-NLS-2$
+            Files.createSymbolicLink(root.resolve("b/brokenLink"), root.resolve("missing")); //$NON-NLS-1$ //$NON-NLS-2$
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            assumeTrue("Symbolic links not supported", false); //$NON-NLS-1$
+        }
+        List<String> calls = assertSameCalls(Collections.emptyMap());
+        // links are not followed
+        assertTrue(calls.contains("file linkToDir dir=false link=true file=false size=-1")); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testUnreadableDirectory() throws IOException {
+        Path dir = root.resolve("a/sub"); //$NON-NLS-1$
+        Set<PosixFilePermission> perms;
+        try {
+            perms = Files.getPosixFilePermissions(dir);
+            Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("---------")); //$NON-NLS-1$
+        } catch (UnsupportedOperationException e) {
+            assumeTrue("Posix permissions not supported", false); //$NON-NLS-1$
+            return;
+        }
+        try {
+            // permissions are not checked for root
+            assumeFalse("Directory still readable", Files.isReadable(dir)); //$NON-NLS-1$
+            List<String> calls = assertSameCalls(Collections.emptyMap());
+            // not pre visited
+            assertTrue(calls.contains("failed a/sub java.nio.file.AccessDeniedException")); //$NON-NLS-1$
+            assertTrue(calls.stream().noneMatch(call -> call.startsWith("pre a/sub "))); //$NON-NLS-1$
+
+        } finally {
+            Files.setPosixFilePermissions(dir, perms);
+        }
+    }
+
+}
@@ -0,0 +1,251 @@
+package dpf.sp.gpinf.indexer.process.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Requests;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.RestHighLevelClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import repackaged.org.apache.http.HttpHost;
+
+/**
+ * Sends bulk requests through the shared in-flight window to a local stub of
+ * the ElasticSearch _bulk endpoint, which rejects whole requests or single
+ * documents with 429 (too many requests).
+ */
+public class ElasticSearchIndexTaskTest {
+
+    private static final Pattern ID_PATTERN = Pattern.compile("\"_id\":\"([^\"]+)\""); //$NON-NLS-1$
+
+    private static final long BACKOFF = 50;
+
+    private HttpServer server;
+    private ExecutorService serverPool;
+    private RestHighLevelClient client;
+
+    /**
+     * Number of whole requests to reject with 429 before accepting any.
+     */
+    private final AtomicInteger rejectRequests = new AtomicInteger();
+
+    /**
+     * Times each document must be rejected with 429 before being indexed.
+     */
+    private final Map<String, Integer> rejectDocs = new ConcurrentHashMap<>();
+
+    private final Set<String> badDocs = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> indexedDocs = ConcurrentHashMap.newKeySet();
+
+    private final List<Long> requestTimes = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+
+    private volatile long responseDelay = 0;
+
+    private long bulkRequests, retriedItems, failedItems;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0); //$NON-NLS-1$
+        server.createContext("/", this::handle); //$NON-NLS-1$
+        serverPool = Executors.newCachedThreadPool();
+        server.setExecutor(serverPool);
+        server.start();
+
+        client = new RestHighLevelClient(
+                RestClient.builder(new HttpHost("127.0.0.1", server.getAddress().getPort(), "http"))); //$NON-NLS-1$ //$NON-NLS-2$
+
+        bulkRequests = ElasticSearchIndexTask.bulkRequests.get();
+        retriedItems = ElasticSearchIndexTask.retriedItems.get();
+        failedItems = ElasticSearchIndexTask.failedItems.get();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        ElasticSearchIndexTask.stopSender();
+        client.close();
+        server.stop(0);
+        serverPool.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int now = running.incrementAndGet();
+        maxRunning.accumulateAndGet(now, Math::max);
+        try {
+            requestTimes.add(System.currentTimeMillis());
+            String body;
+            try (InputStream is = exchange.getRequestBody()) {
+                body = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            if (responseDelay > 0) {
+                Thread.sleep(responseDelay);
+            }
+            if (rejectRequests.getAndDecrement() > 0) {
+                respond(exchange, 429, "{\"error\":{\"type\":\"es_rejected_execution_exception\"," //$NON-NLS-1$
+                        + "\"reason\":\"rejected\"},\"status\":429}"); //$NON-NLS-1$
+                return;
+            }
+            StringBuilder items = new StringBuilder();
+            boolean errors = false;
+            String[] lines = body.split("\n"); //$NON-NLS-1$
+            // action and source lines
+            for (int i = 0; i < lines.length; i += 2) {
+                Matcher matcher = ID_PATTERN.matcher(lines[i]);
+                if (!matcher.find()) {
+                    throw new IOException("Action without id: " + lines[i]); //$NON-NLS-1$
+                }
+                String id = matcher.group(1);
+                if (items.length() > 0) {
+                    items.append(',');
+                }
+                int rejections = rejectDocs.getOrDefault(id, 0);
+                if (rejections > 0) {
+                    rejectDocs.put(id, rejections - 1);
+                    errors = true;
+                    items.append(failure(id, 429, "es_rejected_execution_exception")); //$NON-NLS-1$
+                } else if (badDocs.contains(id)) {
+                    errors = true;
+                    items.append(failure(id, 400, "mapper_parsing_exception")); //$NON-NLS-1$
+                } else {
+                    indexedDocs.add(id);
+                    items.append("{\"create\":{\"_index\":\"test\",\"_type\":\"_doc\",\"_id\":\"" + id //$NON-NLS-1$
+                            + "\",\"_version\":1,\"result\":\"created\",\"_shards\":{\"total\":1," //$NON-NLS-1$
+                            + "\"successful\":1,\"failed\":0},\"_seq_no\":0,\"_primary_term\":1,\"status\":201}}"); //$NON-NLS-1$
+                }
+            }
+            respond(exchange, 200, "{\"took\":1,\"errors\":" + errors + ",\"items\":[" + items + "]}"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+        } catch (InterruptedException e) {
+            respond(exchange, 500, "{}"); //$NON-NLS-1$
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    private static String failure(String id, int status, String type) {
+        return "{\"create\":{\"_index\":\"test\",\"_type\":\"_doc\",\"_id\":\"" + id + "\",\"status\":" + status //$NON-NLS-1$ //$NON-NLS-2$
+                + ",\"error\":{\"type\":\"" + type + "\",\"reason\":\"stub\"}}}"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json"); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static void submit(String... ids) throws InterruptedException {
+        BulkRequest bulkRequest = new BulkRequest();
+        HashMap<String, String> idToPath = new HashMap<>();
+        for (String id : ids) {
+            IndexRequest request = Requests.indexRequest("test").id(id) //$NON-NLS-1$
+                    .source(Collections.singletonMap("name", id)).opType(OpType.CREATE); //$NON-NLS-1$
+            bulkRequest.add(request);
+            idToPath.put(id, "path/" + id); //$NON-NLS-1$
+        }
+        ElasticSearchIndexTask.submitBulkRequest(bulkRequest, idToPath);
+    }
+
+    @Test
+    public void testPartialBulkFailure() throws Exception {
+        ElasticSearchIndexTask.startSender(client, 4, 5, BACKOFF, 2);
+        rejectDocs.put("doc2", 1); //$NON-NLS-1$
+        rejectDocs.put("doc4", 2); //$NON-NLS-1$
+        badDocs.add("doc5"); //$NON-NLS-1$
+
+        submit("doc1", "doc2", "doc3", "doc4", "doc5"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+        ElasticSearchIndexTask.waitInFlightRequests();
+
+        assertEquals(Set.of("doc1", "doc2", "doc3", "doc4"), indexedDocs); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        // doc2 and doc4 resent, then doc4 again
+        assertEquals(3, requestTimes.size());
+        assertEquals(3, ElasticSearchIndexTask.retriedItems.get() - retriedItems);
+        assertEquals(1, ElasticSearchIndexTask.failedItems.get() - failedItems);
+        assertEquals(1, ElasticSearchIndexTask.bulkRequests.get() - bulkRequests);
+
+        // exponential backoff
+        assertTrue(requestTimes.get(1) - requestTimes.get(0) >= BACKOFF);
+        assertTrue(requestTimes.get(2) - requestTimes.get(1) >= 2 * BACKOFF);
+    }
+
+    @Test
+    public void testWholeRequestRejected() throws Exception {
+        ElasticSearchIndexTask.startSender(client, 4, 5, BACKOFF, 2);
+        rejectRequests.set(2);
+
+        submit("doc1", "doc2"); //$NON-NLS-1$ //$NON-NLS-2$
+        ElasticSearchIndexTask.waitInFlightRequests();
+
+        assertEquals(Set.of("doc1", "doc2"), indexedDocs); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(3, requestTimes.size());
+        assertEquals(4, ElasticSearchIndexTask.retriedItems.get() - retriedItems);
+        assertEquals(0, ElasticSearchIndexTask.failedItems.get() - failedItems);
+        assertTrue(requestTimes.get(2) - requestTimes.get(1) >= 2 * BACKOFF);
+    }
+
+    @Test
+    public void testRetriesExhausted() throws Exception {
+        ElasticSearchIndexTask.startSender(client, 4, 2, BACKOFF, 2);
+        rejectDocs.put("doc1", 10); //$NON-NLS-1$
+
+        submit("doc1", "doc2"); //$NON-NLS-1$ //$NON-NLS-2$
+        ElasticSearchIndexTask.waitInFlightRequests();
+
+        assertEquals(Set.of("doc2"), indexedDocs); //$NON-NLS-1$
+        // first attempt and 2 retries
+        assertEquals(3, requestTimes.size());
+        assertEquals(2, ElasticSearchIndexTask.retriedItems.get() - retriedItems);
+        assertEquals(1, ElasticSearchIndexTask.failedItems.get() - failedItems);
+    }
+
+    @Test
+    public void testInFlightWindow() throws Exception {
+        ElasticSearchIndexTask.startSender(client, 2, 5, BACKOFF, 4);
+        responseDelay = 100;
+        // the slot is held while waiting for retries
+        rejectDocs.put("doc0", 1); //$NON-NLS-1$
+
+        for (int i = 0; i < 8; i++) {
+            submit("doc" + i); //$NON-NLS-1$
+        }
+        ElasticSearchIndexTask.waitInFlightRequests();
+
+        assertEquals(8, indexedDocs.size());
+        assertEquals(9, requestTimes.size());
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(8, ElasticSearchIndexTask.bulkRequests.get() - bulkRequests);
+    }
+
+}
@@ -0,0 +1,342 @@
+package dpf.sp.gpinf.indexer.process.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.tika.mime.MediaType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import dpf.sp.gpinf.indexer.util.FileInputStreamFactory;
+import gpinf.dev.data.CaseData;
+import gpinf.dev.data.Item;
+import io.minio.MinioClient;
+import iped3.io.ISeekableInputStreamFactory;
+
+/**
+ * Uploads items to a local stub of the S3 API, checking items are pointed to
+ * the bucket only after their object was completely uploaded.
+ */
+public class MinIOTaskTest {
+
+    private static final String BUCKET = "test"; //$NON-NLS-1$
+
+    // larger than a part, so it is uploaded in several requests
+    private static final int SIZE = 8 << 20;
+
+    private static final String NS = " xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\""; //$NON-NLS-1$
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+    private ExecutorService serverPool;
+    private ExecutorService workers;
+    private MinIOTask task;
+    private ISeekableInputStreamFactory localFactory;
+
+    /**
+     * Complete objects in the stub bucket.
+     */
+    private final Map<String, Integer> objects = new ConcurrentHashMap<>();
+
+    private final Map<String, ByteArrayOutputStream> multipartUploads = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicInteger> uploadsPerObject = new ConcurrentHashMap<>();
+
+    private final Set<String> failingObjects = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger uploadIds = new AtomicInteger();
+
+    /**
+     * Counted down when the content of an object, not a folder marker, starts
+     * being uploaded.
+     */
+    private final CountDownLatch uploadStarted = new CountDownLatch(1);
+
+    private volatile CountDownLatch uploadGate = new CountDownLatch(0);
+
+    private final CountDownLatch listingStarted = new CountDownLatch(1);
+
+    private volatile CountDownLatch listingGate = new CountDownLatch(0);
+
+    private volatile boolean failListing = false;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0); //$NON-NLS-1$
+        server.createContext("/", this::handle); //$NON-NLS-1$
+        serverPool = Executors.newCachedThreadPool();
+        server.setExecutor(serverPool);
+        server.start();
+        workers = Executors.newCachedThreadPool();
+
+        String endpoint = "http://127.0.0.1:" + server.getAddress().getPort(); //$NON-NLS-1$
+        MinioClient client = MinioClient.builder().endpoint(endpoint).credentials("access", "secret") //$NON-NLS-1$ //$NON-NLS-2$
+                .region("us-east-1").build(); //$NON-NLS-1$
+        task = new MinIOTask();
+        task.caseData = new CaseData(1000);
+        task.start(client, URI.create(endpoint), BUCKET);
+
+        try (RandomAccessFile raf = new RandomAccessFile(new File(folder.getRoot(), "file.bin"), "rw")) { //$NON-NLS-1$ //$NON-NLS-2$
+            raf.setLength(SIZE);
+        }
+        localFactory = new FileInputStreamFactory(folder.getRoot().toPath());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        uploadGate.countDown();
+        listingGate.countDown();
+        task.finish();
+        workers.shutdownNow();
+        server.stop(0);
+        serverPool.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query == null) {
+                query = ""; //$NON-NLS-1$
+            }
+            String path = exchange.getRequestURI().getPath().substring(1);
+            String key = path.startsWith(BUCKET + "/") ? path.substring(BUCKET.length() + 1) : ""; //$NON-NLS-1$ //$NON-NLS-2$
+            byte[] body;
+            try (InputStream is = exchange.getRequestBody()) {
+                body = is.readAllBytes();
+            }
+
+            if (method.equals("GET") && query.contains("location")) { //$NON-NLS-1$ //$NON-NLS-2$
+                respond(exchange, 200, "<LocationConstraint" + NS + ">us-east-1</LocationConstraint>"); //$NON-NLS-1$ //$NON-NLS-2$
+
+            } else if (method.equals("GET") && key.isEmpty()) { //$NON-NLS-1$
+                listingStarted.countDown();
+                listingGate.await();
+                if (failListing) {
+                    respond(exchange, 500, "<Error><Code>InternalError</Code><Message>stub</Message><Resource>/" //$NON-NLS-1$
+                            + path + "</Resource><RequestId>1</RequestId><HostId>1</HostId></Error>"); //$NON-NLS-1$
+                    return;
+                }
+                respond(exchange, 200, "<ListBucketResult" + NS + "><Name>" + BUCKET //$NON-NLS-1$ //$NON-NLS-2$
+                        + "</Name><Prefix></Prefix><KeyCount>0</KeyCount><MaxKeys>1000</MaxKeys>" //$NON-NLS-1$
+                        + "<IsTruncated>false</IsTruncated></ListBucketResult>"); //$NON-NLS-1$
+
+            } else if (method.equals("POST") && query.startsWith("uploads")) { //$NON-NLS-1$ //$NON-NLS-2$
+                String uploadId = "upload" + uploadIds.incrementAndGet(); //$NON-NLS-1$
+                multipartUploads.put(uploadId, new ByteArrayOutputStream());
+                respond(exchange, 200, "<InitiateMultipartUploadResult" + NS + "><Bucket>" + BUCKET //$NON-NLS-1$ //$NON-NLS-2$
+                        + "</Bucket><Key>" + key + "</Key><UploadId>" + uploadId //$NON-NLS-1$ //$NON-NLS-2$
+                        + "</UploadId></InitiateMultipartUploadResult>"); //$NON-NLS-1$
+
+            } else if (method.equals("PUT")) { //$NON-NLS-1$
+                if (!key.endsWith("/")) { //$NON-NLS-1$
+                    uploadStarted.countDown();
+                    uploadGate.await();
+                }
+                if (failingObjects.contains(key)) {
+                    respond(exchange, 500, "<Error><Code>InternalError</Code><Message>stub</Message><Resource>/" //$NON-NLS-1$
+                            + path + "</Resource><RequestId>1</RequestId><HostId>1</HostId></Error>"); //$NON-NLS-1$
+                    return;
+                }
+                String uploadId = getParam(query, "uploadId"); //$NON-NLS-1$
+                if (uploadId != null) {
+                    ByteArrayOutputStream upload = multipartUploads.get(uploadId);
+                    synchronized (upload) {
+                        upload.write(body);
+                    }
+                } else {
+                    objects.put(key, body.length);
+                    uploadsPerObject.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                }
+                exchange.getResponseHeaders().set("ETag", "\"etag\""); //$NON-NLS-1$ //$NON-NLS-2$
+                exchange.sendResponseHeaders(200, -1);
+
+            } else if (method.equals("POST")) { //$NON-NLS-1$
+                ByteArrayOutputStream upload = multipartUploads.remove(getParam(query, "uploadId")); //$NON-NLS-1$
+                objects.put(key, upload.size());
+                uploadsPerObject.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet();
+                respond(exchange, 200, "<CompleteMultipartUploadResult" + NS + "><Location>/" + path //$NON-NLS-1$ //$NON-NLS-2$
+                        + "</Location><Bucket>" + BUCKET + "</Bucket><Key>" + key //$NON-NLS-1$ //$NON-NLS-2$
+                        + "</Key><ETag>\"etag\"</ETag></CompleteMultipartUploadResult>"); //$NON-NLS-1$
+
+            } else if (method.equals("DELETE")) { //$NON-NLS-1$
+                multipartUploads.remove(getParam(query, "uploadId")); //$NON-NLS-1$
+                exchange.sendResponseHeaders(204, -1);
+
+            } else {
+                exchange.sendResponseHeaders(404, -1);
+            }
+
+        } catch (InterruptedException e) {
+            exchange.sendResponseHeaders(500, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String getParam(String query, String name) {
+        for (String param : query.split("&")) { //$NON-NLS-1$
+            String[] pair = param.split("=", 2); //$NON-NLS-1$
+            if (pair[0].equals(name)) {
+                return pair.length > 1 ? pair[1] : ""; //$NON-NLS-1$
+            }
+        }
+        return null;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] bytes = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8); //$NON-NLS-1$
+        exchange.getResponseHeaders().set("Content-Type", "application/xml"); //$NON-NLS-1$ //$NON-NLS-2$
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private Item createItem(String hash) {
+        Item item = new Item();
+        item.setName("file.bin"); //$NON-NLS-1$
+        item.setPath("evidence/file.bin"); //$NON-NLS-1$
+        item.setHash(hash);
+        item.setLength((long) SIZE);
+        item.setMediaType(MediaType.OCTET_STREAM);
+        item.setInputStreamFactory(localFactory);
+        item.setIdInDataSource("file.bin"); //$NON-NLS-1$
+        return item;
+    }
+
+    private Future<?> process(Item item) {
+        return workers.submit(() -> {
+            task.process(item);
+            return null;
+        });
+    }
+
+    private static String getObjectPath(String hash) {
+        return hash.charAt(0) + "/" + hash.charAt(1) + "/" + hash.charAt(2) + "/" + hash.charAt(3) + "/" + hash; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+
+    private void assertLocal(Item item) {
+        assertSame(localFactory, item.getInputStreamFactory());
+        assertEquals("file.bin", item.getIdInDataSource()); //$NON-NLS-1$
+    }
+
+    private void assertInBucket(Item item, String hash) {
+        assertTrue(item.getInputStreamFactory() instanceof MinIOTask.MinIOInputInputStreamFactory);
+        assertEquals(BUCKET + "/" + getObjectPath(hash), item.getIdInDataSource()); //$NON-NLS-1$
+    }
+
+    @Test
+    public void testPointedToBucketAfterUpload() throws Exception {
+        String hash = "0123456789ABCDEF0123456789ABCDEF"; //$NON-NLS-1$
+        uploadGate = new CountDownLatch(1);
+        Item item = createItem(hash);
+        Future<?> future = process(item);
+
+        assertTrue(uploadStarted.await(10, TimeUnit.SECONDS));
+        assertLocal(item);
+
+        uploadGate.countDown();
+        future.get(30, TimeUnit.SECONDS);
+        assertInBucket(item, hash);
+        assertEquals(Integer.valueOf(SIZE), objects.get(getObjectPath(hash)));
+    }
+
+    @Test
+    public void testUploadFailure() throws Exception {
+        String hash = "1123456789ABCDEF0123456789ABCDEF"; //$NON-NLS-1$
+        failingObjects.add(getObjectPath(hash));
+        Item item = createItem(hash);
+        process(item).get(30, TimeUnit.SECONDS);
+
+        assertLocal(item);
+        assertFalse(objects.containsKey(getObjectPath(hash)));
+
+        // the failed object is not taken as existing by the next item
+        failingObjects.clear();
+        Item other = createItem(hash);
+        process(other).get(30, TimeUnit.SECONDS);
+        assertInBucket(other, hash);
+        assertEquals(Integer.valueOf(SIZE), objects.get(getObjectPath(hash)));
+    }
+
+    @Test
+    public void testSameContentUploadedOnce() throws Exception {
+        String hash = "2123456789ABCDEF0123456789ABCDEF"; //$NON-NLS-1$
+        uploadGate = new CountDownLatch(1);
+        Item item1 = createItem(hash);
+        Item item2 = createItem(hash);
+        Future<?> future1 = process(item1);
+        assertTrue(uploadStarted.await(10, TimeUnit.SECONDS));
+        Future<?> future2 = process(item2);
+
+        // the second item does not take the object as existing before it is uploaded
+        assertLocal(item1);
+        assertLocal(item2);
+
+        uploadGate.countDown();
+        future1.get(30, TimeUnit.SECONDS);
+        future2.get(30, TimeUnit.SECONDS);
+        assertInBucket(item1, hash);
+        assertInBucket(item2, hash);
+        assertEquals(1, uploadsPerObject.get(getObjectPath(hash)).get());
+    }
+
+    @Test
+    public void testListingFailure() throws Exception {
+        String hash1 = "3123456789ABCDEF0123456789ABCDEF"; //$NON-NLS-1$
+        String hash2 = "3123456789ABCDEF0123456789ABCDEE"; //$NON-NLS-1$
+        failListing = true;
+        listingGate = new CountDownLatch(1);
+        Item item1 = createItem(hash1);
+        Item item2 = createItem(hash2);
+        Future<?> future1 = process(item1);
+        assertTrue(listingStarted.await(10, TimeUnit.SECONDS));
+        Future<?> future2 = process(item2);
+
+        // items waiting the failed listing do not take their objects as missing
+        listingGate.countDown();
+        future1.get(30, TimeUnit.SECONDS);
+        future2.get(30, TimeUnit.SECONDS);
+        assertLocal(item1);
+        assertLocal(item2);
+        assertTrue(uploadsPerObject.isEmpty());
+
+        // the prefix is listed again by the next item
+        failListing = false;
+        Item item3 = createItem(hash2);
+        process(item3).get(30, TimeUnit.SECONDS);
+        assertInBucket(item3, hash2);
+        assertEquals(1, uploadsPerObject.get(getObjectPath(hash2)).get());
+    }
+
+}
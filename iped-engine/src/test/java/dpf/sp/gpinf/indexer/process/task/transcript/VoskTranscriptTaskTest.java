@@ -0,0 +1,117 @@
+package dpf.sp.gpinf.indexer.process.task.transcript;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import dpf.sp.gpinf.indexer.process.task.transcript.VoskTranscriptTask.SegmentTranscriber;
+import dpf.sp.gpinf.indexer.process.task.transcript.VoskTranscriptTask.TextScoreWords;
+import gpinf.dev.data.Item;
+
+/**
+ * Checks that the segments of long audios always return their permits, even if
+ * the transcription fails before they are transcribed.
+ */
+public class VoskTranscriptTaskTest {
+
+    /**
+     * Silence is split in segments with the minimum length, 15s.
+     */
+    private static final int SEGMENT_BYTES = 15 * AbstractTranscriptTask.WAV_BYTES_PER_SEC;
+
+    private static final int PERMITS = 2;
+
+    private VoskTranscriptTask task;
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        // one transcription thread, so following segments wait in the queue
+        VoskTranscriptTask.startSegmentPool(1);
+        assertEquals(PERMITS, VoskTranscriptTask.pendingSegments.availablePermits());
+
+        Item item = new Item();
+        item.setName("audio.wav"); //$NON-NLS-1$
+        item.setPath("evidence/audio.wav"); //$NON-NLS-1$
+        task = new VoskTranscriptTask();
+        task.evidence = item;
+    }
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        VoskTranscriptTask.segmentPool.shutdownNow();
+    }
+
+    private static InputStream silence(int segments) {
+        return new ByteArrayInputStream(new byte[segments * SEGMENT_BYTES]);
+    }
+
+    private TextScoreWords awaitGate() throws InterruptedException {
+        gate.await();
+        return new TextScoreWords();
+    }
+
+    private void assertAllPermitsReleased() throws Exception {
+        gate.countDown();
+        // waits running and queued segments
+        VoskTranscriptTask.segmentPool.submit(() -> {
+        }).get();
+        assertEquals(PERMITS, VoskTranscriptTask.pendingSegments.availablePermits());
+    }
+
+    @Test
+    public void testSegments() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        SegmentTranscriber transcriber = segment -> {
+            assertEquals(SEGMENT_BYTES, segment.length);
+            calls.incrementAndGet();
+            return new TextScoreWords();
+        };
+        List<TextScoreWords> results = task.transcribeSegments(silence(5), transcriber);
+        assertEquals(5, results.size());
+        assertEquals(5, calls.get());
+        assertAllPermitsReleased();
+    }
+
+    @Test
+    public void testSegmentFailure() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        SegmentTranscriber transcriber = segment -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IOException("Transcription failed"); //$NON-NLS-1$
+            }
+            return awaitGate();
+        };
+        // first segment fails while the second is running and the third is queued
+        assertNull(task.transcribeSegments(silence(3), transcriber));
+        assertAllPermitsReleased();
+    }
+
+    @Test
+    public void testReadFailure() throws Exception {
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Read failed"); //$NON-NLS-1$
+            }
+        };
+        InputStream pcm = new SequenceInputStream(silence(2), failing);
+        // first segment is running and the second is queued when reading fails
+        assertNull(task.transcribeSegments(pcm, segment -> awaitGate()));
+        assertAllPermitsReleased();
+    }
+
+}
@@ -0,0 +1,134 @@
+package gpinf.dev.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import iped3.IItem;
+import iped3.io.IItemBase;
+import iped3.search.IItemSearcher;
+
+/**
+ * Checks when {@link DependencyScheduler} releases held items and closes the
+ * searchers opened for them.
+ */
+public class DependencySchedulerTest {
+
+    private static class TestSearcher implements IItemSearcher {
+
+        private boolean closed = false;
+
+        @Override
+        public List<IItemBase> search(String luceneQuery) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Iterable<IItemBase> searchIterable(String luceneQuery) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String escapeQuery(String string) {
+            return string;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private final List<TestSearcher> searchers = new ArrayList<>();
+
+    private DependencyScheduler scheduler;
+
+    private DataSource dataSource;
+
+    @Before
+    public void setUp() {
+        scheduler = new DependencyScheduler(() -> {
+            TestSearcher searcher = new TestSearcher();
+            searchers.add(searcher);
+            return searcher;
+        });
+        dataSource = new DataSource(new File("image.dd")); //$NON-NLS-1$
+    }
+
+    private IItem createItem(String name) {
+        Item item = new Item();
+        item.setName(name);
+        item.setDataSource(dataSource);
+        return item;
+    }
+
+    @Test
+    public void testReleaseAfterDependencies() {
+        IItem db = createItem("db.sqlite"); //$NON-NLS-1$
+        IItem wal = createItem("db.sqlite-wal"); //$NON-NLS-1$
+        scheduler.inc(wal, 0);
+        assertTrue(scheduler.hold(db, 1).isEmpty());
+        assertTrue(scheduler.setAllEnumerated().isEmpty());
+        assertEquals(Arrays.asList(db), scheduler.dec(wal, 0));
+        assertEquals(Integer.valueOf(1), scheduler.getReleasedPriority(db));
+    }
+
+    @Test
+    public void testEmbeddedReaderDelaysRelease() {
+        IItem image = createItem("disk.E01"); //$NON-NLS-1$
+        IItem db = createItem("db.sqlite"); //$NON-NLS-1$
+        IItem wal = createItem("db.sqlite-wal"); //$NON-NLS-1$
+
+        scheduler.incEmbeddedReaders(image);
+        // database found before its wal sibling by the embedded image reader
+        assertTrue(scheduler.hold(db, 1).isEmpty());
+        assertTrue(scheduler.setAllEnumerated().isEmpty());
+        scheduler.inc(wal, 0);
+        assertTrue(scheduler.decEmbeddedReaders(image).isEmpty());
+        assertEquals(Arrays.asList(db), scheduler.dec(wal, 0));
+    }
+
+    @Test
+    public void testRetiredSearcherClosedWhenUnused() {
+        IItem first = createItem("first.sqlite"); //$NON-NLS-1$
+        IItem second = createItem("second.sqlite"); //$NON-NLS-1$
+        IItem third = createItem("third.sqlite"); //$NON-NLS-1$
+
+        scheduler.hold(first, 1);
+        assertEquals(Arrays.asList(first), scheduler.setAllEnumerated());
+        IItemSearcher firstSearcher = scheduler.getSearcher(first, scheduler.getGeneration(first));
+        assertSame(firstSearcher, scheduler.getSearcher(first, scheduler.getGeneration(first)));
+
+        assertEquals(Arrays.asList(second), scheduler.hold(second, 1));
+        IItemSearcher secondSearcher = scheduler.getSearcher(second, scheduler.getGeneration(second));
+        assertNotSame(firstSearcher, secondSearcher);
+        // still used by the first item
+        assertFalse(searchers.get(0).closed);
+
+        scheduler.dec(first, 0);
+        assertTrue(searchers.get(0).closed);
+
+        scheduler.dec(second, 0);
+        assertFalse(searchers.get(1).closed);
+        // not used anymore, closed as soon as a new generation is searched
+        assertEquals(Arrays.asList(third), scheduler.hold(third, 1));
+        scheduler.getSearcher(third, scheduler.getGeneration(third));
+        assertTrue(searchers.get(1).closed);
+
+        scheduler.closeSearchers();
+        assertTrue(searchers.get(2).closed);
+        assertEquals(3, searchers.size());
+    }
+
+}
@@ -0,0 +1,158 @@
+package gpinf.dev.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that item properties spilled to disk by {@link QueueSpillStore} are
+ * restored unchanged into the same item.
+ */
+public class QueueSpillStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private QueueSpillStore store;
+
+    @Before
+    public void setUp() {
+        store = new QueueSpillStore(folder.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private static Item createItem(int n) {
+        Item item = new Item();
+        item.setName("file" + n + ".txt");
+        item.setPath("evidence/dir/file" + n + ".txt");
+        item.addParentIds(Arrays.asList(1, 20, 300000 + n));
+        item.addCategory("Text Documents");
+        item.addCategory("Other");
+        item.setLabels(new ArrayList<>(Arrays.asList("label1", "label" + n)));
+
+        item.setExtraAttribute("string", "value" + n);
+        item.setExtraAttribute("integer", -n);
+        item.setExtraAttribute("long", Long.MAX_VALUE - n);
+        item.setExtraAttribute("double", 0.5 + n);
+        item.setExtraAttribute("float", 1.5f);
+        item.setExtraAttribute("boolean", Boolean.TRUE);
+        item.setExtraAttribute("date", new Date(1600000000000L + n));
+        item.setExtraAttribute("bytes", new byte[] { 0, 1, (byte) 255 });
+        item.setExtraAttribute("list", new ArrayList<>(Arrays.asList("a", 2, null)));
+
+        item.getMetadata().add("meta", "value1");
+        item.getMetadata().add("meta", "value2 " + n);
+        item.getMetadata().set("other:meta", "áção");
+
+        item.setThumb(new byte[] { 1, 2, 3, (byte) n });
+        item.setImageSimilarityFeatures(new byte[] { -1, -2, (byte) n });
+        return item;
+    }
+
+    private static Map<String, List<String>> getMetadata(Item item) {
+        Map<String, List<String>> map = new HashMap<>();
+        for (String name : item.getMetadata().names()) {
+            map.put(name, Arrays.asList(item.getMetadata().getValues(name)));
+        }
+        return map;
+    }
+
+    private static void assertSameProperties(Item expected, Item actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getPath(), actual.getPath());
+        assertEquals(expected.getParentIds(), actual.getParentIds());
+        assertEquals(expected.getCategorySet(), actual.getCategorySet());
+        assertEquals(expected.getLabels(), actual.getLabels());
+
+        Map<String, Object> expectedAttrs = expected.getExtraAttributeMap();
+        Map<String, Object> actualAttrs = actual.getExtraAttributeMap();
+        assertEquals(expectedAttrs.keySet(), actualAttrs.keySet());
+        for (String key : expectedAttrs.keySet()) {
+            Object value = expectedAttrs.get(key);
+            if (value instanceof byte[]) {
+                assertArrayEquals(key, (byte[]) value, (byte[]) actualAttrs.get(key));
+            } else {
+                assertEquals(key, value, actualAttrs.get(key));
+                assertEquals(key, value.getClass(), actualAttrs.get(key).getClass());
+            }
+        }
+
+        assertEquals(getMetadata(expected), getMetadata(actual));
+        assertArrayEquals(expected.getThumb(), actual.getThumb());
+        assertArrayEquals(expected.getImageSimilarityFeatures(), actual.getImageSimilarityFeatures());
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Item> items = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Item item = createItem(i);
+            assertTrue(store.spill(item));
+            assertNotNull(item.getSpillEntry());
+            assertNull(item.getPath());
+            assertNull(item.getThumb());
+            assertNull(item.getImageSimilarityFeatures());
+            items.add(item);
+        }
+        assertEquals(100, store.getSpilledItems());
+
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            store.rehydrate(item);
+            assertNull(item.getSpillEntry());
+            assertSameProperties(createItem(i), item);
+        }
+        assertEquals(100, store.getRehydratedItems());
+    }
+
+    @Test
+    public void testRehydrateTwice() throws Exception {
+        Item item = createItem(1);
+        assertTrue(store.spill(item));
+        store.rehydrate(item);
+        store.rehydrate(item);
+        assertSameProperties(createItem(1), item);
+        assertEquals(1, store.getRehydratedItems());
+    }
+
+    @Test
+    public void testSpillTwice() throws Exception {
+        Item item = createItem(1);
+        assertTrue(store.spill(item));
+        assertFalse(store.spill(item));
+        store.rehydrate(item);
+        assertSameProperties(createItem(1), item);
+    }
+
+    @Test
+    public void testNotSpillable() throws Exception {
+        Item item = createItem(1);
+        item.setExtraAttribute("unknown", new HashSet<>(Arrays.asList("a")));
+        assertFalse(store.spill(item));
+        assertNull(item.getSpillEntry());
+        assertEquals("evidence/dir/file1.txt", item.getPath());
+        assertEquals(1, store.getNotSpillableItems());
+    }
+
+}
@@ -1193,6 +1193,14 @@ private List<Future<?>> searchMediaFilesForMessagesInBatches(List<Message> messa
         return futures;
     }
 
+    private static List<IItemBase> getItems(Map<String, List<IItemBase>> itemsByKey) {
+        List<IItemBase> items = new ArrayList<>();
+        for (List<IItemBase> list : itemsByKey.values()) {
+            items.addAll(list);
+        }
+        return items;
+    }
+
     private void setItemToMessage(IItemBase item, List<Message> messageList, String query, boolean isHashQuery, boolean saveItemRef) {
         if (messageList != null && saveItemRef) {
             for (Message m : messageList) {
@@ -1243,14 +1251,8 @@ private List<Future<?>> searchMediaFilesForMessages(List<Message> messages, IIte
         }
 
         if (!hashesToSearchFor.isEmpty()) {
-            StringBuilder allHashesQueryBuilder = new StringBuilder();
-            allHashesQueryBuilder.append("sha-256:("); //$NON-NLS-1$
-            for (String h : hashesToSearchFor.keySet()) {
-                allHashesQueryBuilder.append(h).append(" "); //$NON-NLS-1$
-            }
-            allHashesQueryBuilder.append(")"); //$NON-NLS-1$
-            String allHashesQuery = allHashesQueryBuilder.toString();
-            List<IItemBase> result = dpf.sp.gpinf.indexer.parsers.util.Util.getItems(allHashesQuery, searcher);
+            List<IItemBase> result = getItems(
+                    searcher.searchByHashes("sha-256", new ArrayList<>(hashesToSearchFor.keySet()))); //$NON-NLS-1$
             for (IItemBase item : result) {
                 String hash = (String) item.getExtraAttribute("sha-256"); //$NON-NLS-1$
                 List<Message> messageList = hashesToSearchFor.remove(hash);
@@ -1262,20 +1264,11 @@ private List<Future<?>> searchMediaFilesForMessages(List<Message> messages, IIte
 
         // for media messages without hash, try to find by filename and size
         if (!fileNameAndSizeToSearchFor.isEmpty()) {
-            StringBuilder fileNameAndSizeQueryBuilder = new StringBuilder();
+            Set<String> fileNames = new HashSet<>();
             for (Pair<String, Long> key : fileNameAndSizeToSearchFor.keySet()) {
-                fileNameAndSizeQueryBuilder.append("("); //$NON-NLS-1$
-                fileNameAndSizeQueryBuilder.append(BasicProps.NAME).append(":\""); //$NON-NLS-1$
-                fileNameAndSizeQueryBuilder.append(searcher.escapeQuery(key.getLeft()));
-                fileNameAndSizeQueryBuilder.append("\" AND "); //$NON-NLS-1$
-                fileNameAndSizeQueryBuilder.append(BasicProps.LENGTH).append(":"); //$NON-NLS-1$
-                fileNameAndSizeQueryBuilder.append(key.getRight().toString());
-                fileNameAndSizeQueryBuilder.append(") "); //$NON-NLS-1$
-
+                fileNames.add(key.getLeft());
             }
-
-            String fileNameAndSizeQuery = fileNameAndSizeQueryBuilder.toString();
-            List<IItemBase> result = dpf.sp.gpinf.indexer.parsers.util.Util.getItems(fileNameAndSizeQuery, searcher);
+            List<IItemBase> result = getItems(searcher.searchByNames(fileNames));
             for (IItemBase item : result) {
                 if (item.getName() != null && !item.getName().isEmpty() && item.getLength() != null
                         && item.getLength() > 0) {
@@ -1320,16 +1313,7 @@ private List<Future<?>> searchMediaFilesForMessages(List<Message> messages, IIte
                 }
 
                 if (!fallBackFileNamesToSearchFor.isEmpty()) {
-                    StringBuilder fallBackQueryBuilder = new StringBuilder();
-                    fallBackQueryBuilder.append(BasicProps.NAME).append(":("); //$NON-NLS-1$
-                    for (String fileName : fallBackFileNamesToSearchFor.keySet()) {
-                        fileName = searcher.escapeQuery(fileName);
-                        fallBackQueryBuilder.append("\"").append(fileName).append("\" "); //$NON-NLS-1$ //$NON-NLS-2$
-                    }
-                    fallBackQueryBuilder.append(")"); //$NON-NLS-1$
-
-                    String fallBackQuery = fallBackQueryBuilder.toString();
-                    List<IItemBase> result = dpf.sp.gpinf.indexer.parsers.util.Util.getItems(fallBackQuery, searcher);
+                    List<IItemBase> result = getItems(searcher.searchByNames(fallBackFileNamesToSearchFor.keySet()));
                     for (IItemBase item : result) {
                         if (item.getName() != null && item.getLength() != null && item.getLength() > 0) {
                             String fileName = item.getName();
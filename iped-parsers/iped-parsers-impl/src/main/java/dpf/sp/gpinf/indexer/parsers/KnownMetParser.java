@@ -242,10 +242,10 @@ public void parse(InputStream stream, ContentHandler handler, Metadata metadata,
     }
 
     public static IItemBase searchItemInCase(IItemSearcher searcher, String hashAlgo, String hash) {
-        if (searcher == null) {
+        if (searcher == null || hash == null) {
             return null;
         }
-        List<IItemBase> items = searcher.search(hashAlgo + ":" + hash); //$NON-NLS-1$
+        List<IItemBase> items = searcher.searchByHashes(hashAlgo, Collections.singleton(hash)).get(hash);
         if (items == null || items.isEmpty()) {
             return null;
         }
@@ -41,7 +41,6 @@
 import dpf.sp.gpinf.indexer.util.IOUtil;
 import iped3.io.IItemBase;
 import iped3.search.IItemSearcher;
-import iped3.util.BasicProps;
 
 /**
  * This is the implementation of the db parser for SQLite.
@@ -115,8 +114,7 @@ private File exportWalLog(File dbFile, ParseContext context) {
             IItemBase dbItem = context.get(IItemBase.class);
             if (dbItem != null) {
                 String dbPath = dbItem.getPath();
-                String walQuery = BasicProps.PATH + ":\"" + searcher.escapeQuery(dbPath + "-wal") + "\"";
-                List<IItemBase> items = searcher.search(walQuery);
+                List<IItemBase> items = searcher.searchByPath(dbPath + "-wal");
                 if (items.size() > 0) {
                     IItemBase wal = items.get(0);
                     File walTemp = new File(dbFile.getAbsolutePath() + "-wal");
@@ -29,6 +29,9 @@
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.tika.config.Field;
 import org.apache.tika.exception.TikaException;
@@ -81,6 +84,18 @@ public class ForkParser2 extends AbstractParser {
 
     private final Queue<ForkClient2> pool = new LinkedList<>();
 
+    // number of clients being started in background to refill the pool
+    private int startingSpares = 0;
+
+    private ExecutorService spareStarter;
+
+    private final AtomicLong clientsStarted = new AtomicLong();
+    private final AtomicLong clientsRestarted = new AtomicLong();
+    private final AtomicLong clientsRecycled = new AtomicLong();
+    private final AtomicLong parses = new AtomicLong();
+    private final AtomicLong parseTime = new AtomicLong();
+    private final AtomicLong acquireWaitTime = new AtomicLong();
+
     @Field
     private long serverPulseMillis = 1000;
 
@@ -128,6 +143,7 @@ public static ForkParser2 getForkParser() {
                     instance.setServerParseTimeoutMillis(3600 * 1000);
                     instance.setServerWaitTimeoutMillis(10 * 60 * 1000);
                     instance.setMaxFilesProcessedPerServer(10000);
+                    instance.startSpareClients();
                 }
             }
         }
@@ -355,7 +371,10 @@ public void parse(InputStream stream, ContentHandler handler, Metadata metadata,
             TikaInputStream tis = TikaInputStream.get(stream, tmp);
             tis.getFile();
 
+            long start = System.nanoTime();
             client = acquireClient();
+            long acquired = System.nanoTime();
+            acquireWaitTime.addAndGet(acquired - start);
 
             // this here mixtures metadata of main and embedded docs. Will use
             // TeeContentHandler later
@@ -366,6 +385,8 @@ public void parse(InputStream stream, ContentHandler handler, Metadata metadata,
              */
             t = client.callInBackground("parse", tis, handler, metadata, context);
             alive = true;
+            parses.incrementAndGet();
+            parseTime.addAndGet(System.nanoTime() - acquired);
         } catch (TikaException te) {
             // Problem occurred on our side
             alive = true;
@@ -399,6 +420,9 @@ public void parse(InputStream stream, ContentHandler handler, Metadata metadata,
     }
 
     public synchronized void close() {
+        if (spareStarter != null) {
+            spareStarter.shutdownNow();
+        }
         for (ForkClient2 client : pool) {
             client.close();
         }
@@ -406,6 +430,45 @@ public synchronized void close() {
         poolSize = 0;
     }
 
+    /**
+     * Starts server processes in background until the pool is full, so workers do
+     * not pay the JVM startup and Tika warm-up time when they need a server.
+     */
+    private synchronized void startSpareClients() {
+        if (spareStarter == null) {
+            spareStarter = Executors.newFixedThreadPool(Math.max(1, Math.min(4, poolSize)), r -> {
+                Thread t = new Thread(r, "ForkParserSpareStarter");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        while (currentlyInUse + pool.size() + startingSpares < poolSize) {
+            startingSpares++;
+            spareStarter.execute(this::startSpareClient);
+        }
+    }
+
+    private void startSpareClient() {
+        ForkClient2 client = null;
+        try {
+            client = newClient();
+        } catch (Throwable e) {
+            // acquireClient() will try again when needed
+            e.printStackTrace();
+        }
+        synchronized (this) {
+            startingSpares--;
+            if (client != null) {
+                if (currentlyInUse + pool.size() < poolSize) {
+                    pool.offer(client);
+                    notifyAll();
+                } else {
+                    client.close();
+                }
+            }
+        }
+    }
+
     // patched to concurrently start new clients
     private ForkClient2 acquireClient() throws IOException, TikaException {
         while (true) {
@@ -415,7 +478,7 @@ private ForkClient2 acquireClient() throws IOException, TikaException {
             synchronized (this) {
                 client = pool.poll();
                 // Create a new process if there's room in the pool
-                if (client == null && currentlyInUse < poolSize) {
+                if (client == null && currentlyInUse + startingSpares < poolSize) {
                     startNew = true;
                 }
                 currentlyInUse++;
@@ -434,6 +497,7 @@ private ForkClient2 acquireClient() throws IOException, TikaException {
             if (client != null && !client.ping()) {
                 client.close();
                 client = null;
+                clientsRestarted.incrementAndGet();
             }
             synchronized (this) {
                 if (client != null) {
@@ -441,7 +505,7 @@ private ForkClient2 acquireClient() throws IOException, TikaException {
 
                 } else {
                     currentlyInUse--;
-                    if (currentlyInUse >= poolSize) {
+                    if (currentlyInUse + startingSpares >= poolSize) {
                         try {
                             wait(1000);
                         } catch (InterruptedException e) {
@@ -454,6 +518,7 @@ private ForkClient2 acquireClient() throws IOException, TikaException {
     }
 
     private ForkClient2 newClient() throws IOException, TikaException {
+        clientsStarted.incrementAndGet();
         TimeoutLimits timeoutLimits = new TimeoutLimits(serverPulseMillis, serverParseTimeoutMillis,
                 serverWaitTimeoutMillis);
         if (loader == null && parser == null && tikaBin != null && parserFactoryFactory != null) {
@@ -473,15 +538,64 @@ private synchronized void releaseClient(ForkClient2 client, boolean alive) {
         if (currentlyInUse + pool.size() < poolSize && alive) {
             if (maxFilesProcessedPerClient > 0 && client.getFilesProcessed() >= maxFilesProcessedPerClient) {
                 client.close();
+                clientsRecycled.incrementAndGet();
+                startSpareClients();
             } else {
                 pool.offer(client);
             }
             notifyAll();
         } else {
             client.close();
+            if (!alive) {
+                // crashed or timed out, start a replacement before it is needed
+                clientsRestarted.incrementAndGet();
+                startSpareClients();
+            }
         }
     }
 
+    public long getClientsStarted() {
+        return clientsStarted.get();
+    }
+
+    /**
+     * @return number of server processes closed because they crashed, timed out or
+     *         did not respond to ping
+     */
+    public long getClientsRestarted() {
+        return clientsRestarted.get();
+    }
+
+    /**
+     * @return number of server processes closed after processing
+     *         maxFilesProcessedPerServer files
+     */
+    public long getClientsRecycled() {
+        return clientsRecycled.get();
+    }
+
+    public long getParses() {
+        return parses.get();
+    }
+
+    /**
+     * @return total time spent parsing in server processes, in milliseconds
+     */
+    public long getParseTime() {
+        return parseTime.get() / 1000000;
+    }
+
+    /**
+     * @return total time callers waited for a free server process, in milliseconds
+     */
+    public long getAcquireWaitTime() {
+        return acquireWaitTime.get() / 1000000;
+    }
+
+    public static ForkParser2 getInstance() {
+        return instance;
+    }
+
     /**
      * The amount of time in milliseconds that the server should wait before
      * checking to see if the parse has timed out or if the wait has timed out The
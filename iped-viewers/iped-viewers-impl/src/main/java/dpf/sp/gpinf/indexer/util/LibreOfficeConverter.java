@@ -0,0 +1,482 @@
+package dpf.sp.gpinf.indexer.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.sun.star.beans.PropertyValue;
+import com.sun.star.bridge.UnoUrlResolver;
+import com.sun.star.bridge.XUnoUrlResolver;
+import com.sun.star.comp.helper.Bootstrap;
+import com.sun.star.frame.XComponentLoader;
+import com.sun.star.frame.XStorable;
+import com.sun.star.lang.XComponent;
+import com.sun.star.lang.XServiceInfo;
+import com.sun.star.uno.UnoRuntime;
+import com.sun.star.uno.XComponentContext;
+import com.sun.star.util.XCloseable;
+
+/**
+ * Conversion service keeping a fixed number of warm headless LibreOffice
+ * instances, each one controlled through UNO by its own thread. Requests are
+ * taken from a bounded priority queue, so interactive requests (HIGH priority)
+ * are served before pending batch ones. An instance is restarted after a
+ * configured number of conversions, after a failure or when a request is
+ * aborted, e.g. because of a timeout.
+ */
+public class LibreOfficeConverter implements Closeable {
+
+    private static Logger LOGGER = LoggerFactory.getLogger(LibreOfficeConverter.class);
+
+    private static final int START_TIMEOUT = 60000;
+
+    public enum Priority {
+        HIGH, NORMAL
+    }
+
+    private final String loPath;
+
+    private final int recycleAfter;
+
+    private final PriorityBlockingQueue<Request> queue = new PriorityBlockingQueue<>();
+
+    private final Semaphore queueSlots;
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean closed = false;
+
+    private final LongAdder converted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+    private final LongAdder queueWaitMillis = new LongAdder();
+    private final LongAdder convertMillis = new LongAdder();
+    private final AtomicLong maxQueueWaitMillis = new AtomicLong();
+
+    /**
+     * @param loPath
+     *            LibreOffice installation folder
+     * @param instances
+     *            number of LibreOffice instances
+     * @param queueSize
+     *            max number of NORMAL priority requests waiting in the queue
+     * @param recycleAfter
+     *            number of conversions after which an instance is restarted
+     */
+    public LibreOfficeConverter(String loPath, int instances, int queueSize, int recycleAfter) {
+        this.loPath = loPath;
+        this.recycleAfter = recycleAfter;
+        this.queueSlots = new Semaphore(queueSize);
+        for (int i = 0; i < instances; i++) {
+            Worker worker = new Worker(i);
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Submits a conversion of the input document to a PNG image of its first page.
+     * NORMAL priority requests block while the queue is full.
+     */
+    public Request submit(File in, File outPng, Priority priority) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("LibreOfficeConverter closed"); //$NON-NLS-1$
+        }
+        if (priority == Priority.NORMAL) {
+            queueSlots.acquire();
+        }
+        Request request = new Request(in, outPng, priority);
+        queue.add(request);
+        return request;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Worker worker : workers) {
+            worker.interrupt();
+        }
+        Request request;
+        while ((request = queue.poll()) != null) {
+            request.cancel(false);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker.instance.kill();
+        }
+    }
+
+    public long getConverted() {
+        return converted.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getAborted() {
+        return aborted.sum();
+    }
+
+    public long getRestarts() {
+        return restarts.sum();
+    }
+
+    public long getQueueWaitMillis() {
+        return queueWaitMillis.sum();
+    }
+
+    public long getMaxQueueWaitMillis() {
+        return maxQueueWaitMillis.get();
+    }
+
+    public long getConvertMillis() {
+        return convertMillis.sum();
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public void logStats() {
+        long total = converted.sum() + failed.sum() + aborted.sum();
+        LOGGER.info("LibreOffice conversions: {} ok, {} failed, {} aborted, {} instance restarts", converted.sum(), //$NON-NLS-1$
+                failed.sum(), aborted.sum(), restarts.sum());
+        if (total > 0) {
+            LOGGER.info("LibreOffice average conversion time: {}ms, average queue wait: {}ms, max queue wait: {}ms", //$NON-NLS-1$
+                    convertMillis.sum() / total, queueWaitMillis.sum() / total, maxQueueWaitMillis.get());
+        }
+    }
+
+    /**
+     * A conversion request. Its result is true if the output image was created.
+     */
+    public class Request extends FutureTask<Boolean> implements Comparable<Request> {
+
+        private final Priority priority;
+        private final long seq = sequence.incrementAndGet();
+        private final long created = System.currentTimeMillis();
+        private volatile Instance instance;
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private Request(File in, File out, Priority priority) {
+            this(new Converter(in, out), priority);
+        }
+
+        private Request(Converter converter, Priority priority) {
+            super(converter);
+            this.priority = priority;
+            converter.request = this;
+        }
+
+        /**
+         * Waits until an instance starts converting the request, or until the request
+         * is cancelled. Useful to apply a conversion timeout not including the time
+         * waiting for a free instance.
+         */
+        public void awaitStart() throws InterruptedException {
+            started.await();
+        }
+
+        @Override
+        protected void done() {
+            started.countDown();
+        }
+
+        /**
+         * Aborts the conversion, restarting the instance processing it.
+         */
+        public void abort() {
+            Instance i = instance;
+            if (cancel(false) && i != null) {
+                aborted.increment();
+                i.kill();
+            }
+        }
+
+        @Override
+        public int compareTo(Request o) {
+            int cmp = priority.compareTo(o.priority);
+            return cmp != 0 ? cmp : Long.compare(seq, o.seq);
+        }
+    }
+
+    private class Converter implements Callable<Boolean> {
+
+        private final File in, out;
+        private Request request;
+
+        private Converter(File in, File out) {
+            this.in = in;
+            this.out = out;
+        }
+
+        @Override
+        public Boolean call() throws Exception {
+            return request.instance.convert(in, out);
+        }
+    }
+
+    private class Worker extends Thread {
+
+        private final Instance instance;
+
+        private Worker(int id) {
+            super("LibreOfficeConverter-" + id); //$NON-NLS-1$
+            setDaemon(true);
+            instance = new Instance(id);
+        }
+
+        @Override
+        public void run() {
+            while (!closed) {
+                Request request;
+                try {
+                    request = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (request.priority == Priority.NORMAL) {
+                    queueSlots.release();
+                }
+                long wait = System.currentTimeMillis() - request.created;
+                queueWaitMillis.add(wait);
+                maxQueueWaitMillis.accumulateAndGet(wait, Math::max);
+                if (request.isCancelled()) {
+                    continue;
+                }
+                long t = System.currentTimeMillis();
+                request.instance = instance;
+                request.started.countDown();
+                request.run();
+                convertMillis.add(System.currentTimeMillis() - t);
+                boolean ok = false, crashed = false;
+                try {
+                    ok = request.get();
+                } catch (ExecutionException e) {
+                    // errors loading or storing the document do not affect the instance
+                    Throwable cause = e.getCause();
+                    crashed = !(cause instanceof com.sun.star.io.IOException
+                            || cause instanceof com.sun.star.lang.IllegalArgumentException);
+                    LOGGER.warn("Error converting with LibreOffice: {}", cause.toString()); //$NON-NLS-1$
+                    LOGGER.debug("", cause); //$NON-NLS-1$
+                } catch (CancellationException | InterruptedException e) {
+                    // aborted
+                }
+                if (ok) {
+                    converted.increment();
+                } else if (!request.isCancelled()) {
+                    failed.increment();
+                }
+                if (crashed || !instance.isRunning() || instance.conversions >= recycleAfter) {
+                    instance.kill();
+                }
+            }
+            instance.kill();
+        }
+    }
+
+    /**
+     * A headless LibreOffice process with its own user profile, listening for UNO
+     * connections on a local socket.
+     */
+    private class Instance {
+
+        private final int id;
+        private File profile;
+        private Process process;
+        private XComponentLoader loader;
+        private int conversions;
+
+        private Instance(int id) {
+            this.id = id;
+        }
+
+        private synchronized boolean isRunning() {
+            return process != null && process.isAlive() && loader != null;
+        }
+
+        private void start() throws Exception {
+            if (profile == null) {
+                profile = Files.createTempDirectory("lo-converter").toFile(); //$NON-NLS-1$
+                writeUserConfig(profile);
+            }
+            int port;
+            try (ServerSocket socket = new ServerSocket(0)) {
+                port = socket.getLocalPort();
+            }
+            String accept = "socket,host=127.0.0.1,port=" + port + ";urp;"; //$NON-NLS-1$ //$NON-NLS-2$
+            String[] cmd = { loPath + "/program/soffice.bin", //$NON-NLS-1$
+                    "--headless", //$NON-NLS-1$
+                    "--invisible", //$NON-NLS-1$
+                    "--nologo", //$NON-NLS-1$
+                    "--nodefault", //$NON-NLS-1$
+                    "--norestore", //$NON-NLS-1$
+                    "--nolockcheck", //$NON-NLS-1$
+                    "--accept=" + accept, //$NON-NLS-1$
+                    "-env:UserInstallation=" + profile.toURI().toString() }; //$NON-NLS-1$
+            ProcessBuilder pb = new ProcessBuilder(cmd);
+            pb.redirectErrorStream(true);
+            pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+            Process p;
+            synchronized (this) {
+                p = process = pb.start();
+            }
+
+            XComponentContext localContext = Bootstrap.createInitialComponentContext(null);
+            XUnoUrlResolver resolver = UnoUrlResolver.create(localContext);
+            long deadline = System.currentTimeMillis() + START_TIMEOUT;
+            Object context = null;
+            while (context == null) {
+                try {
+                    context = resolver.resolve("uno:" + accept + "StarOffice.ComponentContext"); //$NON-NLS-1$ //$NON-NLS-2$
+                } catch (com.sun.star.connection.NoConnectException e) {
+                    if (!p.isAlive() || System.currentTimeMillis() > deadline) {
+                        throw new IOException("LibreOffice instance did not start", e); //$NON-NLS-1$
+                    }
+                    Thread.sleep(250);
+                }
+            }
+            XComponentContext remoteContext = UnoRuntime.queryInterface(XComponentContext.class, context);
+            Object desktop = remoteContext.getServiceManager().createInstanceWithContext("com.sun.star.frame.Desktop", //$NON-NLS-1$
+                    remoteContext);
+            synchronized (this) {
+                loader = UnoRuntime.queryInterface(XComponentLoader.class, desktop);
+            }
+            conversions = 0;
+        }
+
+        private boolean convert(File in, File out) throws Exception {
+            if (!isRunning()) {
+                kill();
+                start();
+                restarts.increment();
+            }
+            conversions++;
+            PropertyValue[] loadProps = { property("Hidden", true), //$NON-NLS-1$
+                    property("ReadOnly", true), //$NON-NLS-1$
+                    property("MacroExecutionMode", (short) 0), //$NON-NLS-1$
+                    property("UpdateDocMode", (short) 0) }; //$NON-NLS-1$
+            XComponent doc = loader.loadComponentFromURL(in.toURI().toString(), "_blank", 0, loadProps); //$NON-NLS-1$
+            if (doc == null) {
+                return false;
+            }
+            try {
+                String filter = getPngFilter(doc);
+                if (filter == null) {
+                    return false;
+                }
+                XStorable storable = UnoRuntime.queryInterface(XStorable.class, doc);
+                storable.storeToURL(out.toURI().toString(), new PropertyValue[] { property("FilterName", filter) }); //$NON-NLS-1$
+                return out.exists();
+
+            } finally {
+                XCloseable closeable = UnoRuntime.queryInterface(XCloseable.class, doc);
+                if (closeable != null) {
+                    closeable.close(true);
+                } else {
+                    doc.dispose();
+                }
+            }
+        }
+
+        private void kill() {
+            Process p;
+            synchronized (this) {
+                p = process;
+                process = null;
+                loader = null;
+            }
+            if (p != null && p.isAlive()) {
+                p.destroyForcibly();
+            }
+            if (closed && profile != null) {
+                try {
+                    IOUtil.deleteDirectory(profile, false);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static String getPngFilter(XComponent doc) {
+        XServiceInfo info = UnoRuntime.queryInterface(XServiceInfo.class, doc);
+        if (info == null) {
+            return null;
+        }
+        if (info.supportsService("com.sun.star.text.TextDocument")) { //$NON-NLS-1$
+            return "writer_png_Export"; //$NON-NLS-1$
+        }
+        if (info.supportsService("com.sun.star.sheet.SpreadsheetDocument")) { //$NON-NLS-1$
+            return "calc_png_Export"; //$NON-NLS-1$
+        }
+        if (info.supportsService("com.sun.star.presentation.PresentationDocument")) { //$NON-NLS-1$
+            return "impress_png_Export"; //$NON-NLS-1$
+        }
+        if (info.supportsService("com.sun.star.drawing.DrawingDocument")) { //$NON-NLS-1$
+            return "draw_png_Export"; //$NON-NLS-1$
+        }
+        return null;
+    }
+
+    private static PropertyValue property(String name, Object value) {
+        PropertyValue prop = new PropertyValue();
+        prop.Name = name;
+        prop.Value = value;
+        return prop;
+    }
+
+    /**
+     * Writes the initial user configuration of an instance, disabling features not
+     * needed for conversions, like VBA loading, auto save and backups.
+     */
+    private static void writeUserConfig(File profile) throws IOException {
+        File cfg = new File(profile, "user/registrymodifications.xcu"); //$NON-NLS-1$
+        cfg.getParentFile().mkdirs();
+        try (Writer out = Files.newBufferedWriter(cfg.toPath(), StandardCharsets.UTF_8)) {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"); //$NON-NLS-1$
+            out.write("<oor:items xmlns:oor=\"http://openoffice.org/2001/registry\" xmlns:xs=\"http://www.w3.org/2001/XMLSchema\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">\n"); //$NON-NLS-1$
+            out.write(item("/org.openoffice.Office.Common/Misc", "FirstRun", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write(item("/org.openoffice.Office.Common/Misc", "UseLocking", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write(item("/org.openoffice.Office.Common/Save/Document", "AutoSave", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write(item("/org.openoffice.Office.Common/Save/Document", "LoadPrinter", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write(item("/org.openoffice.Office.Common/Save/Document", "CreateBackup", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write(item("/org.openoffice.Office.Impress/Filter/Import/VBA", "Load", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write(item("/org.openoffice.Office.Writer/Filter/Import/VBA", "Load", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write(item("/org.openoffice.Office.Calc/Filter/Import/VBA", "Load", "false")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            out.write("</oor:items>\n"); //$NON-NLS-1$
+        }
+    }
+
+    private static String item(String path, String name, String value) {
+        return "<item oor:path=\"" + path + "\"><prop oor:name=\"" + name //$NON-NLS-1$ //$NON-NLS-2$
+                + "\" oor:op=\"fuse\"><value>" + value + "</value></prop></item>\n"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+}